@@ -0,0 +1,157 @@
+/**
+ * CatalogMemoryBenchmark.java
+ * Heap comparison of a Library on Book objects against one on the compact column catalog
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Builds the same generated library twice - on the default store of Book
+ * objects, then on a CompactCatalog - and reports the retained heap of each
+ * after a full GC, along with the cost of findBook. A tenth of the books are
+ * on loan. Both libraries carry the same search and ISBN indexes, members
+ * and loan table, so the difference is the catalog storage. Run with a heap
+ * large enough for the object model, e.g.
+ * java -Xmx5g CatalogMemoryBenchmark 10000000
+ *
+ * Usage: java CatalogMemoryBenchmark [books] [distinctAuthors]
+ */
+
+public class CatalogMemoryBenchmark {
+    private static final String[] WORDS = {
+        "java", "history", "modern", "garden", "river", "night", "complete", "guide", "art", "of",
+        "the", "programming", "ocean", "silent", "empire", "kitchen", "theory", "practical", "lost", "city",
+        "introduction", "systems", "design", "winter", "letters", "secret", "data", "world", "short", "stories"
+    };
+    private static final int MEMBERS = 200000;
+    private static final int BATCH = 100000;
+    private static final int LOOKUPS = 1000000;
+    
+    public static void main(String[] args) {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int authors = args.length > 1 ? Integer.parseInt(args[1]) : 250000;
+        System.out.printf("Library of %,d books (%,d distinct authors, a tenth on loan, %,d members)%n%n", books,
+                authors, MEMBERS);
+        System.out.printf("%-28s %14s %12s %12s %14s%n", "Catalog", "Retained heap", "Bytes/book", "Build (s)",
+                "findBook (ns)");
+        long objectBytes = measure(false, books, authors);
+        long compactBytes = measure(true, books, authors);
+        System.out.printf("%nThe compact library uses %.1f%% of the heap of the object one%n",
+                100.0 * compactBytes / objectBytes);
+    }
+    
+    /**
+     * Build a library, print its row and drop it
+     * @param compact true to build on a CompactCatalog, false on Book objects
+     * @return Retained heap in bytes
+     */
+    private static long measure(boolean compact, int books, int authors) {
+        long baseline = usedHeap();
+        long start = System.nanoTime();
+        CompactCatalog catalog = compact ? new CompactCatalog(books) : null;
+        Library library = catalog != null ? new Library("Benchmark Library", catalog)
+                : new Library("Benchmark Library");
+        build(library, books, authors);
+        long buildNanos = System.nanoTime() - start;
+        long bytes = usedHeap() - baseline;
+        long lookupNanos = timeLookups(library, books);
+        System.out.printf("%-28s %,11d MB %,12d %12.1f %14d%n", catalog != null ? "CompactCatalog"
+                : "Book objects + ID map", bytes >> 20, bytes / books, buildNanos / 1e9, lookupNanos);
+        return bytes;
+    }
+    
+    /**
+     * Add the books and members and issue a tenth of the books, quietly
+     */
+    private static void build(Library library, int books, int authors) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            SplittableRandom random = new SplittableRandom(42);
+            for (int first = 0; first < books; first += BATCH) {
+                List<Book> batch = new ArrayList<>(BATCH);
+                for (int i = first; i < Math.min(first + BATCH, books); i++) {
+                    batch.add(new Book(bookId(i), title(random), author(random, authors), isbn(random)));
+                }
+                library.addBooks(batch);
+            }
+            List<Member> members = new ArrayList<>(MEMBERS);
+            for (int i = 0; i < MEMBERS; i++) {
+                members.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+            }
+            library.addMembers(members);
+            for (int i = 0; i < books / 10 && i < MEMBERS * Member.MAX_BOOKS; i++) {
+                library.issueBook("M" + (i % MEMBERS), bookId((int) (i * 7L % books)));
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+    
+    private static long timeLookups(Library library, int books) {
+        SplittableRandom random = new SplittableRandom(7);
+        long start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += library.findBook(bookId(random.nextInt(books))).isAvailable() ? 1 : 0;
+        }
+        return check(found, (System.nanoTime() - start) / LOOKUPS);
+    }
+    
+    /**
+     * Keep a result alive so the JIT cannot drop the loop that produced it
+     */
+    private static long check(long result, long nanos) {
+        if (result < 0) {
+            System.out.println(result);
+        }
+        return nanos;
+    }
+    
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    private static String bookId(int i) {
+        char[] id = { 'B', '0', '0', '0', '0', '0', '0', '0', '0' };
+        for (int p = id.length - 1; i > 0 && p > 0; p--, i /= 10) {
+            id[p] = (char) ('0' + i % 10);
+        }
+        return new String(id);
+    }
+    
+    private static String title(SplittableRandom random) {
+        StringBuilder title = new StringBuilder(48);
+        int words = 2 + random.nextInt(5);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (w > 0) {
+                title.append(' ');
+            }
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return title.toString();
+    }
+    
+    private static String author(SplittableRandom random, int authors) {
+        return "Author " + random.nextInt(authors);
+    }
+    
+    private static String isbn(SplittableRandom random) {
+        return "978-" + (1000000000L + random.nextLong(9000000000L));
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * CirculationAnalyticsBenchmark.java
+ * Issue throughput with and without circulation analytics, and top-N accuracy
+ */
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Desk threads issue and return books picked from a Zipf-like popularity
+ * curve, so a few titles and members account for most loans, as in a real
+ * branch. "none" runs without analytics; "analytics" counts every issue.
+ * After the timed runs, a week of simulated issues is recorded straight
+ * into the analytics and the top titles and borrowers are compared with
+ * exact counts.
+ *
+ * Usage: java CirculationAnalyticsBenchmark [--books 100000] [--members 20000]
+ *        [--threads 4] [--seconds 5] [--top 100] [--models none,analytics]
+ */
+
+public class CirculationAnalyticsBenchmark {
+    private int books = 100000;
+    private int members = 20000;
+    private int threads = 4;
+    private int seconds = 5;
+    private int top = 100;
+    private String[] models = { "none", "analytics" };
+    
+    public static void main(String[] args) throws Exception {
+        CirculationAnalyticsBenchmark benchmark = new CirculationAnalyticsBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    benchmark.members = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                case "--top":
+                    benchmark.top = Integer.parseInt(value);
+                    break;
+                case "--models":
+                    benchmark.models = value.split(",");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+    
+    /**
+     * Measure every model, then the accuracy of the top lists
+     */
+    private void run() throws InterruptedException {
+        Library library = new Library("Benchmark Library");
+        List<Book> catalog = new ArrayList<>(this.books);
+        for (int i = 0; i < this.books; i++) {
+            catalog.add(new Book("B" + i, "Title " + i, "Author " + (i % 1000), "978" + (1000000000L + i)));
+        }
+        library.addBooks(catalog);
+        List<Member> registered = new ArrayList<>(this.members);
+        for (int i = 0; i < this.members; i++) {
+            registered.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        library.addMembers(registered);
+        double[] bookCurve = zipf(this.books);
+        double[] memberCurve = zipf(this.members);
+        
+        System.out.printf("%,d books, %,d members, %d threads%n%n", this.books, this.members, this.threads);
+        System.out.printf("%-10s %14s %14s%n", "Model", "Issues/s", "Counted");
+        for (String model : this.models) {
+            CirculationAnalytics analytics = model.equals("analytics") ? new CirculationAnalytics() : null;
+            library.setCirculationAnalytics(analytics);
+            measure(model, library, analytics, bookCurve, memberCurve);
+        }
+        library.setCirculationAnalytics(null);
+        accuracy(bookCurve, memberCurve);
+    }
+    
+    private void measure(String model, Library library, CirculationAnalytics analytics, double[] bookCurve,
+            double[] memberCurve) throws InterruptedException {
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        AtomicLong issues = new AtomicLong();
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            long seed = t;
+            desks.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    String memberId = "M" + pick(memberCurve, random);
+                    String bookId = "B" + pick(bookCurve, random);
+                    try {
+                        library.issueBook(memberId, bookId);
+                        library.returnBook(memberId, bookId);
+                        done++;
+                    } catch (IllegalStateException e) {
+                        // Another desk holds the book, or the member is at the limit
+                    }
+                }
+                issues.addAndGet(done);
+            }));
+        }
+        for (Thread desk : desks) {
+            desk.start();
+        }
+        for (Thread desk : desks) {
+            desk.join();
+        }
+        System.out.printf("%-10s %,14.0f %14s%n", model, issues.get() / (double) this.seconds,
+                analytics == null ? "-" : String.format("%,d", analytics.getIssuesRecorded()));
+    }
+    
+    /**
+     * Record a week of issues and compare the top lists with exact counts
+     */
+    private void accuracy(double[] bookCurve, double[] memberCurve) {
+        CirculationAnalytics analytics = new CirculationAnalytics();
+        Map<String, Long> titles = new HashMap<>();
+        Map<String, Long> borrowers = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+        int today = (int) LocalDate.now().toEpochDay();
+        int perDay = 20 * this.books / 7;
+        for (int day = today - 6; day <= today; day++) {
+            for (int i = 0; i < perDay; i++) {
+                String title = "Title " + pick(bookCurve, random);
+                String memberId = "M" + pick(memberCurve, random);
+                analytics.recordIssue(title, memberId, day);
+                titles.merge(title, 1L, Long::sum);
+                borrowers.merge(memberId, 1L, Long::sum);
+            }
+        }
+        LocalDate asOf = LocalDate.ofEpochDay(today);
+        System.out.printf("%n%,d issues over 7 days, %d keys tracked per day%n", 7L * perDay,
+                CirculationAnalytics.DEFAULT_TRACKED_PER_DAY);
+        System.out.printf("%-10s %14s %14s%n", "Top " + this.top, "Recall", "Overestimate");
+        report("titles", analytics.topTitles(this.top, 7, asOf), titles);
+        report("borrowers", analytics.topBorrowers(this.top, 7, asOf), borrowers);
+    }
+    
+    private void report(String name, List<CirculationAnalytics.Count> found, Map<String, Long> exact) {
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(exact.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Set<String> truth = new HashSet<>();
+        for (int i = 0; i < Math.min(this.top, ranked.size()); i++) {
+            truth.add(ranked.get(i).getKey());
+        }
+        int matched = 0;
+        double overestimate = 0;
+        for (CirculationAnalytics.Count count : found) {
+            if (truth.contains(count.getKey())) {
+                matched++;
+            }
+            long actual = exact.getOrDefault(count.getKey(), 0L);
+            overestimate += (count.getCount() - actual) / (double) Math.max(1, actual);
+        }
+        System.out.printf("%-10s %13.1f%% %13.2f%%%n", name, 100.0 * matched / truth.size(),
+                found.isEmpty() ? 0.0 : 100.0 * overestimate / found.size());
+    }
+    
+    /**
+     * Cumulative popularity of n items, the i-th weighted 1 / (i + 1)
+     */
+    private static double[] zipf(int n) {
+        double[] curve = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / (i + 1);
+            curve[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            curve[i] /= total;
+        }
+        return curve;
+    }
+    
+    private static int pick(double[] curve, SplittableRandom random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = curve.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (curve[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
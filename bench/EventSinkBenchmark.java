@@ -0,0 +1,155 @@
+/**
+ * EventSinkBenchmark.java
+ * Issue/return throughput with events printed inline, through the event bus, or not at all
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Desk threads issue and return books on disjoint slices of the catalog for
+ * a fixed time. Every event is printed to an unbuffered file stream (a
+ * stand-in for the console: one synchronized write system call per line).
+ * "inline" prints on the desk thread, as the domain classes used to; the
+ * bus models hand events to LibraryEventBus with each backpressure policy;
+ * "silent" attaches no listener.
+ *
+ * Usage: java EventSinkBenchmark [--books 100000] [--seconds 5] [--threads 4]
+ *        [--capacity 8192] [--models silent,inline,block,drop,sample]
+ */
+
+public class EventSinkBenchmark {
+    private static final PrintStream REPORT = System.out;
+    
+    private int books = 100000;
+    private int seconds = 5;
+    private int threads = 4;
+    private int capacity = LibraryEventBus.DEFAULT_CAPACITY;
+    private String[] models = { "silent", "inline", "block", "drop", "sample" };
+    
+    public static void main(String[] args) throws Exception {
+        EventSinkBenchmark benchmark = new EventSinkBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "--capacity":
+                    benchmark.capacity = Integer.parseInt(value);
+                    break;
+                case "--models":
+                    benchmark.models = value.split(",");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+    
+    /**
+     * Measure every model and print one row each
+     */
+    private void run() throws Exception {
+        REPORT.printf("%,d books, %d desk threads for %d s, bus capacity %,d%n%n", this.books, this.threads,
+                this.seconds, this.capacity);
+        REPORT.printf("%-8s %12s %14s %12s%n", "Model", "Ops/s", "Events logged", "Dropped");
+        File log = File.createTempFile("events", ".log");
+        try {
+            for (String model : this.models) {
+                measure(model, log);
+            }
+        } finally {
+            if (!log.delete()) {
+                log.deleteOnExit();
+            }
+        }
+    }
+    
+    /**
+     * Run the desks against a fresh library with one event model
+     * @param model silent, inline, block, drop or sample
+     * @param log File the events are printed to
+     */
+    private void measure(String model, File log) throws IOException, InterruptedException {
+        Library library = new Library("Benchmark Library");
+        List<Book> catalog = new ArrayList<>(this.books);
+        for (int i = 0; i < this.books; i++) {
+            catalog.add(new Book("B" + i, "Title " + i, "Author " + (i % 1000), null));
+        }
+        library.addBooks(catalog);
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < this.threads * 100; i++) {
+            members.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        library.addMembers(members);
+        
+        AtomicLong logged = new AtomicLong();
+        LibraryEventBus bus = null;
+        try (PrintStream out = new PrintStream(new FileOutputStream(log), false)) {
+            EventPrinter printer = new EventPrinter(out);
+            LibraryEventListener counted = event -> {
+                printer.onEvent(event);
+                logged.incrementAndGet();
+            };
+            if (model.equals("inline")) {
+                library.setEventListener(counted);
+            } else if (!model.equals("silent")) {
+                bus = new LibraryEventBus(this.capacity,
+                        LibraryEventBus.Backpressure.valueOf(model.toUpperCase()), 16);
+                bus.subscribe(counted);
+                library.setEventListener(bus);
+            }
+            
+            AtomicLong operations = new AtomicLong();
+            long deadline = System.nanoTime() + this.seconds * 1000000000L;
+            List<Thread> desks = new ArrayList<>();
+            for (int t = 0; t < this.threads; t++) {
+                int desk = t;
+                Thread thread = new Thread(() -> runDesk(library, desk, deadline, operations));
+                desks.add(thread);
+                thread.start();
+            }
+            for (Thread desk : desks) {
+                desk.join();
+            }
+            long dropped = 0;
+            if (bus != null) {
+                bus.close();
+                dropped = bus.getDropped();
+            }
+            REPORT.printf("%-8s %,12d %,14d %,12d%n", model, operations.get() / this.seconds, logged.get(), dropped);
+        }
+    }
+    
+    /**
+     * One desk: issue and return random books from its own slice, so every
+     * call succeeds
+     */
+    private void runDesk(Library library, int desk, long deadline, AtomicLong operations) {
+        SplittableRandom random = new SplittableRandom(desk);
+        int slice = this.books / this.threads;
+        long done = 0;
+        while ((done & 255) != 0 || System.nanoTime() < deadline) {
+            String memberId = "M" + (desk * 100 + random.nextInt(100));
+            String bookId = "B" + (desk * slice + random.nextInt(slice));
+            library.issueBook(memberId, bookId);
+            library.returnBook(memberId, bookId);
+            done += 2;
+        }
+        operations.addAndGet(done);
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * LibraryBenchmark.java
+ * Micro-benchmark suite for the Library hot paths
+ */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Each benchmark runs warmup iterations and then measured iterations of a
+ * fixed duration on 1..N threads, and reports throughput, average time per
+ * operation and bytes allocated per operation (the same figures as JMH's
+ * thrpt/avgt modes and -prof gc's gc.alloc.rate.norm).
+ *
+ * Usage: java LibraryBenchmark [--sizes 1000,100000,1000000] [--threads 1,4]
+ *        [--benchmarks issueReturn,addBook,findBook,findMember,stats]
+ *        [--warmup 3] [--iterations 5] [--seconds 1]
+ */
+
+public class LibraryBenchmark {
+    private static final PrintStream REPORT = System.out;
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+    
+    private int[] sizes = { 1000, 100000, 1000000 };
+    private int[] threadCounts = { 1, Runtime.getRuntime().availableProcessors() };
+    private List<String> benchmarks = Arrays.asList("issueReturn", "addBook", "findBook", "findMember", "stats");
+    private int warmupIterations = 3;
+    private int measuredIterations = 5;
+    private long iterationMillis = 1000;
+    
+    public static void main(String[] args) throws Exception {
+        LibraryBenchmark suite = new LibraryBenchmark();
+        suite.parseArgs(args);
+        suite.run();
+    }
+    
+    /**
+     * Parse command-line options
+     * @param args Options, see class comment
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes":
+                    this.sizes = parseInts(value);
+                    break;
+                case "--threads":
+                    this.threadCounts = parseInts(value);
+                    break;
+                case "--benchmarks":
+                    this.benchmarks = Arrays.asList(value.split(","));
+                    break;
+                case "--warmup":
+                    this.warmupIterations = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    this.measuredIterations = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    this.iterationMillis = (long) (Double.parseDouble(value) * 1000);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+    
+    /**
+     * Run every selected benchmark for every catalog size and thread count
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private void run() throws InterruptedException {
+        REPORT.printf("%-12s %9s %7s %14s %12s %10s%n",
+                "Benchmark", "Books", "Threads", "Ops/s", "ns/op", "B/op");
+        // The stats benchmark prints the statistics display; keep that out of the report
+        System.setOut(DISCARD);
+        try {
+            for (int size : this.sizes) {
+                Fixture fixture = new Fixture(size);
+                for (String benchmark : this.benchmarks) {
+                    for (int threads : this.threadCounts) {
+                        Result result = measure(fixture, benchmark, threads);
+                        REPORT.printf("%-12s %9d %7d %,14.0f %,12.1f %,10.1f%n", benchmark, size, threads,
+                                result.opsPerSecond, result.nanosPerOp, result.bytesPerOp);
+                    }
+                }
+            }
+        } finally {
+            System.setOut(REPORT);
+        }
+    }
+    
+    /**
+     * Run warmup and measured iterations of one benchmark
+     * @param fixture Populated library
+     * @param benchmark Benchmark name
+     * @param threads Number of worker threads
+     * @return Averaged result of the measured iterations
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private Result measure(Fixture fixture, String benchmark, int threads) throws InterruptedException {
+        for (int i = 0; i < this.warmupIterations; i++) {
+            iteration(fixture, benchmark, threads);
+        }
+        Result total = new Result();
+        for (int i = 0; i < this.measuredIterations; i++) {
+            Result result = iteration(fixture, benchmark, threads);
+            total.opsPerSecond += result.opsPerSecond / this.measuredIterations;
+            total.nanosPerOp += result.nanosPerOp / this.measuredIterations;
+            total.bytesPerOp += result.bytesPerOp / this.measuredIterations;
+        }
+        return total;
+    }
+    
+    /**
+     * Run one timed iteration on several threads
+     * @param fixture Populated library
+     * @param benchmark Benchmark name
+     * @param threads Number of worker threads
+     * @return Result of the iteration
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private Result iteration(Fixture fixture, String benchmark, int threads) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] ops = new long[threads];
+        long[] allocated = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long allocatedBefore = allocatedBytes();
+                ops[worker] = fixture.loop(benchmark, worker, threads, running);
+                allocated[worker] = allocatedBytes() - allocatedBefore;
+            });
+            workers[t].start();
+        }
+        
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(this.iterationMillis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        long totalOps = Math.max(1, Arrays.stream(ops).sum());
+        Result result = new Result();
+        result.opsPerSecond = totalOps * 1e9 / elapsed;
+        result.nanosPerOp = (double) elapsed * threads / totalOps;
+        result.bytesPerOp = (double) Arrays.stream(allocated).sum() / totalOps;
+        return result;
+    }
+    
+    /**
+     * Get the bytes allocated so far by the current thread
+     * @return Allocated bytes, or 0 if the JVM cannot report it
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+    
+    /**
+     * Parse a comma-separated list of integers
+     * @param value List such as "1,4,8"
+     * @return Parsed values
+     */
+    private static int[] parseInts(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+    
+    /**
+     * A library populated with books and members, plus pre-built IDs so the
+     * benchmark loops measure the library rather than string building
+     */
+    private static class Fixture {
+        private final Library library;
+        private final String[] bookIds;
+        private final String[] memberIds;
+        private final Map<Integer, long[]> addCounters = new HashMap<>();
+        
+        Fixture(int size) {
+            this.library = new Library("Benchmark Library");
+            int memberCount = Math.max(100, size / 10);
+            this.bookIds = new String[size];
+            this.memberIds = new String[memberCount];
+            List<Book> books = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                this.bookIds[i] = "B" + i;
+                books.add(new Book(this.bookIds[i], "Title " + i, "Author " + (i % 1000), "978-0134685991"));
+            }
+            List<Member> members = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++) {
+                this.memberIds[i] = "M" + i;
+                members.add(new Member(this.memberIds[i], "Member " + i, "m" + i + "@example.com",
+                        "555-0100", "2025-11-15"));
+            }
+            this.library.addBooks(books);
+            this.library.addMembers(members);
+        }
+        
+        /**
+         * Run a benchmark operation until told to stop
+         * @param benchmark Benchmark name
+         * @param worker Index of this worker thread
+         * @param workers Total number of worker threads
+         * @param running Cleared when the iteration ends
+         * @return Number of operations performed
+         */
+        long loop(String benchmark, int worker, int workers, AtomicBoolean running) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long ops = 0;
+            switch (benchmark) {
+                case "issueReturn": {
+                    // Each worker owns a disjoint slice of members and books so every call succeeds
+                    int members = this.memberIds.length / workers;
+                    int books = this.bookIds.length / workers;
+                    while (running.get()) {
+                        String memberId = this.memberIds[worker * members + random.nextInt(members)];
+                        String bookId = this.bookIds[worker * books + random.nextInt(books)];
+                        this.library.issueBook(memberId, bookId);
+                        this.library.returnBook(memberId, bookId);
+                        ops++;
+                    }
+                    break;
+                }
+                case "addBook": {
+                    long[] counter;
+                    synchronized (this.addCounters) {
+                        counter = this.addCounters.computeIfAbsent(worker, w -> new long[1]);
+                    }
+                    while (running.get()) {
+                        long n = counter[0]++;
+                        this.library.addBook(new Book("N" + worker + "-" + n, "New Title", "Author", null));
+                        ops++;
+                    }
+                    break;
+                }
+                case "findBook":
+                    while (running.get()) {
+                        for (int i = 0; i < 64; i++) {
+                            if (this.library.findBook(this.bookIds[random.nextInt(this.bookIds.length)]) == null) {
+                                throw new IllegalStateException("Missing book");
+                            }
+                        }
+                        ops += 64;
+                    }
+                    break;
+                case "findMember":
+                    while (running.get()) {
+                        for (int i = 0; i < 64; i++) {
+                            if (this.library.findMember(this.memberIds[random.nextInt(this.memberIds.length)]) == null) {
+                                throw new IllegalStateException("Missing member");
+                            }
+                        }
+                        ops += 64;
+                    }
+                    break;
+                case "stats":
+                    while (running.get()) {
+                        this.library.displayStatistics();
+                        ops++;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown benchmark " + benchmark);
+            }
+            return ops;
+        }
+    }
+    
+    /**
+     * Throughput, latency and allocation figures for one run
+     */
+    private static class Result {
+        private double opsPerSecond;
+        private double nanosPerOp;
+        private double bytesPerOp;
+    }
+}
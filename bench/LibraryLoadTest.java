@@ -0,0 +1,254 @@
+/**
+ * LibraryLoadTest.java
+ * HTTP load generator for LibraryHttpServer
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Seeds the server with books and members, then runs closed-loop clients
+ * (each sends its next request as soon as the last one answers) over
+ * keep-alive connections. The mix is lookups (GET /books/{id}) plus
+ * issue/return pairs on disjoint member and book slices per client, so
+ * every request is expected to succeed. Reports throughput and latency
+ * percentiles. Without --url an embedded server is started on a free
+ * localhost port.
+ *
+ * Usage: java LibraryLoadTest [--url http://localhost:8080] [--clients 64]
+ *        [--seconds 10] [--warmup 3] [--books 10000] [--members 1000]
+ *        [--reads 80]
+ */
+
+public class LibraryLoadTest {
+    private static final PrintStream REPORT = System.out;
+    
+    private String baseUrl;
+    private int clients = 64;
+    private int seconds = 10;
+    private int warmupSeconds = 3;
+    private int books = 10000;
+    private int members = 1000;
+    private int readPercent = 80;
+    
+    public static void main(String[] args) throws Exception {
+        LibraryLoadTest test = new LibraryLoadTest();
+        test.parseArgs(args);
+        test.run();
+    }
+    
+    /**
+     * Parse command-line options
+     * @param args Options, see class comment
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url":
+                    this.baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "--clients":
+                    this.clients = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    this.seconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    this.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "--books":
+                    this.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    this.members = Integer.parseInt(value);
+                    break;
+                case "--reads":
+                    this.readPercent = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (this.members < this.clients || this.books < this.clients) {
+            throw new IllegalArgumentException("Need at least one member and one book per client");
+        }
+    }
+    
+    /**
+     * Seed the server, warm up, then measure
+     * @throws Exception if the server cannot be started or reached
+     */
+    private void run() throws Exception {
+        LibraryHttpServer embedded = null;
+        if (this.baseUrl == null) {
+            Library library = new Library("Load Test Library");
+            embedded = new LibraryHttpServer(library, 0);
+            embedded.start();
+            this.baseUrl = "http://localhost:" + embedded.getPort();
+        }
+        try {
+            seed();
+            if (this.warmupSeconds > 0) {
+                measure(this.warmupSeconds);
+            }
+            Result result = measure(this.seconds);
+            LatencyHistogram latencies = result.latencies;
+            // Results depend on the executor, so say which one the embedded server got
+            REPORT.printf("Server: %s%n", embedded == null ? this.baseUrl
+                    : embedded.usesVirtualThreads() ? "embedded, virtual threads" : "embedded, platform thread pool");
+            REPORT.printf("Clients: %d, duration: %d s, reads: %d%%%n", this.clients, this.seconds, this.readPercent);
+            REPORT.printf("Requests: %,d (%,d errors)%n", latencies.getCount(), result.errors.sum());
+            REPORT.printf("Throughput: %,.0f requests/s%n", latencies.getCount() / (double) this.seconds);
+            REPORT.printf("Latency: p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                    latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3,
+                    latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+        } finally {
+            if (embedded != null) {
+                embedded.stop(0);
+            }
+        }
+    }
+    
+    /**
+     * Add the books and members the clients use; existing ones are kept
+     * @throws IOException if the server cannot be reached
+     */
+    private void seed() throws IOException {
+        for (int i = 0; i < this.books; i++) {
+            send("POST", "/books", "{\"bookId\":\"LT-B" + i + "\",\"title\":\"Load Test Title " + i
+                    + "\",\"author\":\"Author " + (i % 100) + "\",\"isbn\":\"978-0134685991\"}");
+        }
+        for (int i = 0; i < this.members; i++) {
+            send("POST", "/members", "{\"memberId\":\"LT-M" + i + "\",\"name\":\"Load Test Member " + i
+                    + "\",\"email\":\"lt" + i + "@example.com\",\"phoneNumber\":\"555-0100\"}");
+        }
+    }
+    
+    /**
+     * Run the clients for a fixed time
+     * @param durationSeconds How long to run
+     * @return Latencies and error count
+     * @throws InterruptedException if interrupted while waiting for clients
+     */
+    private Result measure(int durationSeconds) throws InterruptedException {
+        Result result = new Result();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[this.clients];
+        for (int c = 0; c < this.clients; c++) {
+            final int client = c;
+            threads[c] = new Thread(() -> {
+                try {
+                    start.await();
+                    clientLoop(client, running, result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[c].start();
+        }
+        start.countDown();
+        Thread.sleep(durationSeconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return result;
+    }
+    
+    /**
+     * Send requests until told to stop
+     * @param client Index of this client
+     * @param running Cleared when the run ends
+     * @param result Where latencies and errors are recorded
+     */
+    private void clientLoop(int client, AtomicBoolean running, Result result) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int memberSlice = this.members / this.clients;
+        int bookSlice = this.books / this.clients;
+        while (running.get()) {
+            if (random.nextInt(100) < this.readPercent) {
+                timed("GET", "/books/LT-B" + random.nextInt(this.books), null, result);
+            } else {
+                String body = "{\"memberId\":\"LT-M" + (client * memberSlice + random.nextInt(memberSlice))
+                        + "\",\"bookId\":\"LT-B" + (client * bookSlice + random.nextInt(bookSlice)) + "\"}";
+                timed("POST", "/issue", body, result);
+                timed("POST", "/return", body, result);
+            }
+        }
+    }
+    
+    /**
+     * Send one request and record its latency
+     * @param method HTTP method
+     * @param path Request path
+     * @param body JSON body, or null
+     * @param result Where the latency or error is recorded
+     */
+    private void timed(String method, String path, String body, Result result) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = send(method, path, body);
+        } catch (IOException e) {
+            status = -1;
+        }
+        result.latencies.record(System.nanoTime() - start);
+        if (status < 200 || status >= 300) {
+            result.errors.increment();
+        }
+    }
+    
+    /**
+     * Send one request over a keep-alive connection and drain the response
+     * @param method HTTP method
+     * @param path Request path
+     * @param body JSON body, or null
+     * @return HTTP status
+     * @throws IOException if the request fails
+     */
+    private int send(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            byte[] buffer = new byte[4096];
+            try {
+                while (in.read(buffer) > 0) {
+                    // Drain so the connection can be reused
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+    
+    /**
+     * Latencies and errors of one run
+     */
+    private static class Result {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,403 @@
+/**
+ * LibraryStressTest.java
+ * Concurrent issue/return stress test that checks the loan invariants
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Desk threads issue and return random books for random members from
+ * small, shared pools, so most operations contend for the same members
+ * and books: single issues and returns, plus two- and three-book batches
+ * that must apply whole or not at all. A watcher thread checks while they
+ * run that no member holds more than Member.MAX_BOOKS books. Afterwards the
+ * loans are recounted from the members and books and checked:
+ *
+ *   - no book is on loan to two members, and every issued book is on
+ *     exactly one member's list, under that member's name
+ *   - no member holds more than Member.MAX_BOOKS books
+ *   - LibraryStats (kept as running counters) matches the recount
+ *
+ * Each round then runs a hold phase on one popular title in a journaled
+ * library: the same number of threads place and cancel holds for random
+ * members out of a large pool while a desk keeps returning the book and
+ * issuing it to whoever it is set aside for. It checks that:
+ *
+ *   - no member is in the queue twice, in any listing taken during the run
+ *   - at each return the copy goes to the oldest hold not cancelled since
+ *     (FIFO), and at the end at most one hold is READY, at the head
+ *   - replaying the journal into an empty library rebuilds the same queue
+ *     and the same holder
+ *
+ * Refusals (already issued, limit reached, not issued to this member, no
+ * hold to cancel, book on the shelf) are expected; any other exception
+ * fails the run. Exits with status 1 on a violation.
+ *
+ * Usage: java LibraryStressTest [--books 64] [--members 16] [--threads 8]
+ *        [--seconds 10] [--rounds 3] [--holders 3000]
+ */
+
+public class LibraryStressTest {
+    private int books = 64;
+    private int members = 16;
+    private int threads = 8;
+    private int seconds = 10;
+    private int rounds = 3;
+    private int holders = 3000;
+    
+    public static void main(String[] args) throws Exception {
+        LibraryStressTest test = new LibraryStressTest();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    test.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    test.members = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    test.threads = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    test.seconds = Integer.parseInt(value);
+                    break;
+                case "--rounds":
+                    test.rounds = Integer.parseInt(value);
+                    break;
+                case "--holders":
+                    test.holders = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        boolean passed = true;
+        for (int round = 1; round <= test.rounds; round++) {
+            passed &= test.run(round);
+            passed &= test.holds(round);
+        }
+        System.out.println(passed ? "✓ All rounds passed" : "✗ Invariants violated");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Run one round on a fresh library and check it
+     * @param round Round number, also the random seed
+     * @return true if every invariant held
+     */
+    private boolean run(int round) throws InterruptedException {
+        Library library = new Library("Stress Library");
+        List<Book> catalog = new ArrayList<>(this.books);
+        for (int i = 0; i < this.books; i++) {
+            catalog.add(new Book("B" + i, "Title " + i, "Author " + i, null));
+        }
+        library.addBooks(catalog);
+        List<Member> registered = new ArrayList<>(this.members);
+        for (int i = 0; i < this.members; i++) {
+            registered.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        library.addMembers(registered);
+        
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        AtomicLong applied = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        AtomicReference<String> violation = new AtomicReference<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            long seed = (long) round * this.threads + t;
+            desks.add(new Thread(() -> desk(library, new SplittableRandom(seed), deadline, applied, refused,
+                    violation)));
+        }
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                for (Member member : registered) {
+                    int count = member.getIssuedBooksCount();
+                    if (count > Member.MAX_BOOKS) {
+                        violation.compareAndSet(null, member.getMemberId() + " holds " + count + " books");
+                    }
+                }
+                Thread.yield();
+            }
+        });
+        watcher.start();
+        for (Thread desk : desks) {
+            desk.start();
+        }
+        for (Thread desk : desks) {
+            desk.join();
+        }
+        running.set(false);
+        watcher.join();
+        
+        List<String> failures = new ArrayList<>();
+        if (violation.get() != null) {
+            failures.add(violation.get());
+        }
+        failures.addAll(recount(library, registered));
+        System.out.printf("Round %d: %,d applied, %,d refused, %s%n", round, applied.get(), refused.get(),
+                library.getStats());
+        for (String failure : failures) {
+            System.out.println("✗ " + failure);
+        }
+        return failures.isEmpty();
+    }
+    
+    /**
+     * Issue and return random books until the deadline
+     */
+    private void desk(Library library, SplittableRandom random, long deadline, AtomicLong applied,
+            AtomicLong refused, AtomicReference<String> violation) {
+        long done = 0;
+        long rejected = 0;
+        while (System.nanoTime() < deadline && violation.get() == null) {
+            String memberId = "M" + random.nextInt(this.members);
+            try {
+                int kind = random.nextInt(10);
+                if (kind < 4) {
+                    library.issueBook(memberId, "B" + random.nextInt(this.books));
+                } else if (kind < 8) {
+                    library.returnBook(memberId, "B" + random.nextInt(this.books));
+                } else {
+                    List<String> bookIds = distinctBooks(random, 2 + random.nextInt(2));
+                    CheckoutResult result = kind == 8 ? library.issueBooks(memberId, bookIds)
+                            : library.returnBooks(memberId, bookIds);
+                    if (!result.isApplied()) {
+                        rejected++;
+                        continue;
+                    }
+                }
+                done++;
+            } catch (IllegalStateException e) {
+                rejected++; // Already issued, limit reached or not issued to this member
+            } catch (RuntimeException e) {
+                violation.compareAndSet(null, "Unexpected " + e);
+            }
+        }
+        applied.addAndGet(done);
+        refused.addAndGet(rejected);
+    }
+    
+    private List<String> distinctBooks(SplittableRandom random, int count) {
+        String[] bookIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            String bookId;
+            do {
+                bookId = "B" + random.nextInt(this.books);
+            } while (Arrays.asList(bookIds).contains(bookId));
+            bookIds[i] = bookId;
+        }
+        return Arrays.asList(bookIds);
+    }
+    
+    /**
+     * Recount the loans from the members and books once the desks have stopped
+     * @param library The library
+     * @param registered Its members
+     * @return Violations found; empty if the state is consistent
+     */
+    private List<String> recount(Library library, List<Member> registered) {
+        List<String> failures = new ArrayList<>();
+        Map<String, Member> holders = new HashMap<>();
+        int membersAtLimit = 0;
+        for (Member member : registered) {
+            List<Book> loans = member.getIssuedBooks();
+            if (loans.size() > Member.MAX_BOOKS) {
+                failures.add(member.getMemberId() + " holds " + loans.size() + " books");
+            }
+            if (loans.size() == Member.MAX_BOOKS) {
+                membersAtLimit++;
+            }
+            for (Book loan : loans) {
+                Member previous = holders.put(loan.getBookId(), member);
+                if (previous != null) {
+                    failures.add(loan.getBookId() + " is issued to both " + previous.getMemberId() + " and "
+                            + member.getMemberId());
+                }
+            }
+        }
+        int issued = 0;
+        for (int i = 0; i < this.books; i++) {
+            Book book = library.findBook("B" + i);
+            Member holder = holders.get(book.getBookId());
+            if (!book.isAvailable()) {
+                issued++;
+                if (holder == null) {
+                    failures.add(book.getBookId() + " is issued but on no member's list");
+                } else if (!holder.getName().equals(book.getIssuedTo())) {
+                    failures.add(book.getBookId() + " is issued to " + book.getIssuedTo() + " but listed under "
+                            + holder.getMemberId());
+                }
+            } else if (holder != null) {
+                failures.add(book.getBookId() + " is available but on " + holder.getMemberId() + "'s list");
+            }
+        }
+        
+        LibraryStats stats = library.getStats();
+        if (stats.getTotalBooks() != this.books || stats.getIssuedBooks() != issued
+                || stats.getAvailableBooks() != this.books - issued || stats.getTotalMembers() != registered.size()
+                || stats.getMembersAtLimit() != membersAtLimit) {
+            failures.add("Stats " + stats + " do not match the recount of " + this.books + " books, " + issued
+                    + " issued, " + registered.size() + " members, " + membersAtLimit + " at the limit");
+        }
+        return failures;
+    }
+    
+    /**
+     * Run the hold phase of a round on a fresh journaled library and check it
+     * @param round Round number, also the random seed
+     * @return true if every invariant held
+     */
+    private boolean holds(int round) throws InterruptedException, IOException {
+        String bookId = "H0";
+        String deskId = "D0"; // Borrows the book whenever nobody is waiting for it
+        Path path = Files.createTempFile("stress", ".journal");
+        Library library = new Library("Hold Stress Library");
+        LibraryJournal journal = LibraryJournal.open(path, library, 1, 256);
+        library.addBook(new Book(bookId, "Popular Title", "Author", null));
+        List<Member> pool = new ArrayList<>(this.holders + 1);
+        for (int i = 0; i < this.holders; i++) {
+            pool.add(new Member("H" + i, "Holder " + i, null, null, "2025-01-01"));
+        }
+        pool.add(new Member(deskId, "Desk", null, null, "2025-01-01"));
+        library.addMembers(pool);
+        library.issueBook(deskId, bookId);
+        
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        AtomicLong placed = new AtomicLong();
+        AtomicLong served = new AtomicLong();
+        AtomicReference<String> violation = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            SplittableRandom random = new SplittableRandom((long) round * this.threads + t);
+            threads.add(new Thread(() -> {
+                long done = 0;
+                while (System.nanoTime() < deadline && violation.get() == null) {
+                    String memberId = "H" + random.nextInt(this.holders);
+                    try {
+                        if (random.nextInt(3) < 2) {
+                            library.placeHold(memberId, bookId);
+                            done++;
+                        } else {
+                            library.cancelHold(memberId, bookId);
+                        }
+                    } catch (IllegalStateException e) {
+                        // Already queued or holding the book, no hold to cancel, or the book is on the shelf
+                    } catch (RuntimeException e) {
+                        violation.compareAndSet(null, "Unexpected " + e);
+                    }
+                    List<Hold> queue = library.listHolds(bookId);
+                    Set<String> queued = new HashSet<>();
+                    for (Hold hold : queue) {
+                        if (!queued.add(hold.getMemberId())) {
+                            violation.compareAndSet(null, hold.getMemberId() + " is queued twice: " + queue);
+                        }
+                    }
+                }
+                placed.addAndGet(done);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            long done = 0;
+            while (System.nanoTime() < deadline && violation.get() == null) {
+                try {
+                    serve(library, bookId, deskId, violation);
+                    done++;
+                } catch (RuntimeException e) {
+                    violation.compareAndSet(null, "Unexpected " + e);
+                }
+            }
+            served.addAndGet(done);
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        List<String> failures = new ArrayList<>();
+        if (violation.get() != null) {
+            failures.add(violation.get());
+        }
+        List<Hold> queue = library.listHolds(bookId);
+        for (int i = 0; i < queue.size(); i++) {
+            Hold.Status status = queue.get(i).getStatus();
+            if (status != Hold.Status.WAITING && !(i == 0 && status == Hold.Status.READY)) {
+                failures.add("Hold " + i + " of the final queue is " + queue.get(i));
+            }
+        }
+        String expected = describe(library, bookId);
+        journal.close();
+        Library replayed = new Library("Hold Stress Library");
+        LibraryJournal reopened = LibraryJournal.open(path, replayed, 1, 256);
+        String actual = describe(replayed, bookId);
+        reopened.close();
+        Files.delete(path);
+        if (!actual.equals(expected)) {
+            failures.add("Replay rebuilt " + actual + ", expected " + expected);
+        }
+        System.out.printf("Round %d holds: %,d placed, %,d loans served, %d queued at the end%n", round,
+                placed.get(), served.get(), queue.size());
+        for (String failure : failures) {
+            System.out.println("✗ " + failure);
+        }
+        return failures.isEmpty();
+    }
+    
+    /**
+     * Return the book and issue it to the member it is set aside for (or to
+     * the desk if nobody is waiting), checking that the copy went to the
+     * oldest hold that was not cancelled in the meantime
+     */
+    private void serve(Library library, String bookId, String deskId, AtomicReference<String> violation) {
+        List<Hold> before = library.listHolds(bookId); // Nothing is READY while the book is out
+        library.returnBook(library.findHolder(bookId).getMemberId(), bookId);
+        while (true) {
+            List<Hold> queue = library.listHolds(bookId);
+            Hold ready = queue.isEmpty() || queue.get(0).getStatus() != Hold.Status.READY ? null : queue.get(0);
+            if (ready != null) {
+                // Holds only leave the queue ahead of it by being cancelled; later ones join behind it
+                for (Hold earlier : before) {
+                    if (earlier == ready) {
+                        break;
+                    }
+                    if (earlier.getStatus() != Hold.Status.CANCELLED) {
+                        violation.compareAndSet(null, "Copy set aside for " + ready.getMemberId() + " ahead of "
+                                + earlier);
+                    }
+                }
+            }
+            try {
+                library.issueBook(ready != null ? ready.getMemberId() : deskId, bookId);
+                return;
+            } catch (IllegalStateException e) {
+                // The hold was cancelled, or a hold was placed while the book was on the shelf; look again
+            }
+        }
+    }
+    
+    /**
+     * Describe a book's holder and queue, for comparing two libraries
+     */
+    private static String describe(Library library, String bookId) {
+        Member holder = library.findHolder(bookId);
+        return (holder != null ? holder.getMemberId() : "nobody") + " has it, queue " + library.listHolds(bookId);
+    }
+}
@@ -0,0 +1,311 @@
+/**
+ * OffHeapCatalogBenchmark.java
+ * Heap size and GC pauses of an on-heap catalog against an off-heap one
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/*
+ * Each model runs in its own JVM with the same heap limit: build a library
+ * of N books (a tenth of them on loan), then measure retained heap after a
+ * full GC, the full-GC pause, and the GC pauses seen while desk threads
+ * issue, return and look up books and page through listings for a while.
+ * Search and ISBN indexes stay on the heap in every model.
+ *
+ * With the mapped model, a small library is first restarted the way a
+ * deployment restarts: snapshot, more books and loans, close, then reopen
+ * the catalog, restore the snapshot and replay the journal. Its loans,
+ * holds and statistics must come back unchanged.
+ *
+ * Usage: java OffHeapCatalogBenchmark [--books 5000000] [--seconds 30]
+ *        [--threads 4] [--heap 4g] [--models heap,direct,mapped]
+ */
+
+public class OffHeapCatalogBenchmark {
+    private static final PrintStream REPORT = System.out;
+    private static final int MEMBERS = 200000;
+    private static final int BATCH = 100000;
+    
+    private int books = 5000000;
+    private int seconds = 30;
+    private int threads = 4;
+    private String heap = "4g";
+    private String[] models = { "heap", "direct", "mapped" };
+    private String model; // Set in a child JVM
+    
+    public static void main(String[] args) throws Exception {
+        OffHeapCatalogBenchmark benchmark = new OffHeapCatalogBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "--heap":
+                    benchmark.heap = value;
+                    break;
+                case "--models":
+                    benchmark.models = value.split(",");
+                    break;
+                case "--model":
+                    benchmark.model = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (benchmark.model != null) {
+            benchmark.measure();
+        } else {
+            benchmark.runModels();
+        }
+    }
+    
+    /**
+     * Run every model in a child JVM and let each print its row
+     */
+    private void runModels() throws Exception {
+        if (Arrays.asList(this.models).contains("mapped")) {
+            checkRestart();
+        }
+        REPORT.printf("%,d books, %d desk threads for %d s, -Xmx%s%n%n", this.books, this.threads, this.seconds,
+                this.heap);
+        REPORT.printf("%-8s %10s %14s %13s %6s %14s %15s %10s%n", "Model", "Heap (MB)", "Off-heap (MB)",
+                "Full GC (ms)", "GCs", "GC total (ms)", "Max pause (ms)", "Ops/s");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (String name : this.models) {
+            Process child = new ProcessBuilder(java, "-Xmx" + this.heap, "-Xms" + this.heap,
+                    "-XX:MaxDirectMemorySize=16g", "-cp", System.getProperty("java.class.path"),
+                    OffHeapCatalogBenchmark.class.getName(), "--model", name, "--books", Integer.toString(this.books),
+                    "--seconds", Integer.toString(this.seconds), "--threads", Integer.toString(this.threads))
+                    .inheritIO().start();
+            if (child.waitFor() != 0) {
+                REPORT.printf("%-8s failed (exit %d)%n", name, child.exitValue());
+            }
+        }
+    }
+    
+    /**
+     * Build the library for this JVM's model and print one result row
+     */
+    private void measure() throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+            }
+        }));
+        Path directory = null;
+        OffHeapCatalog catalog = null;
+        Library library;
+        if (this.model.equals("heap")) {
+            library = new Library("Benchmark Library");
+        } else {
+            if (this.model.equals("mapped")) {
+                directory = Files.createTempDirectory("catalog");
+                catalog = OffHeapCatalog.open(directory);
+            } else {
+                catalog = OffHeapCatalog.create();
+            }
+            library = new Library("Benchmark Library", catalog);
+        }
+        
+        SplittableRandom random = new SplittableRandom(42);
+        for (int start = 0; start < this.books; start += BATCH) {
+            List<Book> batch = new ArrayList<>(BATCH);
+            for (int i = start; i < Math.min(start + BATCH, this.books); i++) {
+                batch.add(new Book("B" + i, "Title " + random.nextInt(1 << 20) + " Volume " + (i % 40),
+                        "Author " + random.nextInt(250000), "978-" + (1000000000L + random.nextLong(9000000000L))));
+            }
+            library.addBooks(batch);
+        }
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        library.addMembers(members);
+        for (int i = 0; i < this.books / 10 && i < MEMBERS * Member.MAX_BOOKS; i++) {
+            library.issueBook("M" + (i % MEMBERS), "B" + (i * 7 % this.books));
+        }
+        
+        long heapBytes = usedHeap();
+        long fullStart = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - fullStart) / 1000000;
+        
+        AtomicLong pauses = new AtomicLong();
+        AtomicLong pauseMillis = new AtomicLong();
+        AtomicLong maxPause = new AtomicLong();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                CompositeData info = (CompositeData) notification.getUserData();
+                long duration = (Long) ((CompositeData) info.get("gcInfo")).get("duration");
+                pauses.incrementAndGet();
+                pauseMillis.addAndGet(duration);
+                maxPause.accumulateAndGet(duration, Math::max);
+            }, notification -> notification.getType().equals("com.sun.management.gc.notification"), null);
+        }
+        
+        AtomicLong operations = new AtomicLong();
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            int seed = t;
+            Thread desk = new Thread(() -> runDesk(library, seed, deadline, operations));
+            desks.add(desk);
+            desk.start();
+        }
+        for (Thread desk : desks) {
+            desk.join();
+        }
+        
+        System.setOut(console);
+        REPORT.printf("%-8s %,10d %,14d %,13d %,6d %,14d %,15d %,10d%n", this.model, heapBytes >> 20,
+                (catalog != null ? catalog.getOffHeapBytes() : 0) >> 20, fullGcMillis, pauses.get(),
+                pauseMillis.get(), maxPause.get(), operations.get() / this.seconds);
+        if (catalog != null) {
+            catalog.close();
+        }
+        if (directory != null) {
+            for (File file : directory.toFile().listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+    }
+    
+    /**
+     * Restart a journaled library over a mapped catalog that gained books
+     * after its last snapshot, and check that it comes back unchanged
+     * @throws IllegalStateException if the restarted library differs
+     */
+    private void checkRestart() throws Exception {
+        int count = 10000;
+        Path directory = Files.createTempDirectory("catalog");
+        Path journalPath = directory.resolve("library.journal");
+        Path snapshotPath = directory.resolve("library.snapshot");
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        String expected;
+        String actual;
+        try {
+            OffHeapCatalog catalog = OffHeapCatalog.open(directory);
+            Library library = new Library("Restart Library", catalog);
+            LibraryJournal journal = LibraryJournal.open(journalPath, library, 1, 256);
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < count / 10; i++) {
+                members.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+            }
+            library.addMembers(members);
+            addRestartBooks(library, 0, count / 2);
+            library.placeHold("M1", "B0");
+            LibrarySnapshot.write(library, snapshotPath);
+            addRestartBooks(library, count / 2, count); // Kept by the mapped catalog; not in the snapshot
+            library.placeHold("M2", "B" + (count - 10));
+            expected = describeRestart(library, count);
+            journal.close();
+            catalog.close();
+            
+            catalog = OffHeapCatalog.open(directory);
+            library = new Library("Restart Library", catalog);
+            LibrarySnapshot.restore(snapshotPath, library);
+            journal = LibraryJournal.open(journalPath, library, 1, 256);
+            actual = describeRestart(library, count);
+            journal.close();
+            catalog.close();
+        } finally {
+            System.setOut(console);
+            for (File file : directory.toFile().listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException("Restarted as " + actual + ", expected " + expected);
+        }
+        REPORT.printf("✓ Restart over a reopened mapped catalog (snapshot at %,d books, %,d after): %s%n%n",
+                count / 2, count, actual.substring(0, actual.indexOf(';')));
+    }
+    
+    /**
+     * Add books [from, to) and issue every tenth one
+     */
+    private static void addRestartBooks(Library library, int from, int to) {
+        List<Book> batch = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            batch.add(new Book("B" + i, "Title " + i, "Author " + (i % 100), null));
+        }
+        library.addBooks(batch);
+        for (int i = from; i < to; i += 10) {
+            library.issueBook("M" + (i / 10 % 1000), "B" + i);
+        }
+    }
+    
+    /**
+     * Describe a restart library's statistics, holders and holds
+     */
+    private static String describeRestart(Library library, int count) {
+        StringBuilder description = new StringBuilder(library.getStats().toString()).append(';');
+        for (int i = 0; i < count; i++) {
+            Member holder = library.findHolder("B" + i);
+            if (holder != null) {
+                description.append(' ').append(i).append('=').append(holder.getMemberId());
+            }
+        }
+        return description.append(library.listHolds("B0")).append(library.listHolds("B" + (count - 10))).toString();
+    }
+    
+    /**
+     * One desk: look up, issue and return random books, and page through
+     * the available listing now and then
+     */
+    private void runDesk(Library library, int seed, long deadline, AtomicLong operations) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long done = 0;
+        while ((done & 255) != 0 || System.nanoTime() < deadline) {
+            String memberId = "M" + random.nextInt(MEMBERS);
+            String bookId = "B" + random.nextInt(this.books);
+            try {
+                if (library.findBook(bookId).isAvailable()) {
+                    library.issueBook(memberId, bookId);
+                } else {
+                    Member holder = library.findHolder(bookId);
+                    library.returnBook(holder.getMemberId(), bookId);
+                }
+            } catch (IllegalStateException | NullPointerException e) {
+                // Lost a race with another desk, or the member is at the limit
+            }
+            if ((done & 1023) == 0) {
+                library.listBooks(BookFilter.AVAILABLE, random.nextInt(this.books), 100);
+            }
+            done++;
+        }
+        operations.addAndGet(done);
+    }
+    
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * ReplicationBenchmark.java
+ * Leader/follower replication on localhost: catch-up, reconnect, promotion and wire size
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Runs a journaled leader and a follower in one JVM, connected over
+ * localhost, while desk threads issue, return, place and cancel holds on
+ * the leader. After each step the follower must reach the leader's durable
+ * sequence with the same loans, holds and statistics:
+ *
+ *   catch-up   the follower starts after the catalog is loaded and copies
+ *              the backlog, then follows the desks
+ *   reconnect  the leader is closed and restarted on the same port; the
+ *              follower reconnects by itself
+ *   restart    the follower is closed while the desks keep going, then
+ *              reopened from its journal copy; it replays the copy and
+ *              asks for the records after it
+ *   promote    the follower is promoted, takes writes of its own and
+ *              leads a fresh follower
+ *
+ * Each step reports the sequence number the follower started from, the
+ * leader's records, the journal bytes shipped and what they took on the
+ * wire. Exits with status 1 if a follower diverges.
+ *
+ * Usage: java ReplicationBenchmark [--books 2000] [--members 200] [--threads 4]
+ *        [--seconds 3]
+ */
+
+public class ReplicationBenchmark {
+    private static final PrintStream REPORT = System.out;
+    private static final long CATCH_UP_MILLIS = 30000;
+    
+    private int books = 2000;
+    private int members = 200;
+    private int threads = 4;
+    private int seconds = 3;
+    private boolean passed = true;
+    
+    public static void main(String[] args) throws Exception {
+        ReplicationBenchmark benchmark = new ReplicationBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    benchmark.members = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        System.setOut(new PrintStream(new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+            }
+        }));
+        benchmark.run();
+        REPORT.println(benchmark.passed ? "✓ Every follower matched its leader" : "✗ A follower diverged");
+        if (!benchmark.passed) {
+            System.exit(1);
+        }
+    }
+    
+    private void run() throws Exception {
+        Path directory = Files.createTempDirectory("replication");
+        try {
+            REPORT.printf("%,d books, %,d members, %d desk threads for %d s per step%n%n", this.books, this.members,
+                    this.threads, this.seconds);
+            REPORT.printf("%-10s %10s %10s %14s %14s %8s%n", "Step", "From", "Records", "Journal bytes", "Wire bytes",
+                    "Ratio");
+            
+            Library library = new Library("Leader");
+            LibraryJournal journal = LibraryJournal.open(directory.resolve("leader.journal"), library, 2, 256);
+            List<Book> catalog = new ArrayList<>(this.books);
+            for (int i = 0; i < this.books; i++) {
+                catalog.add(new Book("B" + i, "Title " + i, "Author " + (i % 100), null));
+            }
+            library.addBooks(catalog);
+            List<Member> registered = new ArrayList<>(this.members);
+            for (int i = 0; i < this.members; i++) {
+                registered.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+            }
+            library.addMembers(registered);
+            
+            ReplicationLeader leader = new ReplicationLeader(journal, 0);
+            leader.start();
+            int port = leader.getPort();
+            Path copy = directory.resolve("replica.journal");
+            ReplicationFollower follower = ReplicationFollower.open(copy, new Library("Replica"), 2, 256);
+            follower.start("localhost", port);
+            runDesks(library, 1);
+            check("catch-up", 0, library, journal, follower, leader);
+            
+            leader.close();
+            long reconnectedAt = follower.getAppliedSeq();
+            leader = new ReplicationLeader(journal, port);
+            leader.start();
+            runDesks(library, 2);
+            check("reconnect", reconnectedAt, library, journal, follower, leader);
+            
+            follower.close();
+            runDesks(library, 3);
+            follower = ReplicationFollower.open(copy, new Library("Replica"), 2, 256);
+            long resumedAt = follower.getAppliedSeq();
+            follower.start("localhost", port);
+            check("restart", resumedAt, library, journal, follower, leader);
+            
+            leader.close();
+            journal.close();
+            LibraryJournal promoted = follower.promote();
+            Library primary = follower.getLibrary();
+            ReplicationLeader newLeader = new ReplicationLeader(promoted, 0);
+            newLeader.start();
+            ReplicationFollower standby = ReplicationFollower.open(directory.resolve("standby.journal"),
+                    new Library("Standby"), 2, 256);
+            standby.start("localhost", newLeader.getPort());
+            runDesks(primary, 4);
+            check("promote", 0, primary, promoted, standby, newLeader);
+            
+            standby.close();
+            newLeader.close();
+            promoted.close();
+        } finally {
+            for (File file : directory.toFile().listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+    }
+    
+    /**
+     * Issue, return, place and cancel holds on random books for a while
+     * @param library Library taking the writes
+     * @param step Step number, part of the random seed
+     */
+    private void runDesks(Library library, int step) throws InterruptedException {
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            SplittableRandom random = new SplittableRandom((long) step * this.threads + t);
+            desks.add(new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    String memberId = "M" + random.nextInt(this.members);
+                    String bookId = "B" + random.nextInt(this.books);
+                    try {
+                        int kind = random.nextInt(10);
+                        if (kind < 4) {
+                            library.issueBook(memberId, bookId);
+                        } else if (kind < 8) {
+                            Member holder = library.findHolder(bookId);
+                            if (holder != null) {
+                                library.returnBook(holder.getMemberId(), bookId);
+                            }
+                        } else if (kind < 9) {
+                            library.placeHold(memberId, bookId);
+                        } else {
+                            library.cancelHold(memberId, bookId);
+                        }
+                    } catch (IllegalStateException e) {
+                        // Already issued, on hold, at the limit or nothing to cancel
+                    }
+                }
+            }));
+        }
+        for (Thread desk : desks) {
+            desk.start();
+        }
+        for (Thread desk : desks) {
+            desk.join();
+        }
+    }
+    
+    /**
+     * Wait for a follower to reach the leader's durable sequence, compare
+     * the two libraries and print the step's row
+     * @param step Step name
+     * @param from Sequence number the follower started the step from
+     * @param library Leader's library
+     * @param journal Leader's journal
+     * @param follower Follower of the leader
+     * @param leader Leader, for the bytes it sent
+     */
+    private void check(String step, long from, Library library, LibraryJournal journal, ReplicationFollower follower,
+            ReplicationLeader leader) throws InterruptedException, IOException {
+        long target = journal.getDurableSeq();
+        long deadline = System.currentTimeMillis() + CATCH_UP_MILLIS;
+        while (follower.getAppliedSeq() < target && follower.getFailure() == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        String expected = describe(library);
+        String actual = describe(follower.getLibrary());
+        long shipped = 0;
+        long sent = 0;
+        for (ReplicationLeader.ReplicaStatus replica : leader.getReplicas()) {
+            shipped += replica.getBytesShipped();
+            sent += replica.getBytesSent();
+        }
+        REPORT.printf("%-10s %,10d %,10d %,14d %,14d %7.1f%%%n", step, from, target, shipped, sent,
+                shipped == 0 ? 0.0 : 100.0 * sent / shipped);
+        if (follower.getAppliedSeq() != target || !actual.equals(expected)) {
+            passed = false;
+            REPORT.printf("✗ %s: follower at record %,d of %,d (%s)%n", step, follower.getAppliedSeq(), target,
+                    follower.getFailure() != null ? follower.getFailure() : "state differs");
+        }
+    }
+    
+    /**
+     * Describe a library's statistics, loans and holds, for comparing two libraries
+     * @param library Library to describe
+     * @return Statistics, then each book's holder and holds
+     */
+    private String describe(Library library) {
+        StringBuilder description = new StringBuilder(library.getStats().toString());
+        for (int i = 0; i < this.books; i++) {
+            String bookId = "B" + i;
+            Member holder = library.findHolder(bookId);
+            if (holder != null) {
+                description.append(' ').append(bookId).append('=').append(holder.getMemberId());
+            }
+            for (Hold hold : library.listHolds(bookId)) {
+                description.append(' ').append(hold);
+            }
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * ReportCacheBenchmark.java
+ * Listing throughput with and without the report cache while desks make changes
+ */
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Reporting threads render the four display listings back to back into a
+ * discarding writer, as terminals re-requesting them every few seconds
+ * would, while one desk thread issues and returns random books. "none"
+ * renders every listing from scratch; "cache" keeps every segment; "small"
+ * gives the cache a budget of a tenth of the listings, so LRU eviction runs.
+ *
+ * Usage: java ReportCacheBenchmark [--books 200000] [--members 20000]
+ *        [--reporters 2] [--seconds 5] [--desk-pause-micros 100]
+ *        [--models none,cache,small]
+ */
+
+public class ReportCacheBenchmark {
+    private int books = 200000;
+    private int members = 20000;
+    private int reporters = 2;
+    private int seconds = 5;
+    private long deskPauseMicros = 100;
+    private String[] models = { "none", "cache", "small" };
+    
+    public static void main(String[] args) throws Exception {
+        ReportCacheBenchmark benchmark = new ReportCacheBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    benchmark.members = Integer.parseInt(value);
+                    break;
+                case "--reporters":
+                    benchmark.reporters = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                case "--desk-pause-micros":
+                    benchmark.deskPauseMicros = Long.parseLong(value);
+                    break;
+                case "--models":
+                    benchmark.models = value.split(",");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+    
+    /**
+     * Measure every model and print one row each
+     */
+    private void run() throws InterruptedException {
+        Library library = new Library("Benchmark Library");
+        List<Book> catalog = new ArrayList<>(this.books);
+        for (int i = 0; i < this.books; i++) {
+            catalog.add(new Book("B" + i, "Title " + i, "Author " + (i % 1000), "978" + (1000000000L + i)));
+        }
+        library.addBooks(catalog);
+        List<Member> registered = new ArrayList<>(this.members);
+        for (int i = 0; i < this.members; i++) {
+            registered.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        library.addMembers(registered);
+        
+        // Size of one full set of listings, for the small cache's budget
+        ReportCache sizing = new ReportCache(Long.MAX_VALUE);
+        library.setReportCache(sizing);
+        renderAll(library, discard());
+        long listingBytes = sizing.getUsedBytes();
+        
+        System.out.printf("%,d books, %,d members, %d reporters, desk pause %d us, listings %,d bytes%n%n",
+                this.books, this.members, this.reporters, this.deskPauseMicros, listingBytes);
+        System.out.printf("%-6s %12s %12s %12s%n", "Model", "Reports/s", "Desk ops/s", "Hit rate");
+        for (String model : this.models) {
+            ReportCache cache = model.equals("cache") ? new ReportCache(Long.MAX_VALUE)
+                    : model.equals("small") ? new ReportCache(Math.max(1, listingBytes / 10)) : null;
+            library.setReportCache(cache);
+            measure(model, library, cache);
+        }
+    }
+    
+    private void measure(String model, Library library, ReportCache cache) throws InterruptedException {
+        long deadline = System.nanoTime() + this.seconds * 1000000000L;
+        AtomicLong reports = new AtomicLong();
+        AtomicLong deskOps = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < this.reporters; t++) {
+            threads.add(new Thread(() -> {
+                PrintWriter out = discard();
+                while (System.nanoTime() < deadline) {
+                    renderAll(library, out);
+                    reports.addAndGet(ReportCache.Report.values().length);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            SplittableRandom random = new SplittableRandom(42);
+            long done = 0;
+            while (System.nanoTime() < deadline) {
+                String memberId = "M" + random.nextInt(this.members);
+                String bookId = "B" + random.nextInt(this.books);
+                try {
+                    library.issueBook(memberId, bookId);
+                    library.returnBook(memberId, bookId);
+                } catch (IllegalStateException e) {
+                    // Member at the limit or book out; still one attempt
+                }
+                done += 2;
+                if (this.deskPauseMicros > 0) {
+                    long until = System.nanoTime() + this.deskPauseMicros * 1000;
+                    while (System.nanoTime() < until) {
+                        Thread.yield();
+                    }
+                }
+            }
+            deskOps.addAndGet(done);
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        String hitRate = "-";
+        if (cache != null) {
+            long lookups = cache.getHits() + cache.getMisses();
+            hitRate = String.format("%.1f%%", lookups == 0 ? 0.0 : 100.0 * cache.getHits() / lookups);
+        }
+        System.out.printf("%-6s %,12.1f %,12d %12s%n", model, reports.get() / (double) this.seconds,
+                deskOps.get() / this.seconds, hitRate);
+    }
+    
+    private static void renderAll(Library library, PrintWriter out) {
+        for (ReportCache.Report report : ReportCache.Report.values()) {
+            library.writeReport(report, out);
+        }
+    }
+    
+    private static PrintWriter discard() {
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        return new PrintWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), false);
+    }
+}
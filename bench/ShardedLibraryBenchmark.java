@@ -0,0 +1,149 @@
+/**
+ * ShardedLibraryBenchmark.java
+ * Throughput of one Library against a ShardedLibrary with 1..N shards
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/*
+ * Desk threads issue and return random books to random members (so with
+ * several shards most checkouts cross shards) and add a new book every
+ * hundredth operation, which takes the catalog's write lock. Every
+ * configuration gets the same number of desks; only the library changes.
+ * Shards help once there are enough cores for the desks to run at once.
+ *
+ * Usage: java ShardedLibraryBenchmark [--books 1000000] [--members 100000]
+ *        [--threads 8] [--shards 1,2,4,8] [--seconds 10] [--warmup 3]
+ */
+
+public class ShardedLibraryBenchmark {
+    private int books = 1000000;
+    private int members = 100000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int[] shardCounts = { 1, 2, 4, 8 };
+    private int seconds = 10;
+    private int warmupSeconds = 3;
+    
+    public static void main(String[] args) throws Exception {
+        ShardedLibraryBenchmark benchmark = new ShardedLibraryBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    benchmark.members = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "--shards":
+                    benchmark.shardCounts = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--seconds":
+                    benchmark.seconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    benchmark.warmupSeconds = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+    
+    /**
+     * Measure a plain Library, then each shard count
+     */
+    private void run() throws InterruptedException {
+        System.out.printf("%,d books, %,d members, %d desk threads for %d s, %d cores%n%n", this.books, this.members,
+                this.threads, this.seconds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %12s %10s%n", "Library", "Ops/s", "Refused");
+        
+        Library library = new Library("Benchmark Library");
+        library.addBooks(newBooks(0, this.books));
+        library.addMembers(newMembers());
+        measure("single", library::issueBook, library::returnBook, library::addBook);
+        
+        for (int shardCount : this.shardCounts) {
+            try (ShardedLibrary sharded = new ShardedLibrary("Benchmark Library", shardCount)) {
+                sharded.addBooks(newBooks(0, this.books));
+                sharded.addMembers(newMembers());
+                measure(shardCount + " shards", sharded::issueBook, sharded::returnBook, sharded::addBook);
+            }
+        }
+    }
+    
+    /**
+     * Warm up, then run the desks for the configured time and print one row
+     */
+    private void measure(String name, BiConsumer<String, String> issue, BiConsumer<String, String> giveBack,
+            Consumer<Book> add) throws InterruptedException {
+        AtomicLong nextBook = new AtomicLong(this.books);
+        runDesks(this.warmupSeconds, issue, giveBack, add, nextBook, new AtomicLong(), new AtomicLong());
+        AtomicLong operations = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        runDesks(this.seconds, issue, giveBack, add, nextBook, operations, refused);
+        System.out.printf("%-10s %,12d %,10d%n", name, operations.get() / this.seconds, refused.get());
+    }
+    
+    private void runDesks(int seconds, BiConsumer<String, String> issue, BiConsumer<String, String> giveBack,
+            Consumer<Book> add, AtomicLong nextBook, AtomicLong operations, AtomicLong refused)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1000000000L;
+        List<Thread> desks = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            Thread desk = new Thread(() -> {
+                long done = 0;
+                long failed = 0;
+                while ((done & 255) != 0 || System.nanoTime() < deadline) {
+                    String memberId = "M" + random.nextInt(this.members);
+                    String bookId = "B" + random.nextInt(this.books);
+                    try {
+                        issue.accept(memberId, bookId);
+                        giveBack.accept(memberId, bookId);
+                    } catch (IllegalStateException e) {
+                        failed++; // Another desk has the book, or the member is at the limit
+                    }
+                    if (done % 100 == 0) {
+                        long id = nextBook.getAndIncrement();
+                        add.accept(new Book("B" + id, "Title " + id, "Author " + (id % 1000), null));
+                    }
+                    done++;
+                }
+                operations.addAndGet(done);
+                refused.addAndGet(failed);
+            });
+            desks.add(desk);
+            desk.start();
+        }
+        for (Thread desk : desks) {
+            desk.join();
+        }
+    }
+    
+    private static List<Book> newBooks(int from, int to) {
+        List<Book> books = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            books.add(new Book("B" + i, "Title " + i, "Author " + (i % 1000), null));
+        }
+        return books;
+    }
+    
+    private List<Member> newMembers() {
+        List<Member> members = new ArrayList<>(this.members);
+        for (int i = 0; i < this.members; i++) {
+            members.add(new Member("M" + i, "Member " + i, null, null, "2025-01-01"));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * SnapshotStartupBenchmark.java
+ * Library startup time: building from scratch versus restoring a snapshot
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * "naive" builds the library the way initializeLibrary does, one addBook,
+ * addMember and issueBook call at a time. "write" snapshots that library
+ * while it is live, and "restore" maps the snapshot into a fresh library;
+ * restore runs several times, and the restored library's statistics are
+ * checked against the original. Run each measurement with enough heap
+ * for two libraries (-Xmx4g at the defaults).
+ *
+ * Usage: java SnapshotStartupBenchmark [--books 1000000] [--members 100000]
+ *        [--loans 200000] [--runs 3] [--file <path>]
+ */
+
+public class SnapshotStartupBenchmark {
+    private int books = 1000000;
+    private int members = 100000;
+    private int loans = 200000;
+    private int runs = 3;
+    private Path file;
+    
+    public static void main(String[] args) throws Exception {
+        SnapshotStartupBenchmark benchmark = new SnapshotStartupBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--books":
+                    benchmark.books = Integer.parseInt(value);
+                    break;
+                case "--members":
+                    benchmark.members = Integer.parseInt(value);
+                    break;
+                case "--loans":
+                    benchmark.loans = Integer.parseInt(value);
+                    break;
+                case "--runs":
+                    benchmark.runs = Integer.parseInt(value);
+                    break;
+                case "--file":
+                    benchmark.file = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+    
+    private void run() throws IOException {
+        if (this.loans > (long) this.members * Member.MAX_BOOKS || this.loans > this.books) {
+            throw new IllegalArgumentException("More loans than the members may hold or the books allow");
+        }
+        Path path = this.file != null ? this.file : Files.createTempFile("library", ".snapshot");
+        System.out.printf("%,d books, %,d members, %,d loans%n%n", this.books, this.members, this.loans);
+        System.out.printf("%-8s %10s %14s%n", "Step", "Seconds", "Snapshot size");
+        
+        System.gc();
+        long start = System.nanoTime();
+        Library original = new Library("Benchmark Library");
+        for (int i = 0; i < this.books; i++) {
+            original.addBook(new Book("B" + i, "Title " + i, "Author " + (i % 1000), "978" + (1000000000L + i)));
+        }
+        for (int i = 0; i < this.members; i++) {
+            original.addMember(new Member("M" + i, "Member " + i, "m" + i + "@example.com", null, "2025-01-01"));
+        }
+        for (int i = 0; i < this.loans; i++) {
+            original.issueBook("M" + (i % this.members), "B" + i);
+        }
+        print("naive", start, -1);
+        
+        start = System.nanoTime();
+        long size = LibrarySnapshot.write(original, path);
+        print("write", start, size);
+        
+        LibraryStats expected = original.getStats();
+        original = null;
+        for (int run = 0; run < this.runs; run++) {
+            System.gc();
+            start = System.nanoTime();
+            Library restored = new Library("Benchmark Library");
+            LibrarySnapshot.restore(path, restored);
+            print("restore", start, size);
+            if (!restored.getStats().toString().equals(expected.toString())) {
+                throw new IllegalStateException("Restored " + restored.getStats() + ", expected " + expected);
+            }
+        }
+        if (this.file == null) {
+            Files.delete(path);
+        }
+    }
+    
+    private static void print(String step, long startNanos, long size) {
+        System.out.printf("%-8s %10.2f %14s%n", step, (System.nanoTime() - startNanos) / 1e9,
+                size < 0 ? "-" : String.format("%,d", size));
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * BatchCommandRunner.java
+ * Non-interactive execution of library commands from a file or stream
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * One command per line; blank lines and lines starting with # are skipped.
+ * Fields are separated by spaces or tabs and may be double-quoted:
+ *
+ *   ADD_BOOK    bookId "title" "author" isbn
+ *   ADD_MEMBER  memberId "name" email phoneNumber [membershipDate]
+ *   ISSUE       memberId bookId [issueDate [dueDate]]
+ *   RETURN      memberId bookId [returnDate]
+ *   ISSUE_ALL   memberId bookId...       (all or none, dated today)
+ *   RETURN_ALL  memberId bookId...
+ *   PAY         memberId amount          (minor units, e.g. 250 for 2.50)
+ *   ACCRUE      [asOfDate]
+ *   HOLD        memberId bookId [date]
+ *   CANCEL_HOLD memberId bookId [date]
+ *   EXPIRE_HOLDS [asOfDate]
+ *   HOLDS       bookId
+ *   FIND_BOOK   bookId
+ *   FIND_MEMBER memberId
+ *   STATS
+ *
+ * Every command produces one tab-separated result line:
+ *   lineNumber  OK|ERROR  COMMAND  detail
+ * The library publishes events only to a listener the caller attaches, so
+ * by default only result lines reach the output.
+ */
+
+public class BatchCommandRunner {
+    private final Library library;
+    private final int today;
+    private final List<String> fields;
+    private final StringBuilder field;
+    
+    /**
+     * Constructor to create a runner for a library
+     * @param library Library the commands run against
+     */
+    public BatchCommandRunner(Library library) {
+        this.library = library;
+        this.today = (int) LocalDate.now().toEpochDay();
+        this.fields = new ArrayList<>(8);
+        this.field = new StringBuilder();
+    }
+    
+    /**
+     * Run every command in a stream
+     * @param in Command source
+     * @param out Destination for result lines; flushed before returning
+     * @param errorsOnly Whether to write result lines for failed commands only
+     * @return Report with command counts and throughput
+     * @throws IOException if the commands cannot be read
+     */
+    public BatchReport run(BufferedReader in, PrintWriter out, boolean errorsOnly) throws IOException {
+        long startTime = System.nanoTime();
+        BatchReport report = new BatchReport();
+        try {
+            long lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (!tokenize(line)) {
+                    continue;
+                }
+                String command = this.fields.get(0);
+                String detail;
+                try {
+                    detail = execute(command);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    report.addFailed();
+                    writeResult(out, lineNumber, "ERROR", command, e.getMessage());
+                    continue;
+                }
+                report.addSucceeded();
+                if (!errorsOnly) {
+                    writeResult(out, lineNumber, "OK", command, detail);
+                }
+            }
+        } finally {
+            out.flush();
+        }
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        return report;
+    }
+    
+    /**
+     * Run the command held in fields
+     * @param command Command name (first field)
+     * @return Detail for the result line
+     * @throws IllegalArgumentException if the command is unknown, malformed or names a missing record
+     * @throws IllegalStateException if the library rejects the operation
+     */
+    private String execute(String command) {
+        switch (command) {
+            case "ADD_BOOK":
+                expectFields(command, 5, 5);
+                this.library.addBook(new Book(arg(1), arg(2), arg(3), arg(4)));
+                return arg(1);
+            case "ADD_MEMBER":
+                expectFields(command, 5, 6);
+                this.library.addMember(new Member(arg(1), arg(2), arg(3), arg(4),
+                        this.fields.size() == 6 ? arg(5) : Book.formatDay(this.today)));
+                return arg(1);
+            case "ISSUE": {
+                expectFields(command, 3, 5);
+                int issueDay = this.fields.size() >= 4 ? Book.toEpochDay(arg(3)) : this.today;
+                int dueDay = this.fields.size() == 5 ? Book.toEpochDay(arg(4))
+                        : issueDay + this.library.getLoanPeriod();
+                this.library.issueBook(arg(1), arg(2), issueDay, dueDay);
+                return arg(1) + " " + arg(2) + " due " + Book.formatDay(dueDay);
+            }
+            case "RETURN":
+                expectFields(command, 3, 4);
+                this.library.returnBook(arg(1), arg(2),
+                        this.fields.size() == 4 ? Book.toEpochDay(arg(3)) : this.today);
+                return arg(1) + " " + arg(2);
+            case "ISSUE_ALL":
+            case "RETURN_ALL": {
+                if (this.fields.size() < 3) {
+                    throw new IllegalArgumentException(command + " expects a member and at least one book");
+                }
+                List<String> bookIds = this.fields.subList(2, this.fields.size());
+                CheckoutResult result = command.equals("ISSUE_ALL")
+                        ? this.library.issueBooks(arg(1), bookIds, this.today, this.today + this.library.getLoanPeriod())
+                        : this.library.returnBooks(arg(1), bookIds, this.today);
+                if (!result.isApplied()) {
+                    throw new IllegalStateException(result.toString());
+                }
+                return result.toString();
+            }
+            case "PAY": {
+                expectFields(command, 3, 3);
+                long amount;
+                try {
+                    amount = Long.parseLong(arg(2));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid amount " + arg(2));
+                }
+                return arg(1) + " balance " + FinePolicy.format(this.library.payFine(arg(1), amount));
+            }
+            case "ACCRUE": {
+                expectFields(command, 1, 2);
+                int asOfDay = this.fields.size() == 2 ? Book.toEpochDay(arg(1)) : this.today;
+                return "charged " + FinePolicy.format(this.library.accrueFines(LocalDate.ofEpochDay(asOfDay)));
+            }
+            case "HOLD": {
+                expectFields(command, 3, 4);
+                Hold hold = this.library.placeHold(arg(1), arg(2),
+                        this.fields.size() == 4 ? Book.toEpochDay(arg(3)) : this.today);
+                return arg(1) + " " + arg(2) + " " + hold.getStatus()
+                        + (hold.getStatus() == Hold.Status.READY ? " until " + hold.getPickupDeadline() : "");
+            }
+            case "CANCEL_HOLD":
+                expectFields(command, 3, 4);
+                this.library.cancelHold(arg(1), arg(2),
+                        this.fields.size() == 4 ? Book.toEpochDay(arg(3)) : this.today);
+                return arg(1) + " " + arg(2);
+            case "EXPIRE_HOLDS": {
+                expectFields(command, 1, 2);
+                int asOfDay = this.fields.size() == 2 ? Book.toEpochDay(arg(1)) : this.today;
+                return "expired " + this.library.expireHolds(LocalDate.ofEpochDay(asOfDay));
+            }
+            case "HOLDS": {
+                expectFields(command, 2, 2);
+                if (this.library.findBook(arg(1)) == null) {
+                    throw new IllegalArgumentException("Book with ID " + arg(1) + " not found");
+                }
+                StringBuilder detail = new StringBuilder();
+                for (Hold hold : this.library.listHolds(arg(1))) {
+                    detail.append(detail.length() == 0 ? "" : ", ").append(hold.getMemberId());
+                    if (hold.getStatus() == Hold.Status.READY) {
+                        detail.append(" (ready until ").append(hold.getPickupDeadline()).append(')');
+                    }
+                }
+                return detail.length() == 0 ? "no holds" : detail.toString();
+            }
+            case "FIND_BOOK": {
+                expectFields(command, 2, 2);
+                Book book = this.library.findBook(arg(1));
+                if (book == null) {
+                    throw new IllegalArgumentException("Book with ID " + arg(1) + " not found");
+                }
+                return book.getTitle() + " by " + book.getAuthor()
+                        + (book.isAvailable() ? ", available" : ", issued to " + book.getIssuedTo()
+                        + " on " + book.getIssueDate() + ", due " + book.getDueDate());
+            }
+            case "FIND_MEMBER": {
+                expectFields(command, 2, 2);
+                Member member = this.library.findMember(arg(1));
+                if (member == null) {
+                    throw new IllegalArgumentException("Member with ID " + arg(1) + " not found");
+                }
+                return member.getName() + ", " + member.getIssuedBooksCount() + " books issued, owes "
+                        + FinePolicy.format(this.library.getAccount(arg(1)).getBalance());
+            }
+            case "STATS":
+                expectFields(command, 1, 1);
+                return this.library.getStats().toString();
+            default:
+                throw new IllegalArgumentException("Unknown command " + command);
+        }
+    }
+    
+    /**
+     * Check the number of fields of a command
+     * @param command Command name
+     * @param min Minimum field count, including the command
+     * @param max Maximum field count, including the command
+     * @throws IllegalArgumentException if the count is out of range
+     */
+    private void expectFields(String command, int min, int max) {
+        int count = this.fields.size();
+        if (count < min || count > max) {
+            throw new IllegalArgumentException(command + " expects " + (min - 1)
+                    + (min == max ? "" : " to " + (max - 1)) + " arguments, found " + (count - 1));
+        }
+    }
+    
+    private String arg(int index) {
+        return this.fields.get(index);
+    }
+    
+    /**
+     * Split a line into fields; a quoted field may contain spaces, "" is a
+     * literal quote and an unterminated quote runs to the end of the line
+     * @param line The line
+     * @return false if the line is blank or a comment
+     */
+    private boolean tokenize(String line) {
+        this.fields.clear();
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t') {
+                i++;
+            } else if (c == '#' && this.fields.isEmpty()) {
+                return false;
+            } else if (c == '"') {
+                this.field.setLength(0);
+                i++;
+                while (i < length) {
+                    c = line.charAt(i++);
+                    if (c == '"' && i < length && line.charAt(i) == '"') {
+                        this.field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        break;
+                    } else {
+                        this.field.append(c);
+                    }
+                }
+                this.fields.add(this.field.toString());
+            } else {
+                int start = i;
+                while (i < length && line.charAt(i) != ' ' && line.charAt(i) != '\t') {
+                    i++;
+                }
+                this.fields.add(line.substring(start, i));
+            }
+        }
+        return !this.fields.isEmpty();
+    }
+    
+    /**
+     * Write one tab-separated result line
+     * @param out Destination
+     * @param lineNumber Line of the command
+     * @param status OK or ERROR
+     * @param command Command name
+     * @param detail Result detail or error message
+     */
+    private static void writeResult(PrintWriter out, long lineNumber, String status, String command, String detail) {
+        out.print(lineNumber);
+        out.print('\t');
+        out.print(status);
+        out.print('\t');
+        out.print(command);
+        out.print('\t');
+        out.print(detail);
+        out.print('\n');
+    }
+}
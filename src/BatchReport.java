@@ -0,0 +1,57 @@
+/**
+ * BatchReport.java
+ * Outcome of a batch command run
+ */
+
+public class BatchReport {
+    private long commandsSucceeded;
+    private long commandsFailed;
+    private long elapsedNanos;
+    
+    void addSucceeded() {
+        this.commandsSucceeded++;
+    }
+    
+    void addFailed() {
+        this.commandsFailed++;
+    }
+    
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    /**
+     * Get the number of commands run
+     * @return Succeeded plus failed commands
+     */
+    public long getCommandsRun() {
+        return this.commandsSucceeded + this.commandsFailed;
+    }
+    
+    /**
+     * Get the batch throughput
+     * @return Commands run per second
+     */
+    public double getCommandsPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : getCommandsRun() * 1e9 / this.elapsedNanos;
+    }
+    
+    // Getters
+    public long getCommandsSucceeded() {
+        return commandsSucceeded;
+    }
+    
+    public long getCommandsFailed() {
+        return commandsFailed;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Ran %,d commands (%,d succeeded, %,d failed) in %.2f s (%,.0f commands/s)",
+                getCommandsRun(), commandsSucceeded, commandsFailed, elapsedNanos / 1e9, getCommandsPerSecond());
+    }
+}
@@ -3,14 +3,23 @@
  * Represents a book in the library system
  */
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
 public class Book {
+    public static final int NO_DATE = Integer.MIN_VALUE; // Epoch day of a date that is not set
+    
     private String bookId;
     private String title;
     private String author;
     private String isbn;
-    private boolean isAvailable;
-    private String issuedTo; // Name of member who issued the book
-    private String issueDate;
+    // Written under the Library's book lock; volatile so listings see current state
+    private volatile boolean isAvailable;
+    private volatile String issuedTo; // Name of member who issued the book
+    private volatile int issueDay; // Epoch day, NO_DATE when available
+    private volatile int dueDay; // Epoch day, NO_DATE when available or not tracked
+    private int ordinal = -1; // Position in the owning Library's catalog
+    private int dueSlot; // Position in the Library's due-date bucket, guarded by the bucket
     
     /**
      * Constructor to create a new book
@@ -26,23 +35,46 @@ public class Book {
         this.isbn = isbn;
         this.isAvailable = true;
         this.issuedTo = null;
-        this.issueDate = null;
+        this.issueDay = NO_DATE;
+        this.dueDay = NO_DATE;
     }
     
     /**
-     * Issue the book to a member
+     * Issue the book to a member, without a due date
      * @param memberName Name of the member
-     * @param issueDate Date of issue
+     * @param issueDate Date of issue (yyyy-MM-dd)
      * @throws IllegalStateException if book is already issued
+     * @throws IllegalArgumentException if the date is not yyyy-MM-dd
      */
     public void issueBook(String memberName, String issueDate) {
+        issueBook(memberName, toEpochDay(issueDate), NO_DATE);
+    }
+    
+    /**
+     * Issue the book to a member
+     * @param memberName Name of the member
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back, or NO_DATE
+     * @throws IllegalStateException if book is already issued
+     */
+    void issueBook(String memberName, int issueDay, int dueDay) {
         if (!this.isAvailable) {
             throw new IllegalStateException("Book is already issued to " + this.issuedTo);
         }
+        restoreIssue(memberName, issueDay, dueDay);
+    }
+    
+    /**
+     * Mark the book as issued without checking it is available (used when restoring a snapshot)
+     * @param memberName Name of the member
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back, or NO_DATE
+     */
+    void restoreIssue(String memberName, int issueDay, int dueDay) {
         this.isAvailable = false;
         this.issuedTo = memberName;
-        this.issueDate = issueDate;
-        System.out.println("✓ Book '" + this.title + "' issued to " + memberName);
+        this.issueDay = issueDay;
+        this.dueDay = dueDay;
     }
     
     /**
@@ -57,8 +89,8 @@ public class Book {
         String previousMember = this.issuedTo;
         this.isAvailable = true;
         this.issuedTo = null;
-        this.issueDate = null;
-        System.out.println("✓ Book '" + this.title + "' returned by " + previousMember);
+        this.issueDay = NO_DATE;
+        this.dueDay = NO_DATE;
         return previousMember;
     }
     
@@ -82,7 +114,10 @@ public class Book {
         System.out.println("Status: " + (this.isAvailable ? "Available" : "Issued"));
         if (!this.isAvailable) {
             System.out.println("Issued To: " + this.issuedTo);
-            System.out.println("Issue Date: " + this.issueDate);
+            System.out.println("Issue Date: " + getIssueDate());
+            if (this.dueDay != NO_DATE) {
+                System.out.println("Due Date: " + getDueDate());
+            }
         }
         System.out.println("--------------------");
     }
@@ -108,7 +143,69 @@ public class Book {
         return issuedTo;
     }
     
+    /**
+     * Get the issue date
+     * @return Date of issue (yyyy-MM-dd), or null when available
+     */
     public String getIssueDate() {
-        return issueDate;
+        return formatDay(this.issueDay);
+    }
+    
+    /**
+     * Get the due date
+     * @return Date the book is due back (yyyy-MM-dd), or null when available
+     */
+    public String getDueDate() {
+        return formatDay(this.dueDay);
+    }
+    
+    public int getIssueDay() {
+        return issueDay;
+    }
+    
+    public int getDueDay() {
+        return dueDay;
+    }
+    
+    int getOrdinal() {
+        return ordinal;
+    }
+    
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+    
+    int getDueSlot() {
+        return dueSlot;
+    }
+    
+    void setDueSlot(int dueSlot) {
+        this.dueSlot = dueSlot;
+    }
+    
+    /**
+     * Convert a yyyy-MM-dd date to an epoch day
+     * @param date The date
+     * @return Days since 1970-01-01
+     * @throws IllegalArgumentException if the date is not yyyy-MM-dd
+     */
+    static int toEpochDay(String date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date " + date + " (expected yyyy-MM-dd)");
+        }
+    }
+    
+    /**
+     * Format an epoch day as yyyy-MM-dd
+     * @param day Epoch day or NO_DATE
+     * @return The date, or null for NO_DATE
+     */
+    static String formatDay(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day).toString();
     }
 }
@@ -0,0 +1,26 @@
+/**
+ * BookFilter.java
+ * Which books a catalog listing includes
+ */
+
+public enum BookFilter {
+    ALL,
+    AVAILABLE,
+    ISSUED;
+    
+    /**
+     * Check whether a book belongs in the listing
+     * @param book The book
+     * @return true if the book matches this filter
+     */
+    public boolean matches(Book book) {
+        switch (this) {
+            case AVAILABLE:
+                return book.isAvailable();
+            case ISSUED:
+                return !book.isAvailable();
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * BookSearchIndex.java
+ * Inverted index over book titles and authors
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+
+/*
+ * Maps each lower-cased title/author token to a sorted array of book
+ * ordinals. Books are indexed in ordinal order, so appending keeps every
+ * posting list sorted without re-sorting. Terms live in a hash map for
+ * O(1) indexing; prefix queries use a sorted term dictionary that new terms
+ * are merged into lazily (via a small sorted tail) at query time.
+ * Additions are not thread-safe; the Library guards them with its catalog
+ * write lock and runs queries under the read lock.
+ */
+
+public class BookSearchIndex {
+    private static final int MIN_TAIL_SIZE = 4096;
+    
+    private Map<String, Postings> terms;
+    private List<String> newTerms; // Terms not yet in a sorted dictionary
+    private String[] sortedTerms; // Guarded by this
+    private String[] sortedTail; // Guarded by this; recent terms, merged into sortedTerms when large
+    
+    /**
+     * Constructor to create an empty index
+     */
+    public BookSearchIndex() {
+        this.terms = new HashMap<>();
+        this.newTerms = new ArrayList<>();
+        this.sortedTerms = new String[0];
+        this.sortedTail = new String[0];
+    }
+    
+    /**
+     * Index a book's title and author
+     * @param ordinal Catalog ordinal of the book; must be larger than any indexed so far
+     * @param book The book
+     */
+    public void add(int ordinal, Book book) {
+        addText(ordinal, book.getTitle());
+        addText(ordinal, book.getAuthor());
+    }
+    
+    /**
+     * Find books matching every term of a query. The last term also matches
+     * as a prefix, so partially typed words work for type-ahead.
+     * @param query Free-text query
+     * @param books Resolves ordinals to books, to check prefixes
+     * @param limit Maximum number of ordinals to return
+     * @return Matching ordinals in catalog order
+     */
+    public int[] search(String query, IntFunction<Book> books, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        String prefix = queryTerms.remove(queryTerms.size() - 1);
+        
+        if (queryTerms.isEmpty()) {
+            return unionOfPrefix(prefix, limit);
+        }
+        
+        // Intersect exact terms, starting with the rarest
+        Postings[] lists = new Postings[queryTerms.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = this.terms.get(queryTerms.get(i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        
+        int[] result = new int[Math.min(limit, lists[0].size)];
+        int found = 0;
+        for (int i = 0; i < lists[0].size && found < result.length; i++) {
+            int ordinal = lists[0].ordinals[i];
+            boolean matches = true;
+            for (int j = 1; j < lists.length && matches; j++) {
+                matches = lists[j].contains(ordinal);
+            }
+            if (matches) {
+                // Checking the candidate's own text is cheaper than merging
+                // every posting list that starts with the prefix
+                Book book = books.apply(ordinal);
+                matches = hasTokenWithPrefix(book.getTitle(), prefix)
+                        || hasTokenWithPrefix(book.getAuthor(), prefix);
+            }
+            if (matches) {
+                result[found++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+    
+    /**
+     * Get the number of distinct indexed terms
+     * @return Term count
+     */
+    public int getTermCount() {
+        return this.terms.size();
+    }
+    
+    /**
+     * Merge the posting lists of all terms starting with a prefix
+     * @param prefix Lower-cased prefix
+     * @param limit Maximum number of ordinals to return
+     * @return Matching ordinals in catalog order
+     */
+    private int[] unionOfPrefix(String prefix, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        synchronized (this) {
+            sortNewTerms();
+            collectPrefix(this.sortedTerms, prefix, lists);
+            collectPrefix(this.sortedTail, prefix, lists);
+        }
+        if (lists.size() == 1) {
+            Postings only = lists.get(0);
+            return Arrays.copyOf(only.ordinals, Math.min(limit, only.size));
+        }
+        
+        // k-way merge; each cursor is {current ordinal, list index, position}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+                (a, b) -> Integer.compare(a[0], b[0]));
+        for (int i = 0; i < lists.size(); i++) {
+            heads.add(new int[] { lists.get(i).ordinals[0], i, 0 });
+        }
+        
+        int[] result = new int[Math.min(limit, 1024)];
+        int found = 0;
+        int last = -1;
+        while (!heads.isEmpty() && found < limit) {
+            int[] head = heads.poll();
+            if (head[0] != last) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, Math.min(limit, result.length * 2));
+                }
+                result[found++] = head[0];
+                last = head[0];
+            }
+            Postings list = lists.get(head[1]);
+            if (++head[2] < list.size) {
+                head[0] = list.ordinals[head[2]];
+                heads.add(head);
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+    
+    /**
+     * Move newly added terms into the sorted tail, folding the tail into the
+     * main dictionary once it grows large (caller holds this)
+     */
+    private void sortNewTerms() {
+        if (this.newTerms.isEmpty()) {
+            return;
+        }
+        String[] added = this.newTerms.toArray(new String[0]);
+        Arrays.sort(added);
+        this.newTerms.clear();
+        this.sortedTail = merge(this.sortedTail, added);
+        if (this.sortedTail.length > Math.max(MIN_TAIL_SIZE, this.sortedTerms.length / 16)) {
+            this.sortedTerms = merge(this.sortedTerms, this.sortedTail);
+            this.sortedTail = new String[0];
+        }
+    }
+    
+    /**
+     * Add the postings of every term in a sorted dictionary that starts with a prefix
+     * @param dictionary Sorted terms
+     * @param prefix Lower-cased prefix
+     * @param lists Receives the matching posting lists
+     */
+    private void collectPrefix(String[] dictionary, String prefix, List<Postings> lists) {
+        int i = Arrays.binarySearch(dictionary, prefix);
+        for (i = i < 0 ? -i - 1 : i; i < dictionary.length && dictionary[i].startsWith(prefix); i++) {
+            lists.add(this.terms.get(dictionary[i]));
+        }
+    }
+    
+    /**
+     * Merge two sorted term arrays
+     * @param a Sorted terms
+     * @param b Sorted terms
+     * @return Sorted union
+     */
+    private static String[] merge(String[] a, String[] b) {
+        String[] merged = new String[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            merged[k++] = a[i].compareTo(b[j]) <= 0 ? a[i++] : b[j++];
+        }
+        System.arraycopy(a, i, merged, k, a.length - i);
+        System.arraycopy(b, j, merged, k + a.length - i, b.length - j);
+        return merged;
+    }
+    
+    /**
+     * Index every token of a piece of text
+     * @param ordinal Catalog ordinal of the book
+     * @param text Title or author, may be null
+     */
+    private void addText(int ordinal, String text) {
+        for (String token : tokenize(text)) {
+            Postings postings = this.terms.get(token);
+            if (postings == null) {
+                postings = new Postings();
+                this.terms.put(token, postings);
+                this.newTerms.add(token);
+            }
+            postings.add(ordinal);
+        }
+    }
+    
+    /**
+     * Split text into lower-cased letter/digit tokens
+     * @param text Text to split, may be null
+     * @return Tokens in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+    
+    /**
+     * Check whether any token of a text starts with a prefix, without allocating
+     * @param text Title or author, may be null
+     * @param prefix Lower-cased prefix
+     * @return true if a token matches
+     */
+    private static boolean hasTokenWithPrefix(String text, String prefix) {
+        if (text == null) {
+            return false;
+        }
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int j = 0;
+            while (j < prefix.length() && i + j < text.length()
+                    && Character.toLowerCase(text.charAt(i + j)) == prefix.charAt(j)) {
+                j++;
+            }
+            if (j == prefix.length()) {
+                return true;
+            }
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Growable sorted array of book ordinals
+     */
+    private static class Postings {
+        private int[] ordinals = new int[2];
+        private int size;
+        
+        void add(int ordinal) {
+            if (this.size > 0 && this.ordinals[this.size - 1] == ordinal) {
+                return; // Token repeated within the same book
+            }
+            if (this.size == this.ordinals.length) {
+                this.ordinals = Arrays.copyOf(this.ordinals, this.size * 2);
+            }
+            this.ordinals[this.size++] = ordinal;
+        }
+        
+        boolean contains(int ordinal) {
+            return Arrays.binarySearch(this.ordinals, 0, this.size, ordinal) >= 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * BookStore.java
+ * Storage behind a Library's catalog: books by ordinal and by ID
+ */
+
+/*
+ * Implementations: HeapBookStore keeps every Book object on the heap;
+ * CompactCatalog keeps records in compact columns on the heap and
+ * OffHeapCatalog outside it, and both build Book objects on demand, holding
+ * on to the ones that are on loan. Either way, get and
+ * find must return the same object for a book on loan, because members and
+ * the due-date index refer to it. Adds happen under the Library's catalog
+ * write lock; lookups may run at any time.
+ */
+
+interface BookStore {
+    /**
+     * Add a book and assign it the next ordinal
+     * @param book The book
+     * @return false if a book with the same ID already exists
+     */
+    boolean add(Book book);
+    
+    /**
+     * Get a book by ordinal
+     * @param ordinal Catalog ordinal
+     * @return The book
+     */
+    Book get(int ordinal);
+    
+    /**
+     * Find a book by ID
+     * @param bookId The book ID
+     * @return The book, or null if not found
+     */
+    Book find(String bookId);
+    
+    /**
+     * Get the shared object for a book that may be a detached copy; call
+     * with the book's lock held before checking or changing its state
+     * @param book A book from get or find
+     * @return The object on loan if the book is issued, otherwise book itself
+     */
+    Book current(Book book);
+    
+    /**
+     * Record that a book was issued or returned; call with the book's lock held
+     * @param book The book, with its new state
+     */
+    void update(Book book);
+    
+    /**
+     * Get the number of books
+     * @return Book count
+     */
+    int size();
+}
@@ -0,0 +1,334 @@
+/**
+ * CatalogImporter.java
+ * Parallel bulk import of books and members from CSV/TSV files
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Import runs in three stages:
+ *   1. Split the file into ~4 MB chunks that end on line boundaries.
+ *   2. Memory-map and parse the chunks in parallel, validating every row.
+ *   3. Insert the parsed rows in file order through Library.addBooks /
+ *      addMembers, one lock acquisition and index update per batch.
+ * Book rows are "bookId,title,author,isbn"; member rows are
+ * "memberId,name,email,phoneNumber[,membershipDate]". Files ending in .tsv
+ * are tab-separated; anything else is CSV with optional double quotes
+ * (fields may not contain line breaks). A first line whose first field is
+ * the column name ("bookId" / "memberId") is treated as a header.
+ */
+
+public class CatalogImporter {
+    private static final int CHUNK_SIZE = 4 << 20;
+    private static final int BATCH_SIZE = 10000;
+    
+    /**
+     * Import books from a CSV or TSV file
+     * @param path Source file
+     * @param library Library to add the books to
+     * @return Report with counts, throughput and rejected rows
+     * @throws IOException if the file cannot be read
+     */
+    public static ImportReport importBooks(Path path, Library library) throws IOException {
+        return importRows(path, "bookId", CatalogImporter::parseBook, library::addBooks, Book::getBookId);
+    }
+    
+    /**
+     * Import members from a CSV or TSV file
+     * @param path Source file
+     * @param library Library to register the members in
+     * @return Report with counts, throughput and rejected rows
+     * @throws IOException if the file cannot be read
+     */
+    public static ImportReport importMembers(Path path, Library library) throws IOException {
+        String today = LocalDate.now().toString();
+        return importRows(path, "memberId", fields -> parseMember(fields, today),
+                library::addMembers, Member::getMemberId);
+    }
+    
+    /**
+     * Run the split / parallel parse / batched insert pipeline
+     * @param path Source file
+     * @param headerField First column name, used to recognise a header line
+     * @param factory Builds a record from a row's fields; throws IllegalArgumentException to reject it
+     * @param inserter Inserts a batch and returns the records rejected as duplicates
+     * @param idOf Gets a record's ID for duplicate messages
+     * @return Import report
+     * @throws IOException if the file cannot be read
+     */
+    private static <T> ImportReport importRows(Path path, String headerField, Function<String[], T> factory,
+            Function<List<T>, List<T>> inserter, Function<T, String> idOf) throws IOException {
+        long startTime = System.nanoTime();
+        ImportReport report = new ImportReport(path.toString());
+        String name = path.getFileName().toString().toLowerCase();
+        char delimiter = name.endsWith(".tsv") || name.endsWith(".tab") ? '\t' : ',';
+        
+        List<ParsedChunk<T>> chunks;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> bounds = splitIntoChunks(channel);
+            chunks = bounds.parallelStream()
+                    .map(bound -> parseChunk(channel, bound[0], bound[1], bound[0] == 0,
+                            delimiter, headerField, factory))
+                    .collect(Collectors.toList());
+        }
+        
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        long[] batchLines = new long[BATCH_SIZE];
+        long lineOffset = 0;
+        for (ParsedChunk<T> chunk : chunks) {
+            report.addRowsRead(chunk.rowsRead);
+            for (int i = 0; i < chunk.errorLines.size(); i++) {
+                report.reject(lineOffset + chunk.errorLines.get(i), chunk.errorReasons.get(i));
+            }
+            for (int i = 0; i < chunk.records.size(); i++) {
+                batchLines[batch.size()] = lineOffset + chunk.recordLines[i];
+                batch.add(chunk.records.get(i));
+                if (batch.size() == BATCH_SIZE) {
+                    insertBatch(batch, batchLines, inserter, idOf, report);
+                }
+            }
+            lineOffset += chunk.lineCount;
+        }
+        insertBatch(batch, batchLines, inserter, idOf, report);
+        
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        System.out.println("✓ " + report);
+        return report;
+    }
+    
+    /**
+     * Insert one batch and report its duplicates
+     * @param batch Records to insert; cleared afterwards
+     * @param batchLines Line number of each record in the batch
+     * @param inserter Library batch insert
+     * @param idOf Gets a record's ID
+     * @param report Report to update
+     */
+    private static <T> void insertBatch(List<T> batch, long[] batchLines, Function<List<T>, List<T>> inserter,
+            Function<T, String> idOf, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> rejected = inserter.apply(batch);
+        report.addRowsImported(batch.size() - rejected.size());
+        if (!rejected.isEmpty()) {
+            Map<T, Long> lines = new IdentityHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                lines.put(batch.get(i), batchLines[i]);
+            }
+            for (T record : rejected) {
+                report.reject(lines.get(record), "duplicate ID " + idOf.apply(record));
+            }
+        }
+        batch.clear();
+    }
+    
+    /**
+     * Split a file into chunks of about CHUNK_SIZE bytes that end just after a newline
+     * @param channel Open file
+     * @return List of {start, end} byte ranges
+     * @throws IOException if the file cannot be read
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel) throws IOException {
+        List<long[]> bounds = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_SIZE);
+            // Extend to the next line boundary
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end = read <= 0 ? size : end + read;
+            }
+            bounds.add(new long[] { start, Math.min(end, size) });
+            start = end;
+        }
+        return bounds;
+    }
+    
+    /**
+     * Parse and validate every line of one chunk
+     * @param channel Open file
+     * @param start First byte of the chunk
+     * @param end Byte after the chunk
+     * @param firstChunk Whether the chunk starts the file (and may hold a header)
+     * @param delimiter Field separator
+     * @param headerField First column name of a header line
+     * @param factory Record factory
+     * @return Parsed records and rejected rows, with chunk-relative line numbers
+     */
+    private static <T> ParsedChunk<T> parseChunk(FileChannel channel, long start, long end, boolean firstChunk,
+            char delimiter, String headerField, Function<String[], T> factory) {
+        MappedByteBuffer data;
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        ParsedChunk<T> chunk = new ParsedChunk<>();
+        byte[] scratch = new byte[512];
+        int lineStart = 0;
+        int limit = data.limit();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && data.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && data.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            chunk.lineCount++;
+            long lineNumber = chunk.lineCount; // 1-based within the chunk
+            
+            int length = lineEnd - lineStart;
+            if (length > 0) {
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                data.position(lineStart);
+                data.get(scratch, 0, length);
+                String line = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                try {
+                    String[] fields = splitLine(line, delimiter);
+                    if (firstChunk && lineNumber == 1 && fields[0].equalsIgnoreCase(headerField)) {
+                        lineStart = next;
+                        continue;
+                    }
+                    chunk.rowsRead++;
+                    chunk.addRecord(factory.apply(fields), lineNumber);
+                } catch (IllegalArgumentException e) {
+                    chunk.errorLines.add(lineNumber);
+                    chunk.errorReasons.add(e.getMessage());
+                }
+            }
+            lineStart = next;
+        }
+        return chunk;
+    }
+    
+    /**
+     * Split a line into trimmed fields; CSV fields may be double-quoted
+     * @param line The line
+     * @param delimiter Field separator
+     * @return Fields
+     * @throws IllegalArgumentException if a quoted field is not terminated
+     */
+    static String[] splitLine(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean allowQuotes = delimiter != '\t';
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else if (c == '"' && allowQuotes && field.toString().trim().isEmpty()) {
+                field.setLength(0);
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+    
+    /**
+     * Build and validate a book row
+     * @param fields bookId, title, author, isbn
+     * @return The book
+     * @throws IllegalArgumentException if the row is malformed
+     */
+    private static Book parseBook(String[] fields) {
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("expected 4 fields, found " + fields.length);
+        }
+        if (fields[0].isEmpty() || fields[1].isEmpty()) {
+            throw new IllegalArgumentException("book ID and title are required");
+        }
+        if (!fields[3].isEmpty() && IsbnIndex.normalize(fields[3]) == IsbnIndex.INVALID) {
+            throw new IllegalArgumentException("invalid ISBN " + fields[3]);
+        }
+        return new Book(fields[0], fields[1], fields[2], fields[3]);
+    }
+    
+    /**
+     * Build and validate a member row
+     * @param fields memberId, name, email, phoneNumber and optional membershipDate
+     * @param today Membership date used when the row has none
+     * @return The member
+     * @throws IllegalArgumentException if the row is malformed
+     */
+    private static Member parseMember(String[] fields, String today) {
+        if (fields.length != 4 && fields.length != 5) {
+            throw new IllegalArgumentException("expected 4 or 5 fields, found " + fields.length);
+        }
+        if (fields[0].isEmpty() || fields[1].isEmpty()) {
+            throw new IllegalArgumentException("member ID and name are required");
+        }
+        String membershipDate = fields.length == 5 && !fields[4].isEmpty() ? fields[4] : today;
+        return new Member(fields[0], fields[1], fields[2], fields[3], membershipDate);
+    }
+    
+    /**
+     * Records and rejected rows parsed from one chunk
+     */
+    private static class ParsedChunk<T> {
+        private final List<T> records = new ArrayList<>();
+        private long[] recordLines = new long[1024];
+        private final List<Long> errorLines = new ArrayList<>();
+        private final List<String> errorReasons = new ArrayList<>();
+        private long lineCount;
+        private long rowsRead;
+        
+        void addRecord(T record, long line) {
+            if (this.records.size() == this.recordLines.length) {
+                this.recordLines = Arrays.copyOf(this.recordLines, this.recordLines.length * 2);
+            }
+            this.recordLines[this.records.size()] = line;
+            this.records.add(record);
+        }
+    }
+}
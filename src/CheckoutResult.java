@@ -0,0 +1,132 @@
+/**
+ * CheckoutResult.java
+ * Per-book outcome of an all-or-nothing multi-book issue or return
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CheckoutResult {
+    private final String memberId;
+    private final String[] bookIds;
+    private final LibraryMetrics.FailureReason[] failures; // Per book, null where the book passed
+    private LibraryMetrics.FailureReason memberFailure; // Rejects the whole batch, e.g. LIMIT_REACHED
+    private boolean applied;
+    
+    /**
+     * Constructor to create a result with every book passing
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books, in request order
+     */
+    CheckoutResult(String memberId, List<String> bookIds) {
+        this.memberId = memberId;
+        this.bookIds = bookIds.toArray(new String[0]);
+        this.failures = new LibraryMetrics.FailureReason[this.bookIds.length];
+    }
+    
+    void fail(int index, LibraryMetrics.FailureReason reason) {
+        this.failures[index] = reason;
+    }
+    
+    void failMember(LibraryMetrics.FailureReason reason) {
+        if (this.memberFailure == null) {
+            this.memberFailure = reason;
+        }
+    }
+    
+    void setApplied() {
+        this.applied = true;
+    }
+    
+    /**
+     * Check whether every book and the member passed validation
+     * @return true if nothing failed
+     */
+    boolean isValid() {
+        if (this.memberFailure != null) {
+            return false;
+        }
+        for (LibraryMetrics.FailureReason failure : this.failures) {
+            if (failure != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Check whether the batch took effect; if not, no book was issued or returned
+     * @return true if every book was issued or returned
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+    
+    /**
+     * Get the number of books in the batch
+     * @return Book count, in request order
+     */
+    public int size() {
+        return bookIds.length;
+    }
+    
+    public String getBookId(int index) {
+        return bookIds[index];
+    }
+    
+    /**
+     * Get why one book failed validation
+     * @param index Position of the book in the request
+     * @return The reason, or null if the book passed (it may still not have
+     *         been applied if another book or the member failed)
+     */
+    public LibraryMetrics.FailureReason getFailure(int index) {
+        return failures[index];
+    }
+    
+    /**
+     * Get the failure that applies to the member rather than one book
+     * @return MEMBER_NOT_FOUND, LIMIT_REACHED, FINES_OUTSTANDING, or null if none
+     */
+    public LibraryMetrics.FailureReason getMemberFailure() {
+        return memberFailure;
+    }
+    
+    /**
+     * Get the books that failed validation
+     * @return Their IDs, in request order
+     */
+    public List<String> getFailedBookIds() {
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < this.bookIds.length; i++) {
+            if (this.failures[i] != null) {
+                failed.add(this.bookIds[i]);
+            }
+        }
+        return failed;
+    }
+    
+    public String getMemberId() {
+        return memberId;
+    }
+    
+    @Override
+    public String toString() {
+        if (this.applied) {
+            return bookIds.length + " books for " + memberId + ": all applied";
+        }
+        StringBuilder text = new StringBuilder(bookIds.length + " books for " + memberId + ": none applied (");
+        String separator = "";
+        if (this.memberFailure != null) {
+            text.append(memberId).append(' ').append(memberFailure);
+            separator = ", ";
+        }
+        for (int i = 0; i < this.bookIds.length; i++) {
+            if (this.failures[i] != null) {
+                text.append(separator).append(bookIds[i]).append(' ').append(failures[i]);
+                separator = ", ";
+            }
+        }
+        return text.append(')').toString();
+    }
+}
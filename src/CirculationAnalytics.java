@@ -0,0 +1,387 @@
+/**
+ * CirculationAnalytics.java
+ * Most-issued titles and most active borrowers over sliding windows of days
+ */
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Every issue is counted twice, by title and by borrower, in the sketch for
+ * its issue day. A day's sketch is a count-min sketch (DEPTH rows of
+ * counters, each key incremented in one counter per row; its estimate is
+ * the smallest of those, never below the true count and above it by at
+ * most about e/width of the day's issues with high probability) plus the
+ * set of keys whose estimates are currently the day's highest. Sketches
+ * for the last MAX_WINDOW_DAYS days are kept in a ring; a new day reuses
+ * the slot of the day that has fallen out of every window.
+ *
+ * A window query takes the union of the tracked keys of its days, sums
+ * each key's estimates across those days and ranks them, so memory stays
+ * the same however many titles and members there are. A key can only be
+ * missed if it was never among a day's tracked keys, i.e. it was spread
+ * thinly over many days.
+ *
+ * Recording is lock-free for keys already tracked and for keys below the
+ * day's admission threshold: DEPTH atomic increments, one concurrent set
+ * lookup and a volatile read. Only a key that climbs into a day's top set
+ * takes that day's monitor.
+ */
+
+public class CirculationAnalytics implements LibraryEventListener {
+    public static final int MAX_WINDOW_DAYS = 31;
+    public static final int DEFAULT_SKETCH_WIDTH = 4096;
+    public static final int DEFAULT_TRACKED_PER_DAY = 512;
+    private static final int DEPTH = 4;
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    
+    private final Window titles;
+    private final Window borrowers;
+    private final LongAdder issues = new LongAdder();
+    
+    /**
+     * Constructor to create analytics with default accuracy (about 4 MB)
+     */
+    public CirculationAnalytics() {
+        this(DEFAULT_SKETCH_WIDTH, DEFAULT_TRACKED_PER_DAY);
+    }
+    
+    /**
+     * Constructor to create analytics
+     * @param sketchWidth Counters per sketch row, rounded up to a power of two;
+     *        wider sketches overestimate less
+     * @param trackedPerDay Keys kept as candidates per day; at least the
+     *        largest top-N that will be asked for
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public CirculationAnalytics(int sketchWidth, int trackedPerDay) {
+        if (sketchWidth <= 0 || sketchWidth > 1 << 24 || trackedPerDay <= 0) {
+            throw new IllegalArgumentException("Sketch width must be between 1 and 2^24 and tracked keys positive");
+        }
+        int width = sketchWidth <= 1 ? 1 : Integer.highestOneBit(sketchWidth - 1) << 1;
+        this.titles = new Window(width, trackedPerDay);
+        this.borrowers = new Window(width, trackedPerDay);
+    }
+    
+    /**
+     * Count an issued book, e.g. from a LibraryEventBus subscription
+     * @param event The event; only BOOK_ISSUED is counted
+     */
+    @Override
+    public void onEvent(LibraryEvent event) {
+        if (event.getType() == LibraryEvent.Type.BOOK_ISSUED) {
+            LocalDate date = event.getDate();
+            if (date != null) {
+                recordIssue(event.getTitle(), event.getMemberId(), (int) date.toEpochDay());
+            }
+        }
+    }
+    
+    /**
+     * Count one issue (the library calls this)
+     * @param title Title of the book
+     * @param memberId ID of the borrower
+     * @param day Epoch day of the issue; days older than the window are ignored
+     */
+    void recordIssue(String title, String memberId, int day) {
+        this.titles.add(title, day);
+        this.borrowers.add(memberId, day);
+        this.issues.increment();
+    }
+    
+    /**
+     * Get the most-issued titles over the days up to and including a date
+     * @param limit Most titles to return
+     * @param days Length of the window, e.g. 7 for this week
+     * @param asOf Last day of the window
+     * @return Titles with their estimated issue counts, most issued first
+     * @throws IllegalArgumentException if limit or days is out of range
+     */
+    public List<Count> topTitles(int limit, int days, LocalDate asOf) {
+        return this.titles.top(limit, days, asOf);
+    }
+    
+    /**
+     * Get the members who borrowed most over the days up to and including a date
+     * @param limit Most members to return
+     * @param days Length of the window, e.g. 30 for this month
+     * @param asOf Last day of the window
+     * @return Member IDs with their estimated issue counts, most first
+     * @throws IllegalArgumentException if limit or days is out of range
+     */
+    public List<Count> topBorrowers(int limit, int days, LocalDate asOf) {
+        return this.borrowers.top(limit, days, asOf);
+    }
+    
+    /**
+     * Estimate how often a title was issued over a window
+     * @param title The title
+     * @param days Length of the window
+     * @param asOf Last day of the window
+     * @return Estimated issues; never below the true count within the window
+     */
+    public long estimateTitle(String title, int days, LocalDate asOf) {
+        return this.titles.estimate(title, days, asOf);
+    }
+    
+    /**
+     * Estimate how many books a member borrowed over a window
+     * @param memberId ID of the member
+     * @param days Length of the window
+     * @param asOf Last day of the window
+     * @return Estimated issues; never below the true count within the window
+     */
+    public long estimateBorrower(String memberId, int days, LocalDate asOf) {
+        return this.borrowers.estimate(memberId, days, asOf);
+    }
+    
+    /**
+     * Get the number of issues counted since the analytics were created
+     * @return Issues recorded
+     */
+    public long getIssuesRecorded() {
+        return issues.sum();
+    }
+    
+    /**
+     * A key and its estimated count
+     */
+    public static class Count {
+        private final String key;
+        private final long count;
+        
+        Count(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        @Override
+        public String toString() {
+            return key + " (" + count + ")";
+        }
+    }
+    
+    /**
+     * Day sketches for one kind of key, in a ring of MAX_WINDOW_DAYS slots
+     */
+    private static final class Window {
+        private final DaySketch[] ring = new DaySketch[MAX_WINDOW_DAYS];
+        
+        Window(int width, int tracked) {
+            for (int i = 0; i < this.ring.length; i++) {
+                this.ring[i] = new DaySketch(width, tracked);
+            }
+        }
+        
+        void add(String key, int day) {
+            if (key == null) {
+                return;
+            }
+            DaySketch sketch = this.ring[Math.floorMod(day, MAX_WINDOW_DAYS)];
+            if (sketch.day != day) {
+                synchronized (sketch) {
+                    if (sketch.day > day) {
+                        return; // The slot already holds a later day; this one has left every window
+                    }
+                    if (sketch.day < day) {
+                        sketch.reset(day);
+                    }
+                }
+            }
+            sketch.add(key);
+        }
+        
+        List<Count> top(int limit, int days, LocalDate asOf) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Limit must be positive");
+            }
+            List<DaySketch> sketches = sketches(days, asOf);
+            Set<String> candidates = new HashSet<>();
+            for (DaySketch sketch : sketches) {
+                candidates.addAll(sketch.tracked);
+            }
+            List<Count> counts = new ArrayList<>(candidates.size());
+            for (String key : candidates) {
+                counts.add(new Count(key, estimate(key, sketches)));
+            }
+            counts.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.key.compareTo(b.key));
+            return counts.size() > limit ? new ArrayList<>(counts.subList(0, limit)) : counts;
+        }
+        
+        long estimate(String key, int days, LocalDate asOf) {
+            return estimate(key, sketches(days, asOf));
+        }
+        
+        private static long estimate(String key, List<DaySketch> sketches) {
+            long total = 0;
+            for (DaySketch sketch : sketches) {
+                total += sketch.estimate(key);
+            }
+            return total;
+        }
+        
+        /**
+         * Get the sketches of the days in a window that have any issues
+         */
+        private List<DaySketch> sketches(int days, LocalDate asOf) {
+            if (days <= 0 || days > MAX_WINDOW_DAYS) {
+                throw new IllegalArgumentException("Window must be between 1 and " + MAX_WINDOW_DAYS + " days");
+            }
+            int last = (int) asOf.toEpochDay();
+            List<DaySketch> sketches = new ArrayList<>(days);
+            for (int day = last - days + 1; day <= last; day++) {
+                DaySketch sketch = this.ring[Math.floorMod(day, MAX_WINDOW_DAYS)];
+                if (sketch.day == day) {
+                    sketches.add(sketch);
+                }
+            }
+            return sketches;
+        }
+    }
+    
+    /**
+     * Count-min sketch and top keys for one day
+     */
+    private static final class DaySketch {
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        private final int capacity;
+        private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+        private volatile int day = NO_DAY;
+        private volatile boolean full;
+        private volatile int threshold; // No tracked key is estimated below this once full
+        
+        DaySketch(int width, int capacity) {
+            this.counters = new AtomicIntegerArray(DEPTH * width);
+            this.mask = width - 1;
+            this.capacity = capacity;
+        }
+        
+        /**
+         * Clear for a new day (caller holds the monitor). An issue dated a
+         * month back that is being counted at this moment may land in the
+         * new day; nothing else is lost or double counted.
+         */
+        void reset(int newDay) {
+            for (int i = 0; i < this.counters.length(); i++) {
+                this.counters.set(i, 0);
+            }
+            this.tracked.clear();
+            this.full = false;
+            this.threshold = 0;
+            this.day = newDay;
+        }
+        
+        void add(String key) {
+            long hash = hash(key);
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, this.counters.incrementAndGet(index(hash, row)));
+            }
+            if ((!this.full || estimate > this.threshold) && !this.tracked.contains(key)) {
+                admit(key, estimate);
+            }
+        }
+        
+        int estimate(String key) {
+            long hash = hash(key);
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, this.counters.get(index(hash, row)));
+            }
+            return estimate;
+        }
+        
+        /**
+         * Add a key to the top set, replacing the lowest tracked key once full
+         */
+        private synchronized void admit(String key, int estimate) {
+            if (this.tracked.contains(key)) {
+                return;
+            }
+            if (this.tracked.size() < this.capacity) {
+                this.tracked.add(key);
+                if (this.tracked.size() == this.capacity) {
+                    this.threshold = lowest();
+                    this.full = true;
+                }
+                return;
+            }
+            // Estimates only grow, so the threshold may be stale but never too high
+            String lowestKey = null;
+            int lowest = Integer.MAX_VALUE;
+            int next = Integer.MAX_VALUE; // Second lowest, the threshold once the lowest is replaced
+            for (String candidate : this.tracked) {
+                int count = estimate(candidate);
+                if (count < lowest) {
+                    next = lowest;
+                    lowest = count;
+                    lowestKey = candidate;
+                } else if (count < next) {
+                    next = count;
+                }
+            }
+            if (estimate > lowest) {
+                this.tracked.remove(lowestKey);
+                this.tracked.add(key);
+                this.threshold = Math.min(next, estimate);
+            } else {
+                this.threshold = lowest;
+            }
+        }
+        
+        private int lowest() {
+            int lowest = Integer.MAX_VALUE;
+            for (String candidate : this.tracked) {
+                lowest = Math.min(lowest, estimate(candidate));
+            }
+            return lowest;
+        }
+        
+        /**
+         * Counter for a key in a row. Each row's hash is h1 + row * h2 from the
+         * two halves of the key's 64-bit hash, mixed before it is masked: two
+         * keys share a counter in every row only if their 64-bit hashes
+         * collide, not merely their low bits.
+         */
+        private int index(long hash, int row) {
+            int h = (int) hash + row * (int) (hash >>> 32);
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 16;
+            return row * (this.mask + 1) + (h & this.mask);
+        }
+        
+        /**
+         * 64-bit hash of a key's characters (FNV-1a, then a final mix);
+         * String.hashCode is only 32 bits and collides for keys like "Aa" and "BB"
+         */
+        private static long hash(String key) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB93FE1A85EC9L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/**
+ * CompactCatalog.java
+ * Column-oriented catalog storage for very large collections
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Struct-of-arrays layout: book i is row i of every column, so a volume
+ * costs a few dozen bytes instead of a Book object and four Strings.
+ *
+ *   text      UTF-8 arena of 1 MB pages; row i is [varint length][bookId]
+ *             [varint length][title][varint length + 1, 0 for null][isbn]
+ *             starting at textStart[i] (page << 20 | offset)
+ *   authors   authorCode[i] into a table of distinct author names
+ *   ID index  open-addressing table of ordinal + 1, hashed over the ID bytes
+ *
+ * Use it as a Library's catalog (new Library(name, catalog)). Book objects
+ * are built on demand and dropped by the caller, except for books on loan,
+ * which stay resident so every caller shares the object the Library
+ * updates; loans themselves live in the Library, as with OffHeapCatalog.
+ *
+ * Adds are serialized by the Library's catalog write lock; lookups never
+ * lock. A row is written before the count is published and its ID entry
+ * last, and grown columns are swapped in through volatile fields, so a
+ * reader that finds an ordinal below the count always sees the whole row.
+ */
+
+public class CompactCatalog implements BookStore {
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PAGES = 1 << (31 - PAGE_BITS); // textStart must stay a positive int
+    private static final int NO_AUTHOR = -1;
+    
+    private volatile byte[][] pages = new byte[0][];
+    private int pageCount;
+    private int pagePosition = PAGE_SIZE; // Forces a page on the first add
+    
+    private volatile int[] textStart;
+    private volatile int[] authorCode;
+    private volatile int size;
+    
+    private volatile String[] authors = new String[16];
+    private int authorCount;
+    private final Map<String, Integer> authorCodes = new HashMap<>(); // Writer only
+    
+    private volatile int[] idTable; // ordinal + 1, 0 when empty
+    private final Map<Integer, Book> resident = new ConcurrentHashMap<>(); // Books on loan
+    
+    /**
+     * Constructor to create an empty catalog
+     * @param expectedBooks Number of books to size the columns for
+     */
+    public CompactCatalog(int expectedBooks) {
+        int capacity = Math.max(16, expectedBooks);
+        this.textStart = new int[capacity];
+        this.authorCode = new int[capacity];
+        this.idTable = new int[tableSizeFor(capacity)];
+    }
+    
+    /**
+     * Add a book and assign it the next ordinal
+     * @param book The book
+     * @return false if a book with the same ID already exists
+     * @throws IllegalArgumentException if the book's text is larger than a page
+     * @throws IllegalStateException if the text arena is full (2 GB)
+     */
+    @Override
+    public boolean add(Book book) {
+        String bookId = book.getBookId();
+        byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(this.idTable, id, id.length, this.size);
+        if (this.idTable[slot] != 0) {
+            return false;
+        }
+        byte[] titleBytes = book.getTitle().getBytes(StandardCharsets.UTF_8);
+        String isbn = book.getIsbn();
+        byte[] isbnBytes = isbn != null ? isbn.getBytes(StandardCharsets.UTF_8) : null;
+        
+        int length = 15 + id.length + titleBytes.length + (isbnBytes != null ? isbnBytes.length : 0);
+        if (length > PAGE_SIZE) {
+            throw new IllegalArgumentException("Book " + bookId + " is too large for the compact catalog");
+        }
+        if (this.pagePosition + length > PAGE_SIZE) {
+            newPage();
+        }
+        
+        int ordinal = this.size;
+        if (ordinal == this.textStart.length) {
+            grow();
+        }
+        byte[] page = this.pages[this.pageCount - 1];
+        int position = this.pagePosition;
+        position = writeBytes(page, position, id, id.length);
+        position = writeBytes(page, position, titleBytes, titleBytes.length);
+        if (isbnBytes == null) {
+            page[position++] = 0;
+        } else {
+            position = writeVarint(page, position, isbnBytes.length + 1);
+            System.arraycopy(isbnBytes, 0, page, position, isbnBytes.length);
+            position += isbnBytes.length;
+        }
+        this.textStart[ordinal] = (this.pageCount - 1) << PAGE_BITS | this.pagePosition;
+        this.pagePosition = position;
+        this.authorCode[ordinal] = internAuthor(book.getAuthor());
+        
+        if ((ordinal + 1) * 2L > this.idTable.length) {
+            rehash(this.idTable.length * 2, ordinal);
+            slot = findSlot(this.idTable, id, id.length, ordinal);
+        }
+        this.size = ordinal + 1;
+        this.idTable[slot] = ordinal + 1;
+        book.setOrdinal(ordinal);
+        if (!book.isAvailable()) {
+            this.resident.put(ordinal, book);
+        }
+        return true;
+    }
+    
+    @Override
+    public Book get(int ordinal) {
+        checkOrdinal(ordinal);
+        Book book = this.resident.get(ordinal);
+        return book != null ? book : materialize(ordinal);
+    }
+    
+    @Override
+    public Book find(String bookId) {
+        int ordinal = ordinalOf(bookId);
+        return ordinal < 0 ? null : get(ordinal);
+    }
+    
+    @Override
+    public Book current(Book book) {
+        Book onLoan = this.resident.get(book.getOrdinal());
+        return onLoan != null ? onLoan : book;
+    }
+    
+    @Override
+    public void update(Book book) {
+        if (book.isAvailable()) {
+            this.resident.remove(book.getOrdinal());
+        } else {
+            this.resident.put(book.getOrdinal(), book);
+        }
+    }
+    
+    /**
+     * Find a book's ordinal by ID
+     * @param bookId The book ID to search for
+     * @return Ordinal, or -1 if not found
+     */
+    public int ordinalOf(String bookId) {
+        if (bookId == null) {
+            return -1;
+        }
+        byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+        int count = this.size;
+        int[] table = this.idTable;
+        int entry = table[findSlot(table, id, id.length, count)];
+        return entry > 0 && entry <= count ? entry - 1 : -1;
+    }
+    
+    /**
+     * Get a book's ID without materializing it
+     * @param ordinal Book ordinal
+     * @return Book ID
+     */
+    public String getBookId(int ordinal) {
+        checkOrdinal(ordinal);
+        int start = this.textStart[ordinal];
+        byte[] page = this.pages[start >>> PAGE_BITS];
+        int position = start & (PAGE_SIZE - 1);
+        int length = readVarint(page, position);
+        return new String(page, position + varintSize(length), length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Get a book's title without materializing it
+     * @param ordinal Book ordinal
+     * @return Title
+     */
+    public String getTitle(int ordinal) {
+        checkOrdinal(ordinal);
+        int start = this.textStart[ordinal];
+        byte[] page = this.pages[start >>> PAGE_BITS];
+        int position = start & (PAGE_SIZE - 1);
+        int idLength = readVarint(page, position);
+        position += varintSize(idLength) + idLength;
+        int length = readVarint(page, position);
+        return new String(page, position + varintSize(length), length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Get a book's author; equal names share one String
+     * @param ordinal Book ordinal
+     * @return Author, or null
+     */
+    public String getAuthor(int ordinal) {
+        checkOrdinal(ordinal);
+        int code = this.authorCode[ordinal];
+        return code == NO_AUTHOR ? null : this.authors[code];
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the number of distinct authors
+     * @return Size of the author table
+     */
+    public int getAuthorCount() {
+        return authorCount;
+    }
+    
+    /**
+     * Estimate the heap held by the columns and text arena (the author
+     * table and the books on loan are not counted)
+     * @return Approximate size in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = (long) this.pageCount * PAGE_SIZE;
+        bytes += 4L * (this.textStart.length + this.authorCode.length + this.idTable.length);
+        return bytes;
+    }
+    
+    /**
+     * Build a Book for one row
+     * @param ordinal Book ordinal
+     * @return New, available Book
+     */
+    private Book materialize(int ordinal) {
+        int start = this.textStart[ordinal];
+        byte[] page = this.pages[start >>> PAGE_BITS];
+        int position = start & (PAGE_SIZE - 1);
+        
+        int idLength = readVarint(page, position);
+        position += varintSize(idLength);
+        String bookId = new String(page, position, idLength, StandardCharsets.UTF_8);
+        position += idLength;
+        int titleLength = readVarint(page, position);
+        position += varintSize(titleLength);
+        String title = new String(page, position, titleLength, StandardCharsets.UTF_8);
+        position += titleLength;
+        
+        Book book = new Book(bookId, title, getAuthor(ordinal), readIsbn(page, position));
+        book.setOrdinal(ordinal);
+        return book;
+    }
+    
+    /**
+     * Find the ID table slot holding a key, or the empty slot where it belongs
+     * @param table ID table to probe
+     * @param key UTF-8 ID bytes
+     * @param length Number of bytes in key
+     * @param count Number of published rows; entries past it are skipped
+     * @return Slot index
+     */
+    private int findSlot(int[] table, byte[] key, int length, int count) {
+        int mask = table.length - 1;
+        int slot = hash(key, 0, length) & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0 || (entry <= count && idEquals(entry - 1, key, length))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Compare a row's ID bytes with a key
+     * @param ordinal Book ordinal
+     * @param key UTF-8 ID bytes
+     * @param length Number of bytes in key
+     * @return true if equal
+     */
+    private boolean idEquals(int ordinal, byte[] key, int length) {
+        int start = this.textStart[ordinal];
+        byte[] page = this.pages[start >>> PAGE_BITS];
+        int position = start & (PAGE_SIZE - 1);
+        int idLength = readVarint(page, position);
+        if (idLength != length) {
+            return false;
+        }
+        position += varintSize(idLength);
+        for (int i = 0; i < length; i++) {
+            if (page[position + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Rebuild the ID table at a new size and switch readers to it
+     * @param tableSize Power-of-two number of slots
+     * @param count Number of rows to index
+     */
+    private void rehash(int tableSize, int count) {
+        int[] table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            int start = this.textStart[ordinal];
+            byte[] page = this.pages[start >>> PAGE_BITS];
+            int position = start & (PAGE_SIZE - 1);
+            int length = readVarint(page, position);
+            int slot = hash(page, position + varintSize(length), length) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = ordinal + 1;
+        }
+        this.idTable = table;
+    }
+    
+    private int internAuthor(String author) {
+        if (author == null) {
+            return NO_AUTHOR;
+        }
+        Integer code = this.authorCodes.get(author);
+        if (code == null) {
+            code = this.authorCount;
+            if (code == this.authors.length) {
+                this.authors = Arrays.copyOf(this.authors, code * 2);
+            }
+            this.authors[code] = author;
+            this.authorCodes.put(author, code);
+            this.authorCount = code + 1;
+        }
+        return code;
+    }
+    
+    private String readIsbn(byte[] page, int position) {
+        int length = readVarint(page, position) - 1;
+        if (length < 0) {
+            return null;
+        }
+        return new String(page, position + varintSize(length + 1), length, StandardCharsets.UTF_8);
+    }
+    
+    private void newPage() {
+        if (this.pageCount == MAX_PAGES) {
+            throw new IllegalStateException("Compact catalog text is full");
+        }
+        if (this.pageCount == this.pages.length) {
+            this.pages = Arrays.copyOf(this.pages, Math.max(16, this.pages.length * 2));
+        }
+        this.pages[this.pageCount++] = new byte[PAGE_SIZE];
+        this.pagePosition = 0;
+    }
+    
+    private void grow() {
+        int capacity = this.textStart.length + (this.textStart.length >> 1);
+        this.textStart = Arrays.copyOf(this.textStart, capacity);
+        this.authorCode = Arrays.copyOf(this.authorCode, capacity);
+    }
+    
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= this.size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of range 0.." + (this.size - 1));
+        }
+    }
+    
+    private static int writeBytes(byte[] page, int position, byte[] bytes, int length) {
+        position = writeVarint(page, position, length);
+        System.arraycopy(bytes, 0, page, position, length);
+        return position + length;
+    }
+    
+    private static int writeVarint(byte[] page, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            page[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        page[position++] = (byte) value;
+        return position;
+    }
+    
+    private static int readVarint(byte[] page, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = page[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static int varintSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : 4;
+    }
+    
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+        return size > 0 ? size : 1 << 30;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * DueDateIndex.java
+ * Books on loan, bucketed by due day
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+ * A calendar of day buckets: only days that have loans due get a
+ * bucket, kept in a sorted skip list, so "due between day A and day B"
+ * visits just the non-empty days in range and costs time proportional to
+ * the number of loans returned rather than the size of the catalog. Each
+ * bucket is a small array guarded by its own monitor; a book remembers
+ * its slot so a return removes it in O(1). Issues and returns on different
+ * days never contend, and a bucket is dropped as soon as it empties.
+ */
+
+class DueDateIndex {
+    private final ConcurrentSkipListMap<Integer, DayBucket> days = new ConcurrentSkipListMap<>();
+    
+    /**
+     * Add a book on loan; call with the book's lock held
+     * @param book The book, whose due day is set
+     */
+    void add(Book book) {
+        int dueDay = book.getDueDay();
+        if (dueDay == Book.NO_DATE) {
+            return;
+        }
+        while (true) {
+            DayBucket bucket = this.days.computeIfAbsent(dueDay, day -> new DayBucket());
+            synchronized (bucket) {
+                if (!bucket.removed) {
+                    bucket.add(book);
+                    return;
+                }
+            }
+            // Lost a race with a prune of this bucket; retry with a fresh one
+        }
+    }
+    
+    /**
+     * Remove a book on loan; call with the holder's lock held and before
+     * the book's due day is cleared
+     * @param book The book
+     */
+    void remove(Book book) {
+        DayBucket bucket = this.days.get(book.getDueDay());
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            bucket.remove(book);
+            if (bucket.count == 0) {
+                bucket.removed = true;
+                this.days.remove(book.getDueDay(), bucket);
+            }
+        }
+    }
+    
+    /**
+     * Collect the books due in a range of days
+     * @param fromDay First due day, inclusive
+     * @param toDay Last due day, exclusive
+     * @param out Receives the books, in due-day order
+     */
+    void collect(int fromDay, int toDay, List<Book> out) {
+        if (fromDay >= toDay) {
+            return;
+        }
+        for (DayBucket bucket : this.days.subMap(fromDay, true, toDay, false).values()) {
+            synchronized (bucket) {
+                out.addAll(Arrays.asList(bucket.books).subList(0, bucket.count));
+            }
+        }
+    }
+    
+    /**
+     * Books due on one day
+     */
+    private static class DayBucket {
+        private Book[] books = new Book[8];
+        private int count;
+        private boolean removed;
+        
+        void add(Book book) {
+            if (this.count == this.books.length) {
+                this.books = Arrays.copyOf(this.books, this.count * 2);
+            }
+            book.setDueSlot(this.count);
+            this.books[this.count++] = book;
+        }
+        
+        void remove(Book book) {
+            int slot = book.getDueSlot();
+            if (slot >= this.count || this.books[slot] != book) {
+                return;
+            }
+            Book last = this.books[--this.count];
+            this.books[slot] = last;
+            last.setDueSlot(slot);
+            this.books[this.count] = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * EventPrinter.java
+ * Writes library events as console lines or a timestamped log
+ */
+
+import java.io.PrintStream;
+
+public class EventPrinter implements LibraryEventListener {
+    private final PrintStream out;
+    private final boolean timestamps;
+    
+    /**
+     * Constructor to print events as the console's "✓ ..." lines
+     * @param out Stream to print to
+     */
+    public EventPrinter(PrintStream out) {
+        this(out, false);
+    }
+    
+    /**
+     * Constructor to create a printer
+     * @param out Stream to print to, e.g. a log file
+     * @param timestamps true to start each line with the event's timestamp
+     */
+    public EventPrinter(PrintStream out, boolean timestamps) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        this.out = out;
+        this.timestamps = timestamps;
+    }
+    
+    @Override
+    public void onEvent(LibraryEvent event) {
+        this.out.println(this.timestamps ? event.getTimestamp() + " " + event.getType() + " " + event
+                : "✓ " + event);
+    }
+}
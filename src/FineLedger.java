@@ -0,0 +1,86 @@
+/**
+ * FineLedger.java
+ * Per-member fine accounts, keyed by member ordinal
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Two primitive long columns per member: total charged and total paid,
+ * both in minor currency units, so the balance is charged - paid. Columns
+ * are split into fixed 4096-member pages that are never moved; growth
+ * happens under the catalog write lock. Updates are atomic adds, and
+ * Library makes them while holding the member's lock, so an issue's
+ * balance check cannot race with a charge or payment for that member.
+ */
+
+class FineLedger {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private volatile AtomicLongArray[] charged = new AtomicLongArray[0];
+    private volatile AtomicLongArray[] paid = new AtomicLongArray[0];
+    
+    /**
+     * Make room for members with ordinals below a bound; call with the
+     * catalog write lock held
+     * @param memberCount Number of registered members
+     */
+    void ensureCapacity(int memberCount) {
+        int needed = (memberCount + PAGE_MASK) >>> PAGE_BITS;
+        if (needed > this.charged.length) {
+            int length = Math.max(needed, this.charged.length * 2);
+            this.charged = grow(this.charged, length);
+            this.paid = grow(this.paid, length);
+        }
+    }
+    
+    /**
+     * Add a charge (or, if negative, a credit) to a member's account
+     * @param memberOrdinal Member ordinal
+     * @param amount Amount in minor units
+     */
+    void charge(int memberOrdinal, long amount) {
+        page(this.charged, memberOrdinal).addAndGet(memberOrdinal & PAGE_MASK, amount);
+    }
+    
+    /**
+     * Record a payment
+     * @param memberOrdinal Member ordinal
+     * @param amount Amount in minor units
+     */
+    void pay(int memberOrdinal, long amount) {
+        page(this.paid, memberOrdinal).addAndGet(memberOrdinal & PAGE_MASK, amount);
+    }
+    
+    long getCharged(int memberOrdinal) {
+        return page(this.charged, memberOrdinal).get(memberOrdinal & PAGE_MASK);
+    }
+    
+    long getPaid(int memberOrdinal) {
+        return page(this.paid, memberOrdinal).get(memberOrdinal & PAGE_MASK);
+    }
+    
+    /**
+     * Get the amount a member owes
+     * @param memberOrdinal Member ordinal
+     * @return Charged minus paid
+     */
+    long getBalance(int memberOrdinal) {
+        return getCharged(memberOrdinal) - getPaid(memberOrdinal);
+    }
+    
+    private static AtomicLongArray[] grow(AtomicLongArray[] pages, int length) {
+        AtomicLongArray[] grown = Arrays.copyOf(pages, length);
+        for (int i = pages.length; i < length; i++) {
+            grown[i] = new AtomicLongArray(PAGE_SIZE);
+        }
+        return grown;
+    }
+    
+    private static AtomicLongArray page(AtomicLongArray[] pages, int memberOrdinal) {
+        return pages[memberOrdinal >>> PAGE_BITS];
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * FinePolicy.java
+ * Late-fee rules; all amounts are in minor currency units (e.g. cents)
+ */
+
+public class FinePolicy {
+    /** 25 per day after a 1-day grace period, capped at 2,000 per loan; issuing blocked from 1,000 owed */
+    public static final FinePolicy DEFAULT = new FinePolicy(25, 1, 2000, 1000);
+    
+    private final long dailyRate;
+    private final int graceDays;
+    private final long maxFinePerLoan;
+    private final long blockThreshold;
+    
+    /**
+     * Constructor to create a fine policy
+     * @param dailyRate Fine per day overdue
+     * @param graceDays Days overdue that are not charged
+     * @param maxFinePerLoan Cap on the fine for one loan
+     * @param blockThreshold Balance at which a member can no longer borrow
+     * @throws IllegalArgumentException if any value is negative or the threshold is zero
+     */
+    public FinePolicy(long dailyRate, int graceDays, long maxFinePerLoan, long blockThreshold) {
+        if (dailyRate < 0 || graceDays < 0 || maxFinePerLoan < 0 || blockThreshold <= 0) {
+            throw new IllegalArgumentException("Fine amounts and grace days cannot be negative");
+        }
+        this.dailyRate = dailyRate;
+        this.graceDays = graceDays;
+        this.maxFinePerLoan = maxFinePerLoan;
+        this.blockThreshold = blockThreshold;
+    }
+    
+    /**
+     * Get the total fine owed for a loan on a given day
+     * @param dueDay Epoch day the book was due
+     * @param day Epoch day to charge up to
+     * @return Fine for the loan so far
+     */
+    public long fineFor(int dueDay, int day) {
+        long chargeableDays = (long) day - dueDay - this.graceDays;
+        if (chargeableDays <= 0) {
+            return 0;
+        }
+        return Math.min(this.maxFinePerLoan, chargeableDays * this.dailyRate);
+    }
+    
+    /**
+     * Get the latest due day that is charged as of a given day
+     * @param day Epoch day
+     * @return Loans due before this day owe a fine
+     */
+    int lastFinedDueDay(int day) {
+        return day - this.graceDays;
+    }
+    
+    /**
+     * Format an amount in minor units with two decimal places
+     * @param amount Amount in minor units
+     * @return Amount such as "12.50"
+     */
+    public static String format(long amount) {
+        return String.format("%s%d.%02d", amount < 0 ? "-" : "", Math.abs(amount / 100), Math.abs(amount % 100));
+    }
+    
+    // Getters
+    public long getDailyRate() {
+        return dailyRate;
+    }
+    
+    public int getGraceDays() {
+        return graceDays;
+    }
+    
+    public long getMaxFinePerLoan() {
+        return maxFinePerLoan;
+    }
+    
+    public long getBlockThreshold() {
+        return blockThreshold;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * HeapBookStore.java
+ * Default catalog storage: Book objects in a list with an ID map
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class HeapBookStore implements BookStore {
+    private final List<Book> books = new ArrayList<>(); // Guarded by the Library's catalog lock
+    private final Map<String, Book> bookIndex = new ConcurrentHashMap<>(); // Book ID -> Book, for O(1) lookups
+    
+    @Override
+    public boolean add(Book book) {
+        if (this.bookIndex.putIfAbsent(book.getBookId(), book) != null) {
+            return false;
+        }
+        book.setOrdinal(this.books.size());
+        this.books.add(book);
+        return true;
+    }
+    
+    @Override
+    public Book get(int ordinal) {
+        return this.books.get(ordinal);
+    }
+    
+    @Override
+    public Book find(String bookId) {
+        return this.bookIndex.get(bookId);
+    }
+    
+    @Override
+    public Book current(Book book) {
+        return book; // Only one object per book exists
+    }
+    
+    @Override
+    public void update(Book book) {
+        // The Book object is the record
+    }
+    
+    @Override
+    public int size() {
+        return this.books.size();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Hold.java
+ * A member's place in the waitlist for a book
+ */
+
+import java.time.LocalDate;
+
+public class Hold {
+    /**
+     * Where a hold is in its life
+     */
+    public enum Status {
+        WAITING,   // Queued behind earlier holds
+        READY,     // The copy is set aside for the member until the pickup deadline
+        FULFILLED, // The member borrowed the book
+        CANCELLED,
+        EXPIRED    // Not picked up in time
+    }
+    
+    private final String memberId;
+    private final String bookId;
+    private final int placedDay;
+    
+    // Changed under the owning queue's monitor; read without it
+    private volatile Status status;
+    private volatile int pickupDeadline; // Epoch day, Book.NO_DATE until ready
+    
+    /**
+     * Constructor to create a waiting hold
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param placedDay Epoch day the hold was placed
+     */
+    Hold(String memberId, String bookId, int placedDay) {
+        this.memberId = memberId;
+        this.bookId = bookId;
+        this.placedDay = placedDay;
+        this.status = Status.WAITING;
+        this.pickupDeadline = Book.NO_DATE;
+    }
+    
+    /**
+     * Set the copy aside for this member
+     * @param deadline Last epoch day the member can pick it up
+     */
+    void ready(int deadline) {
+        this.pickupDeadline = deadline;
+        this.status = Status.READY;
+    }
+    
+    /**
+     * End the hold
+     * @param outcome FULFILLED, CANCELLED or EXPIRED
+     */
+    void close(Status outcome) {
+        this.status = outcome;
+    }
+    
+    /**
+     * Check whether the hold still counts against the waitlist
+     * @return true if waiting or ready
+     */
+    public boolean isActive() {
+        Status current = this.status;
+        return current == Status.WAITING || current == Status.READY;
+    }
+    
+    // Getters
+    public String getMemberId() {
+        return memberId;
+    }
+    
+    public String getBookId() {
+        return bookId;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public LocalDate getPlacedDate() {
+        return LocalDate.ofEpochDay(placedDay);
+    }
+    
+    public int getPlacedDay() {
+        return placedDay;
+    }
+    
+    /**
+     * Get the last day a ready hold can be picked up
+     * @return The date, or null if the hold has not become ready
+     */
+    public LocalDate getPickupDeadline() {
+        int deadline = this.pickupDeadline;
+        return deadline != Book.NO_DATE ? LocalDate.ofEpochDay(deadline) : null;
+    }
+    
+    public int getPickupDeadlineDay() {
+        return pickupDeadline;
+    }
+    
+    @Override
+    public String toString() {
+        Status current = this.status;
+        return "Hold on " + bookId + " for " + memberId + ": " + current
+                + (current == Status.READY ? " (pick up by " + getPickupDeadline() + ")" : "");
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * HoldQueue.java
+ * FIFO waitlist of holds on one book
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Guarded by its own monitor, which Library holds across each change and
+ * the journal record for it, so the journal lists holds in queue order and
+ * replay rebuilds the same queue. Every operation is O(1) apart from the
+ * listing: a cancelled hold is only marked and is skipped when it reaches
+ * the head, and the deque is compacted once such holds make up half of it.
+ * Like DueDateIndex buckets, a queue is dropped from the library's map as
+ * soon as it has no active holds; a placement that finds a removed queue
+ * retries with a fresh one.
+ */
+
+class HoldQueue {
+    private final ArrayDeque<Hold> waiting = new ArrayDeque<>();
+    private final Map<String, Hold> active = new HashMap<>(); // Member ID -> waiting or ready hold
+    private Hold ready; // Hold the returned copy is set aside for, null if none
+    private int cancelled; // Cancelled holds still in the deque
+    boolean removed; // Set when the queue has been dropped from the library's map
+    
+    /**
+     * Queue a hold behind the existing ones
+     * @param hold A waiting hold
+     * @return false if the member already has an active hold here
+     */
+    boolean add(Hold hold) {
+        if (this.active.putIfAbsent(hold.getMemberId(), hold) != null) {
+            return false;
+        }
+        this.waiting.addLast(hold);
+        return true;
+    }
+    
+    /**
+     * Get a member's active hold
+     * @param memberId ID of the member
+     * @return The waiting or ready hold, or null if none
+     */
+    Hold holdOf(String memberId) {
+        return this.active.get(memberId);
+    }
+    
+    /**
+     * Get the hold the copy is set aside for
+     * @return The ready hold, or null if none
+     */
+    Hold ready() {
+        return this.ready;
+    }
+    
+    /**
+     * Set the copy aside for the longest-waiting hold
+     * @param deadline Last epoch day it can be picked up
+     * @return The hold made ready, or null if nobody is waiting
+     */
+    Hold promote(int deadline) {
+        Hold next;
+        while ((next = this.waiting.pollFirst()) != null) {
+            if (next.getStatus() == Hold.Status.WAITING) {
+                next.ready(deadline);
+                this.ready = next;
+                return next;
+            }
+            this.cancelled--;
+        }
+        return null;
+    }
+    
+    /**
+     * End an active hold
+     * @param hold A waiting or ready hold in this queue
+     * @param outcome FULFILLED, CANCELLED or EXPIRED
+     */
+    void close(Hold hold, Hold.Status outcome) {
+        boolean wasWaiting = hold.getStatus() == Hold.Status.WAITING;
+        hold.close(outcome);
+        this.active.remove(hold.getMemberId(), hold);
+        if (hold == this.ready) {
+            this.ready = null;
+        } else if (wasWaiting && ++this.cancelled > this.waiting.size() / 2) {
+            this.waiting.removeIf(queued -> queued.getStatus() != Hold.Status.WAITING);
+            this.cancelled = 0;
+        }
+    }
+    
+    /**
+     * Check whether any hold is still waiting or ready
+     * @return true if none is
+     */
+    boolean isEmpty() {
+        return this.active.isEmpty();
+    }
+    
+    /**
+     * Get the number of active holds
+     * @return Waiting holds plus the ready one
+     */
+    int size() {
+        return this.active.size();
+    }
+    
+    /**
+     * Copy the active holds in the order they will be served
+     * @return The ready hold (if any) first, then waiting holds oldest first
+     */
+    List<Hold> list() {
+        List<Hold> holds = new ArrayList<>(this.active.size());
+        if (this.ready != null) {
+            holds.add(this.ready);
+        }
+        for (Hold hold : this.waiting) {
+            if (hold.getStatus() == Hold.Status.WAITING) {
+                holds.add(hold);
+            }
+        }
+        return holds;
+    }
+}
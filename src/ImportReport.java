@@ -0,0 +1,119 @@
+/**
+ * ImportReport.java
+ * Outcome of a bulk catalog import
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportReport {
+    private static final int MAX_STORED_ERRORS = 10000;
+    
+    private final String source;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsRejected;
+    private long elapsedNanos;
+    private final List<String> errors;
+    
+    /**
+     * Constructor to create an empty report
+     * @param source File being imported
+     */
+    public ImportReport(String source) {
+        this.source = source;
+        this.errors = new ArrayList<>();
+    }
+    
+    /**
+     * Record a rejected row
+     * @param line 1-based line number in the file
+     * @param reason Why the row was rejected
+     */
+    void reject(long line, String reason) {
+        this.rowsRejected++;
+        if (this.errors.size() < MAX_STORED_ERRORS) {
+            this.errors.add("line " + line + ": " + reason);
+        }
+    }
+    
+    void addRowsRead(long rows) {
+        this.rowsRead += rows;
+    }
+    
+    void addRowsImported(long rows) {
+        this.rowsImported += rows;
+    }
+    
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    /**
+     * Write every stored error to a file, one per line
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeErrors(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (String error : this.errors) {
+                out.write(error);
+                out.newLine();
+            }
+            if (this.rowsRejected > this.errors.size()) {
+                out.write("... " + (this.rowsRejected - this.errors.size()) + " more rejected rows");
+                out.newLine();
+            }
+        }
+    }
+    
+    /**
+     * Get the import throughput
+     * @return Rows read per second
+     */
+    public double getRowsPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.rowsRead * 1e9 / this.elapsedNanos;
+    }
+    
+    // Getters
+    public String getSource() {
+        return source;
+    }
+    
+    public long getRowsRead() {
+        return rowsRead;
+    }
+    
+    public long getRowsImported() {
+        return rowsImported;
+    }
+    
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Get the stored error messages (the first 10,000 rejected rows)
+     * @return Error messages; each chunk's malformed rows come before the
+     *         duplicates found when its batch was inserted
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Imported %,d of %,d rows from %s (%,d rejected) in %.2f s (%,.0f rows/s)",
+                rowsImported, rowsRead, source, rowsRejected, elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * IsbnIndex.java
+ * ISBN normalization and a primitive long-keyed ISBN -> book ordinal index
+ */
+
+import java.util.Arrays;
+
+/*
+ * ISBNs are normalized to their 13-digit form and stored as a long, so the
+ * index is a pair of flat arrays with linear probing: no boxed keys and no
+ * per-entry objects. Each slot holds the first and last ordinal of its
+ * copies; further copies are chained through nextCopy, indexed by ordinal.
+ * Not thread-safe on its own; the Library guards it with its catalog lock.
+ */
+
+public class IsbnIndex {
+    public static final long INVALID = -1;
+    private static final long EMPTY = 0; // Never a valid ISBN-13 (prefix is 978/979)
+    private static final int NO_COPY = -1;
+    
+    private long[] keys;
+    private int[] firstCopy;
+    private int[] lastCopy;
+    private int[] nextCopy; // Ordinal -> next ordinal with the same ISBN
+    private int size;
+    
+    /**
+     * Constructor to create an empty index
+     */
+    public IsbnIndex() {
+        this.keys = new long[16];
+        this.firstCopy = new int[16];
+        this.lastCopy = new int[16];
+        this.nextCopy = new int[16];
+        Arrays.fill(this.nextCopy, NO_COPY);
+    }
+    
+    /**
+     * Normalize an ISBN-10 or ISBN-13, with or without hyphens or spaces,
+     * to its 13-digit numeric form. Does not allocate.
+     * @param isbn ISBN text, may be null
+     * @return 13-digit ISBN, or INVALID if malformed or the checksum fails
+     */
+    public static long normalize(CharSequence isbn) {
+        if (isbn == null) {
+            return INVALID;
+        }
+        long digits = 0;
+        int count = 0;
+        int sum10 = 0; // ISBN-10 weighted sum (weights 10..1)
+        int sum13 = 0; // ISBN-13 weighted sum (weights 1,3,1,3...)
+        boolean checkIsX = false;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0';
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                value = 10;
+                checkIsX = true;
+            } else {
+                return INVALID;
+            }
+            if (count == 13 || checkIsX && count != 9) {
+                return INVALID;
+            }
+            sum10 += value * (10 - count);
+            sum13 += value * (count % 2 == 0 ? 1 : 3);
+            digits = digits * 10 + value;
+            count++;
+        }
+        
+        if (count == 13) {
+            return !checkIsX && sum13 % 10 == 0 ? digits : INVALID;
+        }
+        if (count != 10 || sum10 % 11 != 0) {
+            return INVALID;
+        }
+        
+        // ISBN-10 -> 978 prefix + first nine digits + new check digit
+        long body = 978_000_000_000L + (checkIsX ? (digits - 10) / 10 : digits / 10);
+        int sum = 0;
+        long rest = body;
+        for (int position = 11; position >= 0; position--) {
+            sum += (int) (rest % 10) * (position % 2 == 0 ? 1 : 3);
+            rest /= 10;
+        }
+        return body * 10 + (10 - sum % 10) % 10;
+    }
+    
+    /**
+     * Add a copy of a book under its ISBN
+     * @param isbn Normalized ISBN-13
+     * @param ordinal Catalog ordinal of the copy
+     */
+    public void add(long isbn, int ordinal) {
+        if (isbn <= 0) {
+            return;
+        }
+        if (ordinal >= this.nextCopy.length) {
+            int oldLength = this.nextCopy.length;
+            this.nextCopy = Arrays.copyOf(this.nextCopy, Math.max(ordinal + 1, oldLength * 2));
+            Arrays.fill(this.nextCopy, oldLength, this.nextCopy.length, NO_COPY);
+        }
+        if ((this.size + 1) * 2 > this.keys.length) {
+            rehash(this.keys.length * 2);
+        }
+        
+        int slot = slotOf(isbn);
+        if (this.keys[slot] == EMPTY) {
+            this.keys[slot] = isbn;
+            this.firstCopy[slot] = ordinal;
+            this.size++;
+        } else {
+            this.nextCopy[this.lastCopy[slot]] = ordinal;
+        }
+        this.lastCopy[slot] = ordinal;
+    }
+    
+    /**
+     * Get the first copy with an ISBN
+     * @param isbn Normalized ISBN-13
+     * @return Ordinal of the first copy added, or -1 if none
+     */
+    public int firstCopy(long isbn) {
+        if (isbn <= 0) {
+            return NO_COPY;
+        }
+        int slot = slotOf(isbn);
+        return this.keys[slot] == EMPTY ? NO_COPY : this.firstCopy[slot];
+    }
+    
+    /**
+     * Get the next copy with the same ISBN
+     * @param ordinal Ordinal of a copy returned by firstCopy or nextCopy
+     * @return Ordinal of the next copy, or -1 if none
+     */
+    public int nextCopy(int ordinal) {
+        return this.nextCopy[ordinal];
+    }
+    
+    /**
+     * Get the number of distinct ISBNs indexed
+     * @return ISBN count
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Find the slot holding an ISBN, or the empty slot where it belongs
+     * @param isbn Normalized ISBN-13
+     * @return Slot index
+     */
+    private int slotOf(long isbn) {
+        int mask = this.keys.length - 1;
+        long h = isbn * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (this.keys[slot] != EMPTY && this.keys[slot] != isbn) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    /**
+     * Grow the table and reinsert every ISBN
+     * @param capacity New capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldFirst = this.firstCopy;
+        int[] oldLast = this.lastCopy;
+        this.keys = new long[capacity];
+        this.firstCopy = new int[capacity];
+        this.lastCopy = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.firstCopy[slot] = oldFirst[i];
+                this.lastCopy[slot] = oldLast[i];
+            }
+        }
+    }
+}
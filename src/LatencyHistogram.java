@@ -0,0 +1,134 @@
+/**
+ * LatencyHistogram.java
+ * Lock-free, allocation-free log-linear latency histogram
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * HDR-style bucketing: values below 16 ns get their own bucket; above that,
+ * every power of two is split into 16 linear sub-buckets, so any recorded
+ * value is reported within 1/16 (~6%) of its true value. 960 buckets cover
+ * the whole positive long range.
+ */
+
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Record one measurement
+     * @param nanos Latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.total.increment();
+        this.sum.add(value);
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+            currentMax = this.max.get();
+        }
+    }
+    
+    /**
+     * Get the number of recorded measurements
+     * @return Count
+     */
+    public long getCount() {
+        return this.total.sum();
+    }
+    
+    /**
+     * Get the mean of recorded measurements
+     * @return Mean in nanoseconds, 0 if empty
+     */
+    public double getMean() {
+        long count = this.total.sum();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+    
+    /**
+     * Get the largest recorded measurement
+     * @return Maximum in nanoseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+    
+    /**
+     * Estimate a percentile from the bucket counts
+     * @param percentile Percentile between 0 and 100
+     * @return Upper bound of the bucket holding the percentile, in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+    
+    /**
+     * Clear all recorded measurements
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.total.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+    
+    /**
+     * Map a value to its bucket
+     * @param value Non-negative value
+     * @return Bucket index
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Get the largest value that maps to a bucket
+     * @param bucket Bucket index
+     * @return Inclusive upper bound
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
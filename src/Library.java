@@ -3,24 +3,133 @@
  * Main library management class
  */
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Date;
-import java.text.SimpleDateFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/*
+ * Thread safety: lookups go through concurrent ID indexes and never block.
+ * Issue/return lock one member stripe and then one book stripe (always in
+ * that order, so two desks can never deadlock), which lets operations on
+ * unrelated books and members run in parallel. Multi-book issues and
+ * returns take their book stripes in ascending stripe order. The ordered lists behind the
+ * display* listings are guarded by catalogLock. Fines are charged and paid
+ * under the member's lock, so the balance check in issueBook is exact.
+ * Each book's hold queue has its own monitor, taken after the book's lock.
+ * Placing a hold takes the book's stripe and then the queue's monitor (no
+ * member lock), so its holder check is journaled in order with issues and
+ * returns of that book; holds on books in different stripes never contend.
+ */
 
 public class Library {
+    private static final int LOCK_STRIPES = 64; // Must be a power of two
+    public static final int DEFAULT_LOAN_PERIOD_DAYS = 14;
+    public static final int DEFAULT_HOLD_PICKUP_DAYS = 3;
+    
     private String libraryName;
-    private List<Book> books;
+    private BookStore books; // Catalog by ordinal and ID, on or off the heap
     private List<Member> members;
+    private Map<String, Member> memberIndex; // Member ID -> Member, for O(1) lookups
+    private BookSearchIndex searchIndex; // Title/author tokens -> book ordinals
+    private IsbnIndex isbnIndex; // Normalized ISBN-13 -> book ordinals (all copies)
+    private LoanTable loans; // Book ordinal -> holder's member ordinal and loan slot
+    private DueDateIndex dueDates; // Due day -> books on loan
+    private FineLedger fines; // Member ordinal -> fines charged and paid
+    private Map<String, HoldQueue> holds; // Book ID -> waitlist, only while it has active holds
+    private volatile FinePolicy finePolicy; // Null when fines are disabled
+    private volatile int loanPeriodDays;
+    private volatile int holdPickupDays;
+    private Clock clock;
+    private volatile CachedDay today; // Current epoch day, so issues need not rebuild a date
+    private ReentrantReadWriteLock catalogLock;
+    private ReentrantLock[] memberLocks;
+    private ReentrantLock[] bookLocks;
+    private volatile LibraryJournal journal; // Optional write-ahead journal
+    private long restoredJournalSeq; // Journal records already in a restored snapshot
+    private volatile LibraryMetrics metrics; // Optional operation metrics
+    private volatile LibraryEventListener events; // Optional; null publishes nothing
+    private volatile ReportCache reports; // Optional cache of rendered display* listings
+    private volatile CirculationAnalytics analytics; // Optional issue counts by title and borrower
+    
+    // Live statistics; book counts pack (total << 32 | issued) so one read is consistent
+    private AtomicLong bookCounts;
+    private AtomicInteger memberCount;
+    private AtomicInteger membersAtLimit;
     
     /**
      * Constructor to initialize library
      * @param libraryName Name of the library
      */
     public Library(String libraryName) {
+        this(libraryName, new HeapBookStore());
+    }
+    
+    /**
+     * Constructor to initialize a library whose book records live off the
+     * heap. Books already in the catalog (e.g. a reopened mapped catalog)
+     * are indexed for search and ISBN lookup and are available for loan.
+     * @param libraryName Name of the library
+     * @param catalog Off-heap catalog; the caller closes it after the library
+     */
+    public Library(String libraryName, OffHeapCatalog catalog) {
+        this(libraryName, (BookStore) catalog);
+    }
+    
+    /**
+     * Constructor to initialize a library whose book records are kept in
+     * compact columns on the heap. Books already in the catalog are indexed
+     * for search and ISBN lookup and are available for loan.
+     * @param libraryName Name of the library
+     * @param catalog Compact catalog, used by this library only
+     */
+    public Library(String libraryName, CompactCatalog catalog) {
+        this(libraryName, (BookStore) catalog);
+    }
+    
+    private Library(String libraryName, BookStore books) {
         this.libraryName = libraryName;
-        this.books = new ArrayList<>();
+        this.books = books;
         this.members = new ArrayList<>();
+        this.memberIndex = new ConcurrentHashMap<>();
+        this.searchIndex = new BookSearchIndex();
+        this.isbnIndex = new IsbnIndex();
+        this.loans = new LoanTable();
+        this.dueDates = new DueDateIndex();
+        this.fines = new FineLedger();
+        this.holds = new ConcurrentHashMap<>();
+        this.finePolicy = FinePolicy.DEFAULT;
+        this.loanPeriodDays = DEFAULT_LOAN_PERIOD_DAYS;
+        this.holdPickupDays = DEFAULT_HOLD_PICKUP_DAYS;
+        this.clock = Clock.systemDefaultZone();
+        this.today = new CachedDay(0, 0, 0);
+        this.bookCounts = new AtomicLong();
+        this.memberCount = new AtomicInteger();
+        this.membersAtLimit = new AtomicInteger();
+        this.catalogLock = new ReentrantReadWriteLock();
+        this.memberLocks = newLockStripes();
+        this.bookLocks = newLockStripes();
+        
+        int existing = books.size();
+        this.loans.ensureCapacity(existing);
+        for (int ordinal = 0; ordinal < existing; ordinal++) {
+            Book book = books.get(ordinal);
+            this.searchIndex.add(ordinal, book);
+            this.isbnIndex.add(IsbnIndex.normalize(book.getIsbn()), ordinal);
+        }
+        this.bookCounts.set((long) existing << 32);
     }
     
     /**
@@ -30,18 +139,37 @@ public class Library {
      */
     public void addBook(Book book) {
         if (book == null) {
-            throw new IllegalArgumentException("Book cannot be null");
+            throw failure(LibraryMetrics.Operation.ADD_BOOK, LibraryMetrics.FailureReason.INVALID_ARGUMENT,
+                    new IllegalArgumentException("Book cannot be null"));
         }
         
-        // Check if book already exists
-        for (Book b : this.books) {
-            if (b.getBookId().equals(book.getBookId())) {
-                throw new IllegalArgumentException("Book with ID " + book.getBookId() + " already exists");
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        admit(journal);
+        this.catalogLock.writeLock().lock();
+        try {
+            // Check if book already exists
+            if (!indexBook(book)) {
+                throw failure(LibraryMetrics.Operation.ADD_BOOK, LibraryMetrics.FailureReason.DUPLICATE_ID,
+                        new IllegalArgumentException("Book with ID " + book.getBookId() + " already exists"));
             }
+            this.bookCounts.addAndGet(1L << 32);
+            if (journal != null) {
+                journalSeq = journal.appendAddBook(book);
+            }
+        } finally {
+            this.catalogLock.writeLock().unlock();
+            release(journal);
         }
-        
-        this.books.add(book);
-        System.out.println("✓ Book '" + book.getTitle() + "' added to library");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        if (metrics != null) {
+            metrics.recordSuccess(LibraryMetrics.Operation.ADD_BOOK, startNanos);
+        }
+        publish(LibraryEvent.Type.BOOK_ADDED, book, null, Book.NO_DATE);
     }
     
     /**
@@ -51,18 +179,99 @@ public class Library {
      */
     public void addMember(Member member) {
         if (member == null) {
-            throw new IllegalArgumentException("Member cannot be null");
+            throw failure(LibraryMetrics.Operation.ADD_MEMBER, LibraryMetrics.FailureReason.INVALID_ARGUMENT,
+                    new IllegalArgumentException("Member cannot be null"));
         }
         
-        // Check if member already exists
-        for (Member m : this.members) {
-            if (m.getMemberId().equals(member.getMemberId())) {
-                throw new IllegalArgumentException("Member with ID " + member.getMemberId() + " already exists");
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        admit(journal);
+        this.catalogLock.writeLock().lock();
+        try {
+            // Check if member already exists
+            if (!indexMember(member)) {
+                throw failure(LibraryMetrics.Operation.ADD_MEMBER, LibraryMetrics.FailureReason.DUPLICATE_ID,
+                        new IllegalArgumentException("Member with ID " + member.getMemberId() + " already exists"));
             }
+            this.memberCount.incrementAndGet();
+            if (journal != null) {
+                journalSeq = journal.appendAddMember(member);
+            }
+        } finally {
+            this.catalogLock.writeLock().unlock();
+            release(journal);
         }
-        
-        this.members.add(member);
-        System.out.println("✓ Member '" + member.getName() + "' registered successfully");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        if (metrics != null) {
+            metrics.recordSuccess(LibraryMetrics.Operation.ADD_MEMBER, startNanos);
+        }
+        publish(LibraryEvent.Type.MEMBER_REGISTERED, null, member, Book.NO_DATE);
+    }
+    
+    /**
+     * Add many books as one batch: one lock acquisition, one journal sync
+     * and no per-book events
+     * @param newBooks Books to add, in catalog order
+     * @return Books rejected because their ID already exists (or is repeated in the batch)
+     */
+    public List<Book> addBooks(List<Book> newBooks) {
+        List<Book> rejected = new ArrayList<>();
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        admit(journal);
+        this.catalogLock.writeLock().lock();
+        try {
+            for (Book book : newBooks) {
+                if (book == null || !indexBook(book)) {
+                    rejected.add(book);
+                } else if (journal != null) {
+                    journalSeq = journal.appendAddBook(book);
+                }
+            }
+            this.bookCounts.addAndGet((long) (newBooks.size() - rejected.size()) << 32);
+        } finally {
+            this.catalogLock.writeLock().unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return rejected;
+    }
+    
+    /**
+     * Register many members as one batch: one lock acquisition, one journal
+     * sync and no per-member events
+     * @param newMembers Members to register, in registration order
+     * @return Members rejected because their ID already exists (or is repeated in the batch)
+     */
+    public List<Member> addMembers(List<Member> newMembers) {
+        List<Member> rejected = new ArrayList<>();
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        admit(journal);
+        this.catalogLock.writeLock().lock();
+        try {
+            for (Member member : newMembers) {
+                if (member == null || !indexMember(member)) {
+                    rejected.add(member);
+                } else if (journal != null) {
+                    journalSeq = journal.appendAddMember(member);
+                }
+            }
+            this.memberCount.addAndGet(newMembers.size() - rejected.size());
+        } finally {
+            this.catalogLock.writeLock().unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return rejected;
     }
     
     /**
@@ -70,62 +279,387 @@ public class Library {
      * @param memberId ID of the member
      * @param bookId ID of the book
      * @throws IllegalArgumentException if member or book not found
-     * @throws IllegalStateException if book is already issued or member has reached limit
+     * @throws IllegalStateException if book is already issued or set aside for another
+     *         member's hold, member has reached limit or member owes fines at or above
+     *         the policy's block threshold
      */
     public void issueBook(String memberId, String bookId) {
+        int issueDay = currentDay();
+        issueBook(memberId, bookId, issueDay, issueDay + this.loanPeriodDays);
+    }
+    
+    /**
+     * Issue a book to a member for a given loan period
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param loanDays Days until the book is due back
+     * @throws IllegalArgumentException if member or book not found, or loanDays is not positive
+     * @throws IllegalStateException if book is already issued or member has reached limit
+     */
+    public void issueBook(String memberId, String bookId, int loanDays) {
+        if (loanDays <= 0) {
+            throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.INVALID_ARGUMENT,
+                    new IllegalArgumentException("Loan period must be positive"));
+        }
+        int issueDay = currentDay();
+        issueBook(memberId, bookId, issueDay, issueDay + loanDays);
+    }
+    
+    /**
+     * Issue a book to a member with given dates (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if book is already issued or member has reached limit
+     */
+    void issueBook(String memberId, String bookId, int issueDay, int dueDay) {
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
         Member member = findMember(memberId);
         if (member == null) {
-            throw new IllegalArgumentException("Member with ID " + memberId + " not found");
+            throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.MEMBER_NOT_FOUND,
+                    new IllegalArgumentException("Member with ID " + memberId + " not found"));
         }
         
         Book book = findBook(bookId);
         if (book == null) {
-            throw new IllegalArgumentException("Book with ID " + bookId + " not found");
+            throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.BOOK_NOT_FOUND,
+                    new IllegalArgumentException("Book with ID " + bookId + " not found"));
         }
         
-        if (!book.isAvailable()) {
-            throw new IllegalStateException("Book is already issued");
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        ReentrantLock memberLock = stripe(this.memberLocks, memberId);
+        ReentrantLock bookLock = stripe(this.bookLocks, bookId);
+        admit(journal);
+        memberLock.lock();
+        bookLock.lock();
+        try {
+            book = this.books.current(book);
+            if (!book.isAvailable()) {
+                throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.ALREADY_ISSUED,
+                        new IllegalStateException("Book is already issued"));
+            }
+            
+            HoldQueue queue = this.holds.get(bookId);
+            Hold hold = null;
+            if (queue != null) {
+                synchronized (queue) {
+                    hold = readyHold(queue, book, issueDay);
+                }
+                if (hold != null && !hold.getMemberId().equals(memberId)) {
+                    throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.ON_HOLD,
+                            new IllegalStateException("Book is on hold for another member"));
+                }
+            }
+            
+            if (member.hasReachedLimit()) {
+                throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.LIMIT_REACHED,
+                        new IllegalStateException("Member has reached maximum book limit ("
+                                + Member.MAX_BOOKS + " books)"));
+            }
+            
+            FinePolicy policy = this.finePolicy;
+            if (policy != null) {
+                long balance = this.fines.getBalance(member.getOrdinal());
+                if (balance >= policy.getBlockThreshold()) {
+                    throw failure(LibraryMetrics.Operation.ISSUE_BOOK, LibraryMetrics.FailureReason.FINES_OUTSTANDING,
+                            new IllegalStateException("Member has unpaid fines of " + FinePolicy.format(balance)));
+                }
+            }
+            
+            applyIssue(member, book, queue, hold, issueDay, dueDay);
+            if (journal != null) {
+                journalSeq = journal.appendIssueBook(memberId, bookId, issueDay, dueDay);
+            }
+        } finally {
+            bookLock.unlock();
+            memberLock.unlock();
+            release(journal);
         }
-        
-        if (member.hasReachedLimit()) {
-            throw new IllegalStateException("Member has reached maximum book limit (5 books)");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
         }
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String issueDate = dateFormat.format(new Date());
-        
-        book.issueBook(member.getName(), issueDate);
-        member.addIssuedBook(book);
+        if (metrics != null) {
+            metrics.recordSuccess(LibraryMetrics.Operation.ISSUE_BOOK, startNanos);
+        }
+        publish(LibraryEvent.Type.BOOK_ISSUED, book, member, issueDay);
     }
     
     /**
-     * Return a book from a member
+     * Return a book from a member, charging any late fine to the member;
+     * if the book has holds, it is set aside for the longest-waiting one
      * @param memberId ID of the member
      * @param bookId ID of the book
      * @throws IllegalArgumentException if member or book not found
      * @throws IllegalStateException if book is not issued to member
      */
     public void returnBook(String memberId, String bookId) {
+        returnBook(memberId, bookId, currentDay());
+    }
+    
+    /**
+     * Return a book on a given day (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param returnDay Epoch day of return, or Book.NO_DATE to charge no more
+     *        than has already accrued
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if book is not issued to member
+     */
+    void returnBook(String memberId, String bookId, int returnDay) {
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
         Member member = findMember(memberId);
         if (member == null) {
-            throw new IllegalArgumentException("Member with ID " + memberId + " not found");
+            throw failure(LibraryMetrics.Operation.RETURN_BOOK, LibraryMetrics.FailureReason.MEMBER_NOT_FOUND,
+                    new IllegalArgumentException("Member with ID " + memberId + " not found"));
         }
         
         Book book = findBook(bookId);
         if (book == null) {
-            throw new IllegalArgumentException("Book with ID " + bookId + " not found");
+            throw failure(LibraryMetrics.Operation.RETURN_BOOK, LibraryMetrics.FailureReason.BOOK_NOT_FOUND,
+                    new IllegalArgumentException("Book with ID " + bookId + " not found"));
         }
         
-        if (book.isAvailable()) {
-            throw new IllegalStateException("Book is not issued");
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        ReentrantLock memberLock = stripe(this.memberLocks, memberId);
+        ReentrantLock bookLock = stripe(this.bookLocks, bookId);
+        admit(journal);
+        memberLock.lock();
+        bookLock.lock();
+        try {
+            book = this.books.current(book);
+            if (book.isAvailable()) {
+                throw failure(LibraryMetrics.Operation.RETURN_BOOK, LibraryMetrics.FailureReason.NOT_ISSUED,
+                        new IllegalStateException("Book is not issued"));
+            }
+            
+            if (this.loans.holderOf(book.getOrdinal()) != member.getOrdinal()) {
+                throw failure(LibraryMetrics.Operation.RETURN_BOOK, LibraryMetrics.FailureReason.NOT_ISSUED_TO_MEMBER,
+                        new IllegalStateException("Book is not issued to this member"));
+            }
+            
+            applyReturn(member, book, returnDay);
+            HoldQueue queue = this.holds.get(bookId);
+            if (queue != null) {
+                // Journal under the queue's monitor so replay hands the copy to the same hold
+                synchronized (queue) {
+                    readyHold(queue, book, returnDay != Book.NO_DATE ? returnDay : currentDay());
+                    if (journal != null) {
+                        journalSeq = journal.appendReturnBook(memberId, bookId, returnDay);
+                    }
+                }
+            } else if (journal != null) {
+                journalSeq = journal.appendReturnBook(memberId, bookId, returnDay);
+            }
+        } finally {
+            bookLock.unlock();
+            memberLock.unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        if (metrics != null) {
+            metrics.recordSuccess(LibraryMetrics.Operation.RETURN_BOOK, startNanos);
+        }
+        publish(LibraryEvent.Type.BOOK_RETURNED, book, member, returnDay);
+    }
+    
+    /**
+     * Issue several books to a member at once: either every book is issued
+     * or none is. The member and books are locked once, and the loan limit
+     * and fines are checked against the whole batch. Unknown or repeated
+     * IDs are reported before anything is locked, without the per-book checks.
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @return Per-book outcome; isApplied() is false if anything failed
+     * @throws IllegalArgumentException if bookIds is null or empty
+     */
+    public CheckoutResult issueBooks(String memberId, List<String> bookIds) {
+        int issueDay = currentDay();
+        return issueBooks(memberId, bookIds, issueDay, issueDay + this.loanPeriodDays);
+    }
+    
+    /**
+     * Issue several books with given dates (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the books are due back
+     * @return Per-book outcome; isApplied() is false if anything failed
+     * @throws IllegalArgumentException if bookIds is null or empty
+     */
+    CheckoutResult issueBooks(String memberId, List<String> bookIds, int issueDay, int dueDay) {
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        CheckoutResult result = newCheckout(memberId, bookIds);
+        Member member = findMember(memberId);
+        Book[] batch = findBatch(bookIds, result);
+        if (member == null) {
+            result.failMember(LibraryMetrics.FailureReason.MEMBER_NOT_FOUND);
+        }
+        if (!result.isValid()) {
+            return rejected(LibraryMetrics.Operation.ISSUE_BOOK, result);
         }
         
-        if (!book.getIssuedTo().equals(member.getName())) {
-            throw new IllegalStateException("Book is not issued to this member");
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        ReentrantLock memberLock = stripe(this.memberLocks, memberId);
+        ReentrantLock[] bookLocks = stripes(batch);
+        admit(journal);
+        memberLock.lock();
+        lockAll(bookLocks);
+        try {
+            HoldQueue[] queues = new HoldQueue[batch.length];
+            Hold[] holds = new Hold[batch.length];
+            for (int i = 0; i < batch.length; i++) {
+                Book book = batch[i] = this.books.current(batch[i]);
+                if (!book.isAvailable()) {
+                    result.fail(i, LibraryMetrics.FailureReason.ALREADY_ISSUED);
+                    continue;
+                }
+                queues[i] = this.holds.get(book.getBookId());
+                if (queues[i] != null) {
+                    synchronized (queues[i]) {
+                        holds[i] = readyHold(queues[i], book, issueDay);
+                    }
+                    if (holds[i] != null && !holds[i].getMemberId().equals(memberId)) {
+                        result.fail(i, LibraryMetrics.FailureReason.ON_HOLD);
+                    }
+                }
+            }
+            if (member.getIssuedBooksCount() + batch.length > Member.MAX_BOOKS) {
+                result.failMember(LibraryMetrics.FailureReason.LIMIT_REACHED);
+            }
+            FinePolicy policy = this.finePolicy;
+            if (policy != null && this.fines.getBalance(member.getOrdinal()) >= policy.getBlockThreshold()) {
+                result.failMember(LibraryMetrics.FailureReason.FINES_OUTSTANDING);
+            }
+            if (!result.isValid()) {
+                return rejected(LibraryMetrics.Operation.ISSUE_BOOK, result);
+            }
+            
+            for (int i = 0; i < batch.length; i++) {
+                applyIssue(member, batch[i], queues[i], holds[i], issueDay, dueDay);
+            }
+            if (journal != null) {
+                journalSeq = journal.appendIssueBooks(memberId, bookIds, issueDay, dueDay);
+            }
+            result.setApplied();
+        } finally {
+            unlockAll(bookLocks);
+            memberLock.unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        if (metrics != null) {
+            for (int i = 0; i < batch.length; i++) {
+                metrics.recordSuccess(LibraryMetrics.Operation.ISSUE_BOOK, startNanos);
+            }
+        }
+        for (Book book : batch) {
+            publish(LibraryEvent.Type.BOOK_ISSUED, book, member, issueDay);
+        }
+        return result;
+    }
+    
+    /**
+     * Return several books from a member at once: either every book is
+     * returned or none is. Late fines are charged and held copies set aside
+     * as for returnBook.
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @return Per-book outcome; isApplied() is false if anything failed
+     * @throws IllegalArgumentException if bookIds is null or empty
+     */
+    public CheckoutResult returnBooks(String memberId, List<String> bookIds) {
+        return returnBooks(memberId, bookIds, currentDay());
+    }
+    
+    /**
+     * Return several books on a given day (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @param returnDay Epoch day of return
+     * @return Per-book outcome; isApplied() is false if anything failed
+     * @throws IllegalArgumentException if bookIds is null or empty
+     */
+    CheckoutResult returnBooks(String memberId, List<String> bookIds, int returnDay) {
+        LibraryMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        CheckoutResult result = newCheckout(memberId, bookIds);
+        Member member = findMember(memberId);
+        Book[] batch = findBatch(bookIds, result);
+        if (member == null) {
+            result.failMember(LibraryMetrics.FailureReason.MEMBER_NOT_FOUND);
+        }
+        if (!result.isValid()) {
+            return rejected(LibraryMetrics.Operation.RETURN_BOOK, result);
         }
         
-        book.returnBook();
-        member.removeIssuedBook(book);
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        ReentrantLock memberLock = stripe(this.memberLocks, memberId);
+        ReentrantLock[] bookLocks = stripes(batch);
+        admit(journal);
+        memberLock.lock();
+        lockAll(bookLocks);
+        try {
+            for (int i = 0; i < batch.length; i++) {
+                Book book = batch[i] = this.books.current(batch[i]);
+                if (book.isAvailable()) {
+                    result.fail(i, LibraryMetrics.FailureReason.NOT_ISSUED);
+                } else if (this.loans.holderOf(book.getOrdinal()) != member.getOrdinal()) {
+                    result.fail(i, LibraryMetrics.FailureReason.NOT_ISSUED_TO_MEMBER);
+                }
+            }
+            if (!result.isValid()) {
+                return rejected(LibraryMetrics.Operation.RETURN_BOOK, result);
+            }
+            
+            List<HoldQueue> queues = new ArrayList<>();
+            for (Book book : batch) {
+                applyReturn(member, book, returnDay);
+                HoldQueue queue = this.holds.get(book.getBookId());
+                if (queue != null) {
+                    queues.add(queue);
+                }
+            }
+            // As in returnBook, hand the copies on and journal under the queues' monitors
+            journalSeq = withMonitors(queues, 0, () -> {
+                for (Book book : batch) {
+                    HoldQueue queue = this.holds.get(book.getBookId());
+                    if (queue != null) {
+                        readyHold(queue, book, returnDay);
+                    }
+                }
+                return journal != null ? journal.appendReturnBooks(memberId, bookIds, returnDay) : 0;
+            });
+            result.setApplied();
+        } finally {
+            unlockAll(bookLocks);
+            memberLock.unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        if (metrics != null) {
+            for (int i = 0; i < batch.length; i++) {
+                metrics.recordSuccess(LibraryMetrics.Operation.RETURN_BOOK, startNanos);
+            }
+        }
+        for (Book book : batch) {
+            publish(LibraryEvent.Type.BOOK_RETURNED, book, member, returnDay);
+        }
+        return result;
     }
     
     /**
@@ -133,13 +667,8 @@ public class Library {
      * @param bookId The book ID to search for
      * @return Book if found, null otherwise
      */
-    private Book findBook(String bookId) {
-        for (Book book : this.books) {
-            if (book.getBookId().equals(bookId)) {
-                return book;
-            }
-        }
-        return null;
+    public Book findBook(String bookId) {
+        return this.books.find(bookId);
     }
     
     /**
@@ -147,132 +676,1468 @@ public class Library {
      * @param memberId The member ID to search for
      * @return Member if found, null otherwise
      */
-    private Member findMember(String memberId) {
-        for (Member member : this.members) {
-            if (member.getMemberId().equals(memberId)) {
-                return member;
+    public Member findMember(String memberId) {
+        return this.memberIndex.get(memberId);
+    }
+    
+    /**
+     * Find the member currently holding a book
+     * @param bookId ID of the book
+     * @return Member holding the book, or null if it is not issued or does not exist
+     */
+    public Member findHolder(String bookId) {
+        Book book = findBook(bookId);
+        if (book == null) {
+            return null;
+        }
+        int holder = this.loans.holderOf(book.getOrdinal());
+        if (holder == LoanTable.NO_HOLDER) {
+            return null;
+        }
+        this.catalogLock.readLock().lock();
+        try {
+            return this.members.get(holder);
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Find loans overdue as of a day
+     * @param asOf Day to check; loans due before it are overdue
+     * @return Overdue loans, oldest due date first
+     */
+    public List<Loan> findOverdue(LocalDate asOf) {
+        return findLoansDue(Integer.MIN_VALUE, (int) asOf.toEpochDay());
+    }
+    
+    /**
+     * Find loans falling due within a number of days
+     * @param from First day of the window
+     * @param days Length of the window; loans due on from .. from + days - 1 are returned
+     * @return Loans in the window, earliest due date first
+     */
+    public List<Loan> findDueWithin(LocalDate from, int days) {
+        int fromDay = (int) from.toEpochDay();
+        return findLoansDue(fromDay, fromDay + Math.max(0, days));
+    }
+    
+    /**
+     * Collect the loans due in a range of days; the cost is proportional to
+     * the number of loans found, not to the catalog size
+     * @param fromDay First due day, inclusive
+     * @param toDay Last due day, exclusive
+     * @return Loans in due-day order
+     */
+    private List<Loan> findLoansDue(int fromDay, int toDay) {
+        List<Book> due = new ArrayList<>();
+        this.dueDates.collect(fromDay, toDay, due);
+        List<Loan> result = new ArrayList<>(due.size());
+        this.catalogLock.readLock().lock();
+        try {
+            for (Book book : due) {
+                int issueDay = book.getIssueDay();
+                int dueDay = book.getDueDay();
+                int holder = this.loans.holderOf(book.getOrdinal());
+                // Skip books returned since the buckets were read
+                if (holder != LoanTable.NO_HOLDER && dueDay != Book.NO_DATE) {
+                    result.add(new Loan(book, this.members.get(holder), issueDay, dueDay));
+                }
             }
+        } finally {
+            this.catalogLock.readLock().unlock();
         }
-        return null;
+        return result;
     }
     
     /**
-     * Display all available books
+     * Charge late fines on every overdue loan up to a day. Loans are fined
+     * in parallel, each under its holder's lock; running again for the same
+     * day charges nothing, and a later return charges only the remainder.
+     * @param asOf Day to charge up to
+     * @return Total newly charged, in minor units
      */
-    public void displayAvailableBooks() {
-        System.out.println("\n=== Available Books ===");
-        List<Book> availableBooks = new ArrayList<>();
-        for (Book book : this.books) {
-            if (book.isAvailable()) {
-                availableBooks.add(book);
+    public long accrueFines(LocalDate asOf) {
+        FinePolicy policy = this.finePolicy;
+        if (policy == null) {
+            return 0;
+        }
+        int asOfDay = (int) asOf.toEpochDay();
+        List<Book> overdue = new ArrayList<>();
+        this.dueDates.collect(Integer.MIN_VALUE, policy.lastFinedDueDay(asOfDay), overdue);
+        Member[] registry = memberArray();
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        long total;
+        admit(journal);
+        try {
+            total = overdue.parallelStream()
+                    .mapToLong(book -> accrueFine(book, registry, policy, asOfDay))
+                    .sum();
+            if (journal != null) {
+                journalSeq = journal.appendAccrueFines(asOfDay);
             }
+        } finally {
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return total;
+    }
+    
+    /**
+     * Pay off part or all of a member's fines
+     * @param memberId ID of the member
+     * @param amount Amount paid, in minor units
+     * @return Balance still owed
+     * @throws IllegalArgumentException if member not found, or amount is not
+     *         positive or exceeds the balance
+     */
+    public long payFine(String memberId, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Payment must be positive");
+        }
+        Member member = findMember(memberId);
+        if (member == null) {
+            throw new IllegalArgumentException("Member with ID " + memberId + " not found");
         }
         
-        if (availableBooks.isEmpty()) {
-            System.out.println("No available books.");
-        } else {
-            for (int i = 0; i < availableBooks.size(); i++) {
-                Book book = availableBooks.get(i);
-                System.out.println((i + 1) + ". " + book.getTitle() + " by " + book.getAuthor() + 
-                                 " (ISBN: " + book.getIsbn() + ")");
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        long balance;
+        ReentrantLock memberLock = stripe(this.memberLocks, memberId);
+        admit(journal);
+        memberLock.lock();
+        try {
+            balance = this.fines.getBalance(member.getOrdinal());
+            if (amount > balance) {
+                throw new IllegalArgumentException("Payment of " + FinePolicy.format(amount)
+                        + " exceeds balance of " + FinePolicy.format(balance));
+            }
+            this.fines.pay(member.getOrdinal(), amount);
+            balance -= amount;
+            if (journal != null) {
+                journalSeq = journal.appendPayFine(memberId, amount);
             }
+        } finally {
+            memberLock.unlock();
+            release(journal);
         }
-        System.out.println("========================");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return balance;
     }
     
     /**
-     * Display all issued books
+     * Get a member's fine account
+     * @param memberId ID of the member
+     * @return Account snapshot, or null if the member does not exist
      */
-    public void displayIssuedBooks() {
-        System.out.println("\n=== Issued Books ===");
-        List<Book> issuedBooks = new ArrayList<>();
-        for (Book book : this.books) {
-            if (!book.isAvailable()) {
-                issuedBooks.add(book);
-            }
+    public MemberAccount getAccount(String memberId) {
+        Member member = findMember(memberId);
+        return member != null ? account(member) : null;
+    }
+    
+    /**
+     * Join the waitlist for a book that is on loan or set aside for others
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @return The hold; it becomes READY when the copy is set aside for the member
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if the member already has the book or a hold
+     *         on it, or the book is available with nobody waiting
+     */
+    public Hold placeHold(String memberId, String bookId) {
+        return placeHold(memberId, bookId, currentDay());
+    }
+    
+    /**
+     * Place a hold on a given day (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param day Epoch day the hold is placed
+     * @return The hold
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if the member already has the book or a hold
+     *         on it, or the book is available with nobody waiting
+     */
+    Hold placeHold(String memberId, String bookId, int day) {
+        Member member = findMember(memberId);
+        if (member == null) {
+            throw new IllegalArgumentException("Member with ID " + memberId + " not found");
+        }
+        Book book = findBook(bookId);
+        if (book == null) {
+            throw new IllegalArgumentException("Book with ID " + bookId + " not found");
         }
         
-        if (issuedBooks.isEmpty()) {
-            System.out.println("No issued books.");
-        } else {
-            for (int i = 0; i < issuedBooks.size(); i++) {
-                Book book = issuedBooks.get(i);
-                System.out.println((i + 1) + ". " + book.getTitle() + " - Issued to: " + book.getIssuedTo() + 
-                                 " (Date: " + book.getIssueDate() + ")");
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        Hold hold = new Hold(memberId, bookId, day);
+        // Under the book's lock, so the holder checked here is journaled in order with issues and returns
+        admit(journal);
+        ReentrantLock bookLock = stripe(this.bookLocks, bookId);
+        bookLock.lock();
+        try {
+            while (true) {
+                HoldQueue queue = this.holds.computeIfAbsent(bookId, id -> new HoldQueue());
+                synchronized (queue) {
+                    if (queue.removed) {
+                        continue; // Lost a race with the queue emptying; retry with a fresh one
+                    }
+                    int holder = this.loans.holderOf(book.getOrdinal());
+                    if (holder == member.getOrdinal()) {
+                        throw new IllegalStateException("Member already has this book");
+                    }
+                    if (holder == LoanTable.NO_HOLDER && queue.isEmpty()) {
+                        dropIfEmpty(bookId, queue);
+                        throw new IllegalStateException("Book is available; issue it instead");
+                    }
+                    if (!queue.add(hold)) {
+                        throw new IllegalStateException("Member already has a hold on this book");
+                    }
+                    readyHold(queue, book, day); // Sets the copy aside only if it is on the shelf
+                    if (journal != null) {
+                        journalSeq = journal.appendPlaceHold(memberId, bookId, day);
+                    }
+                    break;
+                }
             }
+        } finally {
+            bookLock.unlock();
+            release(journal);
         }
-        System.out.println("======================");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return hold;
     }
     
     /**
-     * Display all library books
+     * Leave the waitlist for a book; a copy set aside for the member passes
+     * to the next hold
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @throws IllegalStateException if the member has no active hold on the book
      */
-    public void displayAllBooks() {
-        System.out.println("\n=== All Books in " + this.libraryName + " ===");
-        if (this.books.isEmpty()) {
-            System.out.println("Library has no books.");
-        } else {
-            for (int i = 0; i < this.books.size(); i++) {
-                Book book = this.books.get(i);
-                System.out.println((i + 1) + ". " + book.getTitle() + " by " + book.getAuthor() + 
-                                 " - Status: " + (book.isAvailable() ? "Available" : "Issued"));
+    public void cancelHold(String memberId, String bookId) {
+        cancelHold(memberId, bookId, currentDay());
+    }
+    
+    /**
+     * Cancel a hold on a given day (used by journal replay and batch runs)
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param day Epoch day of the cancellation, which starts the next hold's pickup window
+     * @throws IllegalStateException if the member has no active hold on the book
+     */
+    void cancelHold(String memberId, String bookId, int day) {
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        Book book = findBook(bookId);
+        HoldQueue queue = this.holds.get(bookId);
+        if (book == null || queue == null) {
+            throw new IllegalStateException("Member has no hold on this book");
+        }
+        ReentrantLock bookLock = stripe(this.bookLocks, bookId);
+        admit(journal);
+        bookLock.lock();
+        try {
+            synchronized (queue) {
+                Hold hold = queue.holdOf(memberId);
+                if (hold == null) {
+                    throw new IllegalStateException("Member has no hold on this book");
+                }
+                queue.close(hold, Hold.Status.CANCELLED);
+                readyHold(queue, book, day);
+                dropIfEmpty(bookId, queue);
+                if (journal != null) {
+                    journalSeq = journal.appendCancelHold(memberId, bookId, day);
+                }
             }
+        } finally {
+            bookLock.unlock();
+            release(journal);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
         }
-        System.out.println("==============================");
     }
     
     /**
-     * Display all members
+     * List the active holds on a book
+     * @param bookId ID of the book
+     * @return The hold the copy is set aside for (if any), then waiting holds
+     *         oldest first; empty if there are none
      */
-    public void displayAllMembers() {
-        System.out.println("\n=== All Members ===");
-        if (this.members.isEmpty()) {
-            System.out.println("No members registered.");
-        } else {
-            for (int i = 0; i < this.members.size(); i++) {
-                Member member = this.members.get(i);
-                System.out.println((i + 1) + ". " + member.getName() + " (ID: " + member.getMemberId() + 
-                                 ") - Books Issued: " + member.getIssuedBooksCount());
+    public List<Hold> listHolds(String bookId) {
+        HoldQueue queue = this.holds.get(bookId);
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        synchronized (queue) {
+            return queue.list();
+        }
+    }
+    
+    /**
+     * Expire every hold whose pickup deadline is before a day, passing each
+     * copy on to the next hold in its queue
+     * @param asOf Day of the check; holds due for pickup before it expire
+     * @return Number of holds expired
+     */
+    public int expireHolds(LocalDate asOf) {
+        int asOfDay = (int) asOf.toEpochDay();
+        int expired = 0;
+        for (Map.Entry<String, HoldQueue> entry : this.holds.entrySet()) {
+            Hold ready;
+            synchronized (entry.getValue()) {
+                ready = entry.getValue().ready();
+            }
+            if (ready != null && ready.getPickupDeadlineDay() < asOfDay && expireHold(entry.getKey(), asOfDay)) {
+                expired++;
             }
         }
-        System.out.println("===================");
+        return expired;
     }
     
     /**
-     * Display library statistics
+     * Expire the hold a book is set aside for if its pickup deadline has
+     * passed (used by expireHolds and journal replay)
+     * @param bookId ID of the book
+     * @param asOfDay Epoch day of the check, which starts the next hold's pickup window
+     * @return true if a hold expired
      */
-    public void displayStatistics() {
-        int totalBooks = this.books.size();
-        int availableBooks = 0;
-        int issuedBooks = 0;
-        
-        for (Book book : this.books) {
-            if (book.isAvailable()) {
-                availableBooks++;
-            } else {
-                issuedBooks++;
+    boolean expireHold(String bookId, int asOfDay) {
+        LibraryJournal journal = this.journal;
+        long journalSeq = 0;
+        Book book = findBook(bookId);
+        ReentrantLock bookLock = stripe(this.bookLocks, bookId);
+        admit(journal);
+        bookLock.lock();
+        try {
+            HoldQueue queue = this.holds.get(bookId);
+            if (book == null || queue == null) {
+                return false;
             }
+            synchronized (queue) {
+                Hold ready = queue.ready();
+                if (ready == null || ready.getPickupDeadlineDay() >= asOfDay) {
+                    return false;
+                }
+                queue.close(ready, Hold.Status.EXPIRED);
+                readyHold(queue, book, asOfDay);
+                dropIfEmpty(bookId, queue);
+                if (journal != null) {
+                    journalSeq = journal.appendExpireHold(bookId, asOfDay);
+                }
+            }
+        } finally {
+            bookLock.unlock();
+            release(journal);
         }
-        
-        System.out.println("\n=== Library Statistics ===");
-        System.out.println("Library Name: " + this.libraryName);
-        System.out.println("Total Books: " + totalBooks);
-        System.out.println("Available Books: " + availableBooks);
-        System.out.println("Issued Books: " + issuedBooks);
-        System.out.println("Total Members: " + this.members.size());
-        System.out.println("==========================");
+        if (journal != null) {
+            journal.awaitDurable(journalSeq);
+        }
+        return true;
     }
     
-    // Getters
-    public String getLibraryName() {
-        return libraryName;
+    /**
+     * Find all copies of a book by ISBN
+     * @param isbn ISBN-10 or ISBN-13, with or without hyphens
+     * @return Copies in catalog order; empty if none or the ISBN is invalid
+     */
+    public List<Book> findBooksByIsbn(CharSequence isbn) {
+        List<Book> copies = new ArrayList<>(2);
+        long key = IsbnIndex.normalize(isbn);
+        this.catalogLock.readLock().lock();
+        try {
+            for (int ordinal = this.isbnIndex.firstCopy(key); ordinal >= 0;
+                    ordinal = this.isbnIndex.nextCopy(ordinal)) {
+                copies.add(this.books.get(ordinal));
+            }
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+        return copies;
     }
     
-    public int getTotalBooks() {
-        return this.books.size();
+    /**
+     * Find an available copy of a book by ISBN (e.g. from a barcode scan)
+     * without allocating
+     * @param isbn ISBN-10 or ISBN-13, with or without hyphens
+     * @return First available copy, or null if none
+     */
+    public Book findAvailableCopyByIsbn(CharSequence isbn) {
+        long key = IsbnIndex.normalize(isbn);
+        this.catalogLock.readLock().lock();
+        try {
+            for (int ordinal = this.isbnIndex.firstCopy(key); ordinal >= 0;
+                    ordinal = this.isbnIndex.nextCopy(ordinal)) {
+                Book book = this.books.get(ordinal);
+                if (book.isAvailable()) {
+                    return book;
+                }
+            }
+            return null;
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
     }
     
-    public int getTotalMembers() {
-        return this.members.size();
+    /**
+     * Search books by title and author. Every term must match; the last
+     * term also matches as a prefix (e.g. "java prog" finds "Java Programming").
+     * @param query Search terms
+     * @return Matching books in catalog order
+     */
+    public List<Book> searchBooks(String query) {
+        return searchBooks(query, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Search books by title and author, returning at most limit results
+     * @param query Search terms
+     * @param limit Maximum number of books to return
+     * @return Matching books in catalog order
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        this.catalogLock.readLock().lock();
+        try {
+            int[] ordinals = this.searchIndex.search(query, this.books::get, limit);
+            List<Book> results = new ArrayList<>(ordinals.length);
+            for (int ordinal : ordinals) {
+                results.add(this.books.get(ordinal));
+            }
+            return results;
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Attach a write-ahead journal; every later add/issue/return is recorded
+     * and made durable before the call returns
+     * @param journal The journal, or null to stop journaling
+     */
+    public void setJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Attach operation metrics; every later add/issue/return records its
+     * outcome and latency
+     * @param metrics The metrics, or null to stop recording
+     */
+    public void setMetrics(LibraryMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Get the attached operation metrics
+     * @return The metrics, or null if none are attached
+     */
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Attach a listener for book added, member registered, book issued and
+     * book returned events. It is called on the thread that made the change,
+     * after the change and outside the library's locks; use a
+     * LibraryEventBus to deliver on a background thread instead. Bulk adds
+     * publish no events.
+     * @param listener The listener, or null to publish nothing (silent mode)
+     */
+    public void setEventListener(LibraryEventListener listener) {
+        this.events = listener;
+    }
+    
+    /**
+     * Cache the rendered display* listings; issues and returns invalidate
+     * only the segments they change. Attach after restoring a snapshot,
+     * since restores publish no events.
+     * @param cache The cache (cleared here), or null to render every time
+     */
+    public void setReportCache(ReportCache cache) {
+        if (cache != null) {
+            cache.clear();
+        }
+        this.reports = cache;
+    }
+    
+    /**
+     * Get the attached event listener
+     * @return The listener, or null in silent mode
+     */
+    public LibraryEventListener getEventListener() {
+        return events;
+    }
+    
+    /**
+     * Count every issue by title and borrower for popularity reports; the
+     * count is taken on the issuing thread, after the issue
+     * @param analytics The analytics, or null to stop counting
+     */
+    public void setCirculationAnalytics(CirculationAnalytics analytics) {
+        this.analytics = analytics;
+    }
+    
+    /**
+     * Get the attached circulation analytics
+     * @return The analytics, or null if none are attached
+     */
+    public CirculationAnalytics getCirculationAnalytics() {
+        return analytics;
+    }
+    
+    /**
+     * Set the loan period used by issueBook(memberId, bookId)
+     * @param days Days until an issued book is due back
+     * @throws IllegalArgumentException if days is not positive
+     */
+    public void setLoanPeriod(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Loan period must be positive");
+        }
+        this.loanPeriodDays = days;
+    }
+    
+    public int getLoanPeriod() {
+        return loanPeriodDays;
+    }
+    
+    /**
+     * Set how long a returned copy stays set aside for the next hold
+     * @param days Days after the copy is set aside that the member can still pick it up
+     * @throws IllegalArgumentException if days is negative
+     */
+    public void setHoldPickupDays(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Pickup window cannot be negative");
+        }
+        this.holdPickupDays = days;
+    }
+    
+    public int getHoldPickupDays() {
+        return holdPickupDays;
+    }
+    
+    /**
+     * Set the rules for late fines
+     * @param policy The policy, or null to stop charging fines and blocking issues
+     */
+    public void setFinePolicy(FinePolicy policy) {
+        this.finePolicy = policy;
+    }
+    
+    public FinePolicy getFinePolicy() {
+        return finePolicy;
+    }
+    
+    /**
+     * Replace the clock that decides today's date
+     * @param clock The clock
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+        this.today = new CachedDay(0, 0, 0);
+    }
+    
+    /**
+     * Get today's epoch day; the day is recomputed only when the clock
+     * passes midnight
+     * @return Days since 1970-01-01 in the clock's time zone
+     */
+    int currentDay() {
+        CachedDay cached = this.today;
+        long now = this.clock.millis();
+        if (now >= cached.startMillis && now < cached.endMillis) {
+            return cached.epochDay;
+        }
+        LocalDate date = LocalDate.now(this.clock);
+        long start = date.atStartOfDay(this.clock.getZone()).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(this.clock.getZone()).toInstant().toEpochMilli();
+        cached = new CachedDay((int) date.toEpochDay(), start, end);
+        this.today = cached;
+        return cached.epochDay;
+    }
+    
+    /**
+     * Copy the catalog in insertion order
+     * @return Array of all books; index i holds the book with ordinal i
+     */
+    Book[] bookArray() {
+        this.catalogLock.readLock().lock();
+        try {
+            Book[] copy = new Book[this.books.size()];
+            for (int ordinal = 0; ordinal < copy.length; ordinal++) {
+                copy[ordinal] = this.books.get(ordinal);
+            }
+            return copy;
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Copy the member registry in registration order
+     * @return Array of all members
+     */
+    Member[] memberArray() {
+        this.catalogLock.readLock().lock();
+        try {
+            return this.members.toArray(new Member[0]);
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Block all issues and returns by taking every member stripe in order;
+     * used to capture a consistent set of loans
+     */
+    void lockAllMembers() {
+        lockAll(this.memberLocks);
+    }
+    
+    /**
+     * Keep books and members from being added while a snapshot copies them;
+     * take before lockAllMembers
+     */
+    void lockCatalog() {
+        this.catalogLock.readLock().lock();
+    }
+    
+    /**
+     * Release the lock taken by lockCatalog
+     */
+    void unlockCatalog() {
+        this.catalogLock.readLock().unlock();
+    }
+    
+    LibraryJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Record how many journal records a restored snapshot covers, so
+     * replaying the journal starts after them
+     * @param seq Sequence number of the last record in the snapshot
+     */
+    void setRestoredJournalSeq(long seq) {
+        this.restoredJournalSeq = seq;
+    }
+    
+    long getRestoredJournalSeq() {
+        return restoredJournalSeq;
+    }
+    
+    /**
+     * Release the locks taken by lockAllMembers
+     */
+    void unlockAllMembers() {
+        unlockAll(this.memberLocks);
+    }
+    
+    /**
+     * Install restored books and members into an empty library without
+     * printing or journaling them. A library over a reopened catalog that
+     * starts with the same books keeps them and takes only the members;
+     * books the catalog gained after the snapshot stay, and journal replay
+     * skips their ADD_BOOK records.
+     * @param restoredBooks Books in catalog order
+     * @param restoredMembers Members in registration order
+     * @throws IllegalStateException if the library already has books or members
+     */
+    void restoreCatalog(Book[] restoredBooks, Member[] restoredMembers) {
+        this.catalogLock.writeLock().lock();
+        try {
+            boolean reopened = this.books.size() > 0 && holdsCatalog(restoredBooks);
+            if ((this.books.size() > 0 && !reopened) || !this.members.isEmpty()) {
+                throw new IllegalStateException("Snapshot can only be restored into an empty library");
+            }
+            for (int ordinal = 0; ordinal < restoredBooks.length; ordinal++) {
+                Book book = restoredBooks[ordinal];
+                if (reopened) {
+                    book.setOrdinal(ordinal); // Already stored, e.g. in a reopened mapped catalog
+                } else if (!indexBook(book)) {
+                    throw new IllegalArgumentException("Book with ID " + book.getBookId() + " already exists");
+                }
+            }
+            for (Member member : restoredMembers) {
+                if (!indexMember(member)) {
+                    throw new IllegalArgumentException("Member with ID " + member.getMemberId() + " already exists");
+                }
+            }
+            if (!reopened) {
+                this.bookCounts.addAndGet((long) restoredBooks.length << 32);
+            }
+            this.memberCount.addAndGet(restoredMembers.length);
+        } finally {
+            this.catalogLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Check whether the catalog starts with a set of books, in order
+     * @param restoredBooks Books from a snapshot
+     * @return true if each of the snapshot's ordinals has the same book ID
+     */
+    private boolean holdsCatalog(Book[] restoredBooks) {
+        if (this.books.size() < restoredBooks.length) {
+            return false;
+        }
+        for (int ordinal = 0; ordinal < restoredBooks.length; ordinal++) {
+            if (!this.books.get(ordinal).getBookId().equals(restoredBooks[ordinal].getBookId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Re-establish a loan from a snapshot without printing or journaling
+     * @param member Restored member
+     * @param book Restored book
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back
+     * @param accruedFine Fine already charged on the loan
+     */
+    void restoreLoan(Member member, Book book, int issueDay, int dueDay, long accruedFine) {
+        boolean wasAtLimit = member.hasReachedLimit();
+        book = this.books.current(book);
+        book.restoreIssue(member.getName(), issueDay, dueDay);
+        this.books.update(book);
+        this.loans.put(book.getOrdinal(), member.getOrdinal(), member.addIssuedBook(book));
+        this.loans.setAccruedFine(book.getOrdinal(), accruedFine);
+        this.dueDates.add(book);
+        this.bookCounts.incrementAndGet();
+        if (!wasAtLimit && member.hasReachedLimit()) {
+            this.membersAtLimit.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Re-establish a member's fine account from a snapshot
+     * @param member Restored member
+     * @param charged Total fines charged
+     * @param paid Total paid
+     */
+    void restoreAccount(Member member, long charged, long paid) {
+        this.fines.charge(member.getOrdinal(), charged);
+        this.fines.pay(member.getOrdinal(), paid);
+    }
+    
+    /**
+     * Re-establish an active hold from a snapshot; each book's holds must
+     * be restored in listHolds order
+     * @param member Restored member
+     * @param book Restored book
+     * @param placedDay Epoch day the hold was placed
+     * @param pickupDeadline Last pickup day if the copy is set aside, else Book.NO_DATE
+     */
+    void restoreHold(Member member, Book book, int placedDay, int pickupDeadline) {
+        HoldQueue queue = this.holds.computeIfAbsent(book.getBookId(), id -> new HoldQueue());
+        synchronized (queue) {
+            queue.add(new Hold(member.getMemberId(), book.getBookId(), placedDay));
+            if (pickupDeadline != Book.NO_DATE) {
+                queue.promote(pickupDeadline);
+            }
+        }
+    }
+    
+    /**
+     * Copy every active hold, grouped by book in listHolds order
+     * @return The holds
+     */
+    List<Hold> holdArray() {
+        List<Hold> all = new ArrayList<>();
+        for (HoldQueue queue : this.holds.values()) {
+            synchronized (queue) {
+                all.addAll(queue.list());
+            }
+        }
+        return all;
+    }
+    
+    /**
+     * Get a member's fine account (take the member's lock, or every member
+     * lock, for a value consistent with loans)
+     * @param member The member
+     * @return Account snapshot
+     */
+    MemberAccount account(Member member) {
+        int ordinal = member.getOrdinal();
+        return new MemberAccount(member.getMemberId(), this.fines.getCharged(ordinal), this.fines.getPaid(ordinal));
+    }
+    
+    /**
+     * Get a member's outstanding fines without building an account
+     * @param member A member of this library
+     * @return Charged minus paid, in minor units
+     */
+    long fineBalance(Member member) {
+        return this.fines.getBalance(member.getOrdinal());
+    }
+    
+    /**
+     * Get the fine already charged on a book's current loan
+     * @param book The book
+     * @return Amount in minor units, 0 if none or not on loan
+     */
+    long accruedFine(Book book) {
+        return this.loans.accruedFine(book.getOrdinal());
+    }
+    
+    /**
+     * Add a book to the ID index, ordered catalog and search indexes
+     * (caller holds the catalog write lock)
+     * @param book The book
+     * @return false if a book with the same ID already exists
+     */
+    private boolean indexBook(Book book) {
+        if (!this.books.add(book)) {
+            return false;
+        }
+        this.loans.ensureCapacity(this.books.size());
+        this.searchIndex.add(book.getOrdinal(), book);
+        this.isbnIndex.add(IsbnIndex.normalize(book.getIsbn()), book.getOrdinal());
+        return true;
+    }
+    
+    /**
+     * Add a member to the ID index and ordered registry (caller holds the
+     * catalog write lock)
+     * @param member The member
+     * @return false if a member with the same ID already exists
+     */
+    private boolean indexMember(Member member) {
+        if (this.memberIndex.putIfAbsent(member.getMemberId(), member) != null) {
+            return false;
+        }
+        member.setOrdinal(this.members.size());
+        this.members.add(member);
+        this.fines.ensureCapacity(this.members.size());
+        return true;
+    }
+    
+    /**
+     * Bring the fine on one overdue loan up to date
+     * @param book Book found overdue
+     * @param registry Members by ordinal, copied before the sweep
+     * @param policy Fine policy
+     * @param asOfDay Epoch day to charge up to
+     * @return Amount newly charged
+     */
+    private long accrueFine(Book book, Member[] registry, FinePolicy policy, int asOfDay) {
+        int holder = this.loans.holderOf(book.getOrdinal());
+        if (holder == LoanTable.NO_HOLDER || holder >= registry.length) {
+            return 0; // Returned, or lent to a member registered after the sweep began
+        }
+        Member member = registry[holder];
+        ReentrantLock memberLock = stripe(this.memberLocks, member.getMemberId());
+        memberLock.lock();
+        try {
+            int dueDay = book.getDueDay();
+            if (this.loans.holderOf(book.getOrdinal()) != holder || dueDay == Book.NO_DATE) {
+                return 0;
+            }
+            long fine = policy.fineFor(dueDay, asOfDay);
+            long charge = fine - this.loans.accruedFine(book.getOrdinal());
+            if (charge <= 0) {
+                return 0; // Already charged up to this day (or a later one)
+            }
+            this.fines.charge(holder, charge);
+            this.loans.setAccruedFine(book.getOrdinal(), fine);
+            return charge;
+        } finally {
+            memberLock.unlock();
+        }
+    }
+    
+    /**
+     * Charge the rest of a loan's fine as the book comes back; call with
+     * the member's lock held
+     * @param member Member returning the book
+     * @param book Book being returned
+     * @param returnDay Epoch day of return, or Book.NO_DATE to keep what has accrued
+     */
+    private void settleFine(Member member, Book book, int returnDay) {
+        FinePolicy policy = this.finePolicy;
+        int dueDay = book.getDueDay();
+        if (policy == null || returnDay == Book.NO_DATE || dueDay == Book.NO_DATE) {
+            return;
+        }
+        long charge = policy.fineFor(dueDay, returnDay) - this.loans.accruedFine(book.getOrdinal());
+        if (charge != 0) {
+            this.fines.charge(member.getOrdinal(), charge);
+        }
+    }
+    
+    /**
+     * Issue a validated book; call with the member's and book's locks held
+     * and the member below the loan limit
+     * @param member Borrowing member
+     * @param book Current record of the available book
+     * @param queue The book's hold queue, or null
+     * @param hold The member's ready hold on the book, or null
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back
+     */
+    private void applyIssue(Member member, Book book, HoldQueue queue, Hold hold, int issueDay, int dueDay) {
+        book.issueBook(member.getName(), issueDay, dueDay);
+        this.books.update(book);
+        this.loans.put(book.getOrdinal(), member.getOrdinal(), member.addIssuedBook(book));
+        if (hold != null) {
+            synchronized (queue) {
+                queue.close(hold, Hold.Status.FULFILLED);
+                dropIfEmpty(book.getBookId(), queue);
+            }
+        }
+        this.dueDates.add(book);
+        this.bookCounts.incrementAndGet();
+        if (member.hasReachedLimit()) {
+            this.membersAtLimit.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Return a validated book, charging its late fine; call with the
+     * member's and book's locks held. The caller passes the copy on to
+     * any hold.
+     * @param member Member holding the book
+     * @param book Current record of the book
+     * @param returnDay Epoch day of return, or Book.NO_DATE
+     */
+    private void applyReturn(Member member, Book book, int returnDay) {
+        boolean wasAtLimit = member.hasReachedLimit();
+        settleFine(member, book, returnDay);
+        this.dueDates.remove(book);
+        book.returnBook();
+        this.books.update(book);
+        removeLoan(member, book);
+        this.bookCounts.decrementAndGet();
+        if (wasAtLimit && !member.hasReachedLimit()) {
+            this.membersAtLimit.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Admit a change to the journal before it touches any state, so a
+     * closed or failed journal rejects the change instead of leaving it
+     * unrecorded; pair with release once the locks are dropped
+     * @param journal The attached journal, or null
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    private static void admit(LibraryJournal journal) {
+        if (journal != null) {
+            journal.admit();
+        }
+    }
+    
+    private static void release(LibraryJournal journal) {
+        if (journal != null) {
+            journal.release();
+        }
+    }
+    
+    /**
+     * Publish an event to the attached listener, if any
+     * @param type What happened
+     * @param book The book, or null
+     * @param member The member, or null
+     * @param day Epoch day of the issue or return, or Book.NO_DATE
+     */
+    private void publish(LibraryEvent.Type type, Book book, Member member, int day) {
+        LibraryEventListener events = this.events;
+        ReportCache reports = this.reports;
+        CirculationAnalytics analytics = this.analytics;
+        if (analytics != null && type == LibraryEvent.Type.BOOK_ISSUED) {
+            analytics.recordIssue(book.getTitle(), member.getMemberId(), day); // Counted without building an event
+        }
+        if (events == null && reports == null) {
+            return;
+        }
+        LibraryEvent event = new LibraryEvent(type, book, member, day);
+        if (reports != null) {
+            reports.onEvent(event); // First, so a listener that redisplays sees the change
+        }
+        if (events != null) {
+            events.onEvent(event);
+        }
+    }
+    
+    /**
+     * Start the result of a multi-book operation
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @return Result with every book passing
+     * @throws IllegalArgumentException if bookIds is null or empty
+     */
+    private static CheckoutResult newCheckout(String memberId, List<String> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("Book IDs cannot be null or empty");
+        }
+        return new CheckoutResult(memberId, bookIds);
+    }
+    
+    /**
+     * Look up the books of a multi-book operation, marking missing and
+     * repeated IDs as failed
+     * @param bookIds IDs of the books
+     * @param result Result to mark failures in
+     * @return Books in request order, null where not found
+     */
+    private Book[] findBatch(List<String> bookIds, CheckoutResult result) {
+        Book[] batch = new Book[bookIds.size()];
+        for (int i = 0; i < batch.length; i++) {
+            String bookId = bookIds.get(i);
+            batch[i] = bookId != null ? findBook(bookId) : null;
+            if (batch[i] == null) {
+                result.fail(i, LibraryMetrics.FailureReason.BOOK_NOT_FOUND);
+                continue;
+            }
+            for (int j = 0; j < i; j++) {
+                if (bookId.equals(bookIds.get(j))) {
+                    result.fail(i, LibraryMetrics.FailureReason.DUPLICATE_ID);
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * Count the failures of a rejected multi-book operation in the attached metrics
+     * @param operation ISSUE_BOOK or RETURN_BOOK
+     * @param result The rejected result
+     * @return The result
+     */
+    private CheckoutResult rejected(LibraryMetrics.Operation operation, CheckoutResult result) {
+        LibraryMetrics metrics = this.metrics;
+        if (metrics != null) {
+            if (result.getMemberFailure() != null) {
+                metrics.recordFailure(operation, result.getMemberFailure());
+            }
+            for (int i = 0; i < result.size(); i++) {
+                if (result.getFailure(i) != null) {
+                    metrics.recordFailure(operation, result.getFailure(i));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Run an action holding the monitors of several hold queues
+     * @param queues The queues
+     * @param from Index of the first queue not yet locked
+     * @param action Action to run once all are held
+     * @return The action's result
+     */
+    private static long withMonitors(List<HoldQueue> queues, int from, LongSupplier action) {
+        if (from == queues.size()) {
+            return action.getAsLong();
+        }
+        synchronized (queues.get(from)) {
+            return withMonitors(queues, from + 1, action);
+        }
+    }
+    
+    /**
+     * Set the copy aside for the longest-waiting hold if the book is on the
+     * shelf and not already set aside; call with the book's lock and the
+     * queue's monitor held
+     * @param queue The book's hold queue
+     * @param book The book
+     * @param day Epoch day the pickup window starts
+     * @return The hold the copy is set aside for, or null if none
+     */
+    private Hold readyHold(HoldQueue queue, Book book, int day) {
+        Hold ready = queue.ready();
+        if (ready == null && !queue.removed && this.loans.holderOf(book.getOrdinal()) == LoanTable.NO_HOLDER) {
+            ready = queue.promote(day + this.holdPickupDays);
+        }
+        return ready;
+    }
+    
+    /**
+     * Drop a hold queue that has no active holds left; call with the
+     * queue's monitor held
+     * @param bookId ID of the book
+     * @param queue The book's hold queue
+     */
+    private void dropIfEmpty(String bookId, HoldQueue queue) {
+        if (queue.isEmpty() && !queue.removed) {
+            queue.removed = true;
+            this.holds.remove(bookId, queue);
+        }
+    }
+    
+    /**
+     * Remove a loan from the loan table and the member's loan array; call
+     * with the member's lock held
+     * @param member Member returning the book
+     * @param book Book being returned
+     */
+    private void removeLoan(Member member, Book book) {
+        int slot = this.loans.slotOf(book.getOrdinal());
+        Book moved = member.removeIssuedBook(slot);
+        if (moved != null) {
+            this.loans.moveSlot(moved.getOrdinal(), slot);
+        }
+        this.loans.remove(book.getOrdinal());
+    }
+    
+    /**
+     * Create an array of lock stripes
+     * @return Array of LOCK_STRIPES locks
+     */
+    private static ReentrantLock[] newLockStripes() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+    
+    /**
+     * Count a failed operation in the attached metrics
+     * @param operation The failing operation
+     * @param reason Why it failed
+     * @param exception The exception about to be thrown
+     * @return The exception, for the caller to throw
+     */
+    private RuntimeException failure(LibraryMetrics.Operation operation, LibraryMetrics.FailureReason reason,
+            RuntimeException exception) {
+        LibraryMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordFailure(operation, reason);
+        }
+        return exception;
+    }
+    
+    /**
+     * Get the lock stripe guarding an ID
+     * @param locks Member or book lock stripes
+     * @param id Member or book ID
+     * @return Lock for the ID
+     */
+    private static ReentrantLock stripe(ReentrantLock[] locks, String id) {
+        return locks[stripeIndex(id)];
+    }
+    
+    private static int stripeIndex(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    /**
+     * Get the distinct book stripes guarding several books, in stripe order
+     * so that two multi-book operations always lock in the same order
+     * @param batch The books
+     * @return Locks to take, lowest stripe first
+     */
+    private ReentrantLock[] stripes(Book[] batch) {
+        int[] indexes = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            indexes[i] = stripeIndex(batch[i].getBookId());
+        }
+        Arrays.sort(indexes);
+        ReentrantLock[] locks = new ReentrantLock[indexes.length];
+        int count = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                locks[count++] = this.bookLocks[indexes[i]];
+            }
+        }
+        return Arrays.copyOf(locks, count);
+    }
+    
+    private static void lockAll(ReentrantLock[] locks) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+    
+    private static void unlockAll(ReentrantLock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+    
+    /**
+     * List one page of books in catalog order without materializing the
+     * whole filtered listing
+     * @param filter Which books to include
+     * @param cursor 0 for the first page, then the previous page's next cursor
+     * @param pageSize Maximum number of books on the page
+     * @return The page and the cursor for the next one
+     */
+    public Page<Book> listBooks(BookFilter filter, int cursor, int pageSize) {
+        if (cursor < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Cursor must be >= 0 and page size > 0");
+        }
+        List<Book> items = new ArrayList<>(Math.min(pageSize, 1024));
+        this.catalogLock.readLock().lock();
+        try {
+            int position = cursor;
+            int size = this.books.size();
+            while (position < size && items.size() < pageSize) {
+                Book book = this.books.get(position++);
+                if (filter.matches(book)) {
+                    items.add(book);
+                }
+            }
+            return new Page<>(items, position < size ? position : Page.END);
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * List one page of members in registration order
+     * @param cursor 0 for the first page, then the previous page's next cursor
+     * @param pageSize Maximum number of members on the page
+     * @return The page and the cursor for the next one
+     */
+    public Page<Member> listMembers(int cursor, int pageSize) {
+        if (cursor < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Cursor must be >= 0 and page size > 0");
+        }
+        this.catalogLock.readLock().lock();
+        try {
+            int end = Math.min(this.members.size(), cursor + pageSize);
+            List<Member> items = new ArrayList<>(this.members.subList(Math.min(cursor, end), end));
+            return new Page<>(items, end < this.members.size() ? end : Page.END);
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Display all available books
+     */
+    public void displayAvailableBooks() {
+        writeReport(ReportCache.Report.AVAILABLE_BOOKS, consoleWriter());
+    }
+    
+    /**
+     * Display all issued books
+     */
+    public void displayIssuedBooks() {
+        writeReport(ReportCache.Report.ISSUED_BOOKS, consoleWriter());
+    }
+    
+    /**
+     * Display all library books
+     */
+    public void displayAllBooks() {
+        writeReport(ReportCache.Report.ALL_BOOKS, consoleWriter());
+    }
+    
+    /**
+     * Display all members
+     */
+    public void displayAllMembers() {
+        writeReport(ReportCache.Report.ALL_MEMBERS, consoleWriter());
+    }
+    
+    /**
+     * Write a listing one segment of ordinals at a time, taking segments
+     * from the report cache when one is attached; rows are numbered as they
+     * are written
+     * @param report The listing
+     * @param out Writer, flushed after every segment but not closed
+     */
+    void writeReport(ReportCache.Report report, PrintWriter out) {
+        String rule;
+        String empty;
+        switch (report) {
+            case AVAILABLE_BOOKS:
+                out.println("\n=== Available Books ===");
+                rule = "========================";
+                empty = "No available books.";
+                break;
+            case ISSUED_BOOKS:
+                out.println("\n=== Issued Books ===");
+                rule = "======================";
+                empty = "No issued books.";
+                break;
+            case ALL_BOOKS:
+                out.println("\n=== All Books in " + this.libraryName + " ===");
+                rule = "==============================";
+                empty = "Library has no books.";
+                break;
+            default:
+                out.println("\n=== All Members ===");
+                rule = "===================";
+                empty = "No members registered.";
+                break;
+        }
+        
+        ReportCache cache = this.reports;
+        int row = 0;
+        for (int segment = 0; ; segment++) {
+            int start = segment * ReportCache.SEGMENT_SIZE;
+            int size;
+            this.catalogLock.readLock().lock();
+            try {
+                size = report == ReportCache.Report.ALL_MEMBERS ? this.members.size() : this.books.size();
+            } finally {
+                this.catalogLock.readLock().unlock();
+            }
+            if (start >= size) {
+                break;
+            }
+            int end = Math.min(size, start + ReportCache.SEGMENT_SIZE);
+            ReportCache.Segment rows = cache != null ? cache.get(report, segment, end) : null;
+            if (rows == null) {
+                long stamp = cache != null ? cache.stamp(report, segment) : 0;
+                rows = renderSegment(report, start, end);
+                if (cache != null) {
+                    cache.put(report, segment, stamp, rows);
+                }
+            }
+            row = writeRows(out, rows.rows, row);
+            out.flush();
+        }
+        
+        if (row == 0) {
+            out.println(empty);
+        }
+        out.println(rule);
+        out.flush();
+    }
+    
+    /**
+     * Render the rows of a listing for a range of ordinals
+     * @param report The listing
+     * @param start First ordinal
+     * @param end Ordinal after the last
+     * @return The rows, each ending in a newline, without row numbers
+     */
+    private ReportCache.Segment renderSegment(ReportCache.Report report, int start, int end) {
+        StringBuilder rows = new StringBuilder(report == ReportCache.Report.ISSUED_BOOKS ? 256 : (end - start) * 64);
+        this.catalogLock.readLock().lock();
+        try {
+            for (int ordinal = start; ordinal < end; ordinal++) {
+                if (report == ReportCache.Report.ALL_MEMBERS) {
+                    Member member = this.members.get(ordinal);
+                    rows.append(member.getName()).append(" (ID: ").append(member.getMemberId())
+                            .append(") - Books Issued: ").append(member.getIssuedBooksCount()).append('\n');
+                    continue;
+                }
+                Book book = this.books.get(ordinal);
+                switch (report) {
+                    case AVAILABLE_BOOKS:
+                        if (book.isAvailable()) {
+                            rows.append(book.getTitle()).append(" by ").append(book.getAuthor())
+                                    .append(" (ISBN: ").append(book.getIsbn()).append(")\n");
+                        }
+                        break;
+                    case ISSUED_BOOKS:
+                        if (!book.isAvailable()) {
+                            rows.append(book.getTitle()).append(" - Issued to: ").append(book.getIssuedTo())
+                                    .append(" (Date: ").append(book.getIssueDate())
+                                    .append(", Due: ").append(book.getDueDate()).append(")\n");
+                        }
+                        break;
+                    default:
+                        rows.append(book.getTitle()).append(" by ").append(book.getAuthor())
+                                .append(" - Status: ").append(book.isAvailable() ? "Available" : "Issued").append('\n');
+                        break;
+                }
+            }
+        } finally {
+            this.catalogLock.readLock().unlock();
+        }
+        return new ReportCache.Segment(rows.toString(), end);
+    }
+    
+    /**
+     * Write rendered rows with their row numbers
+     * @param out Writer
+     * @param rows Rows, each ending in a newline
+     * @param row Number of rows already written
+     * @return Number of rows written in total
+     */
+    private static int writeRows(PrintWriter out, String rows, int row) {
+        // One write per segment; a write per row costs as much as rendering it
+        StringBuilder numbered = new StringBuilder(rows.length() + rows.length() / 8 + 16);
+        String lineSeparator = System.lineSeparator();
+        int start = 0;
+        int newline;
+        while ((newline = rows.indexOf('\n', start)) >= 0) {
+            numbered.append(++row).append(". ").append(rows, start, newline).append(lineSeparator);
+            start = newline + 1;
+        }
+        out.write(numbered.toString());
+        return row;
+    }
+    
+    /**
+     * Create a buffered writer over the console; callers flush once per page
+     * @return Writer that must be flushed but not closed
+     */
+    private static PrintWriter consoleWriter() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+    }
+    
+    /**
+     * Display library statistics
+     */
+    public void displayStatistics() {
+        LibraryStats stats = getStats();
+        System.out.println("\n=== Library Statistics ===");
+        System.out.println("Library Name: " + stats.getLibraryName());
+        System.out.println("Total Books: " + stats.getTotalBooks());
+        System.out.println("Available Books: " + stats.getAvailableBooks());
+        System.out.println("Issued Books: " + stats.getIssuedBooks());
+        System.out.println("Total Members: " + stats.getTotalMembers());
+        System.out.println("Members at Book Limit: " + stats.getMembersAtLimit());
+        System.out.println("==========================");
+    }
+    
+    /**
+     * Get current library statistics in O(1) from live counters
+     * @return Statistics snapshot; book totals are mutually consistent
+     */
+    public LibraryStats getStats() {
+        long counts = this.bookCounts.get();
+        return new LibraryStats(this.libraryName, (int) (counts >>> 32), (int) counts,
+                this.memberCount.get(), this.membersAtLimit.get());
+    }
+    
+    // Getters
+    public String getLibraryName() {
+        return libraryName;
+    }
+    
+    public int getTotalBooks() {
+        return this.books.size();
+    }
+    
+    public int getTotalMembers() {
+        return this.memberIndex.size();
+    }
+    
+    /**
+     * An epoch day and the wall-clock interval it covers
+     */
+    private static final class CachedDay {
+        private final int epochDay;
+        private final long startMillis;
+        private final long endMillis;
+        
+        CachedDay(int epochDay, long startMillis, long endMillis) {
+            this.epochDay = epochDay;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
     }
 }
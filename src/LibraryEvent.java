@@ -0,0 +1,103 @@
+/**
+ * LibraryEvent.java
+ * A change to a library, published once the change has been made
+ */
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public class LibraryEvent {
+    /**
+     * What happened
+     */
+    public enum Type {
+        BOOK_ADDED,
+        MEMBER_REGISTERED,
+        BOOK_ISSUED,
+        BOOK_RETURNED
+    }
+    
+    private final Type type;
+    private final String bookId; // Null for MEMBER_REGISTERED
+    private final String title;
+    private final String memberId; // Null for BOOK_ADDED
+    private final String memberName;
+    private final int day; // Epoch day of the issue or return, Book.NO_DATE otherwise
+    private final long timestamp; // Wall-clock millis when published
+    private final int bookOrdinal; // Positions in the library, -1 when absent
+    private final int memberOrdinal;
+    
+    /**
+     * Constructor to create an event
+     * @param type What happened
+     * @param book The book, or null for MEMBER_REGISTERED
+     * @param member The member, or null for BOOK_ADDED
+     * @param day Epoch day of the issue or return, or Book.NO_DATE
+     */
+    LibraryEvent(Type type, Book book, Member member, int day) {
+        this.type = type;
+        this.bookId = book != null ? book.getBookId() : null;
+        this.title = book != null ? book.getTitle() : null;
+        this.memberId = member != null ? member.getMemberId() : null;
+        this.memberName = member != null ? member.getName() : null;
+        this.day = day;
+        this.timestamp = System.currentTimeMillis();
+        this.bookOrdinal = book != null ? book.getOrdinal() : -1;
+        this.memberOrdinal = member != null ? member.getOrdinal() : -1;
+    }
+    
+    // Getters
+    public Type getType() {
+        return type;
+    }
+    
+    public String getBookId() {
+        return bookId;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public String getMemberId() {
+        return memberId;
+    }
+    
+    public String getMemberName() {
+        return memberName;
+    }
+    
+    /**
+     * Get the day of an issue or return
+     * @return The date, or null for other events and undated returns
+     */
+    public LocalDate getDate() {
+        return day != Book.NO_DATE ? LocalDate.ofEpochDay(day) : null;
+    }
+    
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+    
+    int getBookOrdinal() {
+        return bookOrdinal;
+    }
+    
+    int getMemberOrdinal() {
+        return memberOrdinal;
+    }
+    
+    @Override
+    public String toString() {
+        switch (this.type) {
+            case BOOK_ADDED:
+                return "Book '" + title + "' added to library";
+            case MEMBER_REGISTERED:
+                return "Member '" + memberName + "' registered successfully";
+            case BOOK_ISSUED:
+                return "Book '" + title + "' issued to " + memberName;
+            default:
+                return "Book '" + title + "' returned by " + memberName;
+        }
+    }
+}
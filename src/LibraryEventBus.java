@@ -0,0 +1,278 @@
+/**
+ * LibraryEventBus.java
+ * Bounded asynchronous delivery of library events to subscribers
+ */
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A multi-producer, single-consumer ring buffer. Each slot carries a
+ * sequence number: a producer claims the next position with one CAS on the
+ * tail, stores the event and publishes the slot by advancing its sequence;
+ * the consumer thread reads slots in order and hands them back by advancing
+ * the sequence a lap. Publishing therefore never takes a lock, and a slow
+ * subscriber (a console, a file, a webhook) only fills the buffer instead of
+ * holding up the desk that made the change. When the buffer is full the
+ * backpressure policy decides whether the publisher waits, the event is
+ * dropped, or only a sample of events is kept.
+ *
+ * Events are delivered in the order their slots were claimed; events from
+ * one thread keep that thread's order.
+ */
+
+public class LibraryEventBus implements LibraryEventListener, AutoCloseable {
+    /**
+     * What a publisher does when subscribers fall behind
+     */
+    public enum Backpressure {
+        BLOCK,  // Wait for room, so no event is lost
+        DROP,   // Drop events while the buffer is full
+        SAMPLE  // Once the buffer is half full keep one event in sampleEvery; drop while full
+    }
+    
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = 100000000L; // Consumer re-checks at least every 100 ms
+    private static final long FULL_PARK_NANOS = 50000L;
+    
+    private final LibraryEvent[] slots;
+    private final AtomicLongArray sequences; // Slot i is free for position p when it holds p, full when p + 1
+    private final int mask;
+    private final Backpressure backpressure;
+    private final int sampleEvery;
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final List<LibraryEventListener> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread consumer;
+    private volatile long delivered; // Positions below this have been delivered; written by the consumer only
+    private volatile boolean consumerParked;
+    private volatile boolean closed;
+    
+    /**
+     * Constructor to create a bus that blocks publishers while full
+     * @param capacity Events buffered, rounded up to a power of two (at least 2)
+     */
+    public LibraryEventBus(int capacity) {
+        this(capacity, Backpressure.BLOCK, 1);
+    }
+    
+    /**
+     * Constructor to create a bus and start its delivery thread
+     * @param capacity Events buffered, rounded up to a power of two
+     * @param backpressure What publishers do when the buffer is full
+     * @param sampleEvery For SAMPLE, keep one event in this many under load
+     * @throws IllegalArgumentException if capacity or sampleEvery is not positive
+     *         or backpressure is null
+     */
+    public LibraryEventBus(int capacity, Backpressure backpressure, int sampleEvery) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("Backpressure cannot be null");
+        }
+        if (sampleEvery <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive");
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1; // Sequences need two slots
+        this.slots = new LibraryEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.backpressure = backpressure;
+        this.sampleEvery = sampleEvery;
+        this.consumer = new Thread(this::runConsumer, "library-events");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+    
+    /**
+     * Add a subscriber; it is called on the bus's delivery thread
+     * @param listener The subscriber
+     * @throws IllegalArgumentException if listener is null
+     */
+    public void subscribe(LibraryEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        this.subscribers.add(listener);
+    }
+    
+    /**
+     * Remove a subscriber
+     * @param listener The subscriber
+     */
+    public void unsubscribe(LibraryEventListener listener) {
+        this.subscribers.remove(listener);
+    }
+    
+    /**
+     * Queue an event for the subscribers (the library calls this)
+     * @param event The event
+     */
+    @Override
+    public void onEvent(LibraryEvent event) {
+        publish(event);
+    }
+    
+    /**
+     * Queue an event for the subscribers, applying the backpressure policy
+     * @param event The event
+     * @return false if the event was dropped
+     */
+    public boolean publish(LibraryEvent event) {
+        if (this.closed) {
+            this.dropped.increment();
+            return false;
+        }
+        if (this.backpressure == Backpressure.SAMPLE && getBacklog() >= this.slots.length / 2
+                && this.sampleCounter.incrementAndGet() % this.sampleEvery != 0) {
+            this.dropped.increment();
+            return false;
+        }
+        while (!offer(event)) {
+            // A subscriber that publishes while the buffer is full would wait for itself
+            if (this.backpressure != Backpressure.BLOCK || this.closed || Thread.currentThread() == this.consumer) {
+                this.dropped.increment();
+                return false;
+            }
+            LockSupport.unpark(this.consumer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        return true;
+    }
+    
+    /**
+     * Claim the next slot and store an event in it
+     * @param event The event
+     * @return false if the buffer is full
+     */
+    private boolean offer(LibraryEvent event) {
+        while (true) {
+            long position = this.tail.get();
+            int index = (int) position & this.mask;
+            long sequence = this.sequences.get(index);
+            if (sequence < position) {
+                return false; // Still holds the event from a lap ago
+            }
+            if (sequence == position && this.tail.compareAndSet(position, position + 1)) {
+                this.slots[index] = event;
+                this.sequences.set(index, position + 1);
+                if (this.consumerParked) {
+                    LockSupport.unpark(this.consumer);
+                }
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Deliver events in order until the bus is closed and drained
+     */
+    private void runConsumer() {
+        long position = 0;
+        while (true) {
+            int index = (int) position & this.mask;
+            if (this.sequences.get(index) == position + 1) {
+                LibraryEvent event = this.slots[index];
+                this.slots[index] = null;
+                deliver(event);
+                this.sequences.set(index, position + this.slots.length);
+                this.delivered = ++position;
+            } else if (this.closed && this.tail.get() == position) {
+                return;
+            } else {
+                // Publishers check the flag after filling a slot, so re-check after setting it
+                this.consumerParked = true;
+                if (this.sequences.get(index) != position + 1 && !this.closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                this.consumerParked = false;
+            }
+        }
+    }
+    
+    /**
+     * Hand one event to every subscriber; a failing subscriber does not
+     * stop the others or the bus
+     * @param event The event
+     */
+    private void deliver(LibraryEvent event) {
+        for (LibraryEventListener listener : this.subscribers) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                this.failures.increment();
+            }
+        }
+    }
+    
+    /**
+     * Wait until every event published so far has been delivered
+     */
+    public void flush() {
+        long target = this.tail.get();
+        while (this.delivered < target && this.consumer.isAlive() && Thread.currentThread() != this.consumer) {
+            LockSupport.unpark(this.consumer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+    }
+    
+    /**
+     * Deliver the events already queued and stop the delivery thread; events
+     * published afterwards are dropped
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.consumer);
+        if (Thread.currentThread() == this.consumer) {
+            return;
+        }
+        try {
+            this.consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Get the number of events waiting for delivery
+     * @return Queued events, including one being delivered
+     */
+    public int getBacklog() {
+        return (int) (this.tail.get() - this.delivered);
+    }
+    
+    public int getCapacity() {
+        return slots.length;
+    }
+    
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+    
+    public long getDelivered() {
+        return delivered;
+    }
+    
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Get the number of times a subscriber threw while handling an event
+     * @return Failed deliveries
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+}
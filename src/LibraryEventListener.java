@@ -0,0 +1,12 @@
+/**
+ * LibraryEventListener.java
+ * Receives the events a library publishes
+ */
+
+public interface LibraryEventListener {
+    /**
+     * Called once per event, after the change it describes has been made
+     * @param event The event
+     */
+    void onEvent(LibraryEvent event);
+}
@@ -0,0 +1,720 @@
+/**
+ * LibraryHttpServer.java
+ * Embedded HTTP/JSON API for self-checkout kiosks
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Endpoints (request bodies are flat JSON objects of string fields;
+ * query parameters are accepted in their place):
+ *
+ *   POST /books          {bookId, title, author, isbn}           201
+ *   POST /members        {memberId, name, email, phoneNumber}    201
+ *   POST /issue          {memberId, bookId}                      200
+ *   POST /return         {memberId, bookId}                      200
+ *   POST /issue, /return {memberId, bookIds: [...]}              200 / 409
+ *   POST /pay            {memberId, amount (minor units)}        200
+ *   POST /holds          {memberId, bookId}                      201
+ *   POST /holds/cancel   {memberId, bookId}                      200
+ *   GET  /holds?bookId=...                                       200
+ *   GET  /books/{id}     GET /books?isbn=...                     200 / 404
+ *   GET  /members/{id}                                           200 / 404
+ *   GET  /search?q=...&limit=20                                  200
+ *   GET  /stats                                                  200
+ *   GET  /analytics/titles?days=7&limit=100                      200 / 404
+ *   GET  /analytics/borrowers?days=30&limit=100                  200 / 404
+ *   GET  /replication                                            200 / 404
+ *   POST /promote                                                200 / 404
+ *
+ * Failures return {"error": message} with 400 for invalid arguments or
+ * unknown IDs and 409 when the library refuses the operation (already
+ * issued, on hold for someone else, limit reached, not issued to this
+ * member). A multi-book issue or return is all-or-nothing and answers 409
+ * with the per-book failures when nothing was applied.
+ *
+ * A server for a read replica answers every write with 503 until the
+ * replica is promoted (POST /promote). GET /replication reports the
+ * replica's lag, or each follower's lag on a leader.
+ *
+ * Every request runs on its own virtual thread when the JVM has them
+ * (Java 21+), so thousands of idle kiosk connections cost no platform
+ * threads. Older JVMs fall back to a fixed pool; the lookup is reflective
+ * so the server still builds and runs on Java 8.
+ */
+
+public class LibraryHttpServer {
+    private static final int FALLBACK_THREADS = 64;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int DEFAULT_TOP_LIMIT = 100;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final String ARRAY_SEPARATOR = "\n"; // Joins JSON array elements in a parameter
+    
+    private final Library library;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private volatile ReplicationLeader leader;
+    private volatile ReplicationFollower follower;
+    
+    /**
+     * Constructor to create a server bound to a port; call start() to serve
+     * @param library Library to expose
+     * @param port TCP port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public LibraryHttpServer(Library library, int port) throws IOException {
+        // Headers and body go out in separate writes; without TCP_NODELAY each
+        // response waits ~40 ms for the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.library = library;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(FALLBACK_THREADS);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+    }
+    
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        this.server.start();
+        System.out.println("✓ Library API listening on port " + getPort()
+                + (this.virtualThreads ? " (virtual threads)" : " (" + FALLBACK_THREADS + " worker threads)"));
+    }
+    
+    /**
+     * Stop accepting requests and wait briefly for running ones to finish
+     * @param delaySeconds Longest time to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        this.server.stop(delaySeconds);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Report the followers of this library at GET /replication
+     * @param leader The replication leader, or null
+     */
+    public void setLeader(ReplicationLeader leader) {
+        this.leader = leader;
+    }
+    
+    /**
+     * Serve a read replica: writes are refused until it is promoted
+     * @param follower The follower keeping the library up to date, or null
+     */
+    public void setFollower(ReplicationFollower follower) {
+        this.follower = follower;
+    }
+    
+    /**
+     * Get the bound port
+     * @return Port number
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+    
+    /**
+     * Check whether requests run on virtual threads
+     * @return true on Java 21+
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * Create a virtual-thread-per-task executor if the JVM supports it
+     * @return The executor, or null on JVMs without virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Route one request and write its response
+     * @param exchange The HTTP exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (method.equals("POST")) {
+                params.putAll(parseJsonObject(readBody(exchange.getRequestBody())));
+            }
+            
+            ReplicationFollower replica = this.follower;
+            if (method.equals("GET") && path.equals("/replication") && (replica != null || this.leader != null)) {
+                status = 200;
+                body = replica != null ? followerJson(replica) : leaderJson(this.leader);
+            } else if (method.equals("POST") && path.equals("/promote") && replica != null) {
+                try {
+                    replica.promote();
+                    status = 200;
+                    body = followerJson(replica);
+                } catch (IOException e) {
+                    status = 500;
+                    body = error("Promotion failed: " + e.getMessage());
+                }
+            } else if (method.equals("POST") && replica != null && !replica.isPromoted()) {
+                status = 503;
+                body = error("Read-only replica; send changes to the leader");
+            } else if (method.equals("GET") && path.startsWith("/books/")) {
+                Book book = this.library.findBook(path.substring("/books/".length()));
+                status = book == null ? 404 : 200;
+                body = book == null ? error("Book not found") : bookJson(book);
+            } else if (method.equals("GET") && path.equals("/books")) {
+                status = 200;
+                body = booksJson(this.library.findBooksByIsbn(required(params, "isbn")));
+            } else if (method.equals("GET") && path.startsWith("/members/")) {
+                Member member = this.library.findMember(path.substring("/members/".length()));
+                status = member == null ? 404 : 200;
+                body = member == null ? error("Member not found") : memberJson(member);
+            } else if (method.equals("GET") && path.equals("/search")) {
+                String limit = params.get("limit");
+                status = 200;
+                body = booksJson(this.library.searchBooks(required(params, "q"),
+                        limit == null ? DEFAULT_SEARCH_LIMIT : Integer.parseInt(limit)));
+            } else if (method.equals("GET") && path.equals("/holds")) {
+                status = 200;
+                body = holdsJson(this.library.listHolds(required(params, "bookId")));
+            } else if (method.equals("GET") && path.equals("/stats")) {
+                status = 200;
+                body = statsJson(this.library.getStats());
+            } else if (method.equals("GET") && (path.equals("/analytics/titles") || path.equals("/analytics/borrowers"))
+                    && this.library.getCirculationAnalytics() != null) {
+                CirculationAnalytics analytics = this.library.getCirculationAnalytics();
+                boolean titles = path.equals("/analytics/titles");
+                String days = params.get("days");
+                String limit = params.get("limit");
+                int window = days != null ? Integer.parseInt(days) : titles ? 7 : 30;
+                int top = limit != null ? Integer.parseInt(limit) : DEFAULT_TOP_LIMIT;
+                status = 200;
+                body = countsJson(titles ? "title" : "memberId", window,
+                        titles ? analytics.topTitles(top, window, LocalDate.now())
+                                : analytics.topBorrowers(top, window, LocalDate.now()));
+            } else if (method.equals("POST") && path.equals("/books")) {
+                Book book = new Book(required(params, "bookId"), required(params, "title"),
+                        params.get("author"), params.get("isbn"));
+                this.library.addBook(book);
+                status = 201;
+                body = bookJson(book);
+            } else if (method.equals("POST") && path.equals("/members")) {
+                String membershipDate = params.get("membershipDate");
+                Member member = new Member(required(params, "memberId"), required(params, "name"),
+                        params.get("email"), params.get("phoneNumber"),
+                        membershipDate != null ? membershipDate : LocalDate.now().toString());
+                this.library.addMember(member);
+                status = 201;
+                body = memberJson(member);
+            } else if (method.equals("POST") && (path.equals("/issue") || path.equals("/return"))
+                    && params.containsKey("bookIds")) {
+                String memberId = required(params, "memberId");
+                List<String> bookIds = requiredList(params, "bookIds");
+                CheckoutResult result = path.equals("/issue") ? this.library.issueBooks(memberId, bookIds)
+                        : this.library.returnBooks(memberId, bookIds);
+                status = result.isApplied() ? 200 : 409;
+                body = checkoutJson(result);
+            } else if (method.equals("POST") && path.equals("/issue")) {
+                String bookId = required(params, "bookId");
+                this.library.issueBook(required(params, "memberId"), bookId);
+                status = 200;
+                body = bookJson(this.library.findBook(bookId));
+            } else if (method.equals("POST") && path.equals("/return")) {
+                String bookId = required(params, "bookId");
+                this.library.returnBook(required(params, "memberId"), bookId);
+                status = 200;
+                body = bookJson(this.library.findBook(bookId));
+            } else if (method.equals("POST") && path.equals("/pay")) {
+                String memberId = required(params, "memberId");
+                this.library.payFine(memberId, Long.parseLong(required(params, "amount")));
+                status = 200;
+                body = memberJson(this.library.findMember(memberId));
+            } else if (method.equals("POST") && path.equals("/holds")) {
+                Hold hold = this.library.placeHold(required(params, "memberId"), required(params, "bookId"));
+                status = 201;
+                body = holdJson(new StringBuilder(96), hold).toString();
+            } else if (method.equals("POST") && path.equals("/holds/cancel")) {
+                String bookId = required(params, "bookId");
+                this.library.cancelHold(required(params, "memberId"), bookId);
+                status = 200;
+                body = holdsJson(this.library.listHolds(bookId));
+            } else {
+                status = 404;
+                body = error("No route for " + method + " " + path);
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (IllegalStateException e) {
+            status = 409;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error(String.valueOf(e));
+        }
+        
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    /**
+     * Get a required request parameter
+     * @param params Request parameters
+     * @param name Parameter name
+     * @return Parameter value
+     * @throws IllegalArgumentException if the parameter is missing or empty
+     */
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+    
+    /**
+     * Get a required list parameter (a JSON array of strings)
+     * @param params Request parameters
+     * @param name Parameter name
+     * @return The elements
+     * @throws IllegalArgumentException if the parameter is missing
+     */
+    private static List<String> requiredList(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value.isEmpty() ? new ArrayList<>() : Arrays.asList(value.split(ARRAY_SEPARATOR, -1));
+    }
+    
+    /**
+     * Read a request body
+     * @param in Body stream
+     * @return Body as UTF-8 text
+     * @throws IOException if the body cannot be read
+     * @throws IllegalArgumentException if the body is larger than MAX_BODY_BYTES
+     */
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            buffer.write(chunk, 0, read);
+            if (buffer.size() > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Parse a URL query string
+     * @param query Raw query, may be null
+     * @return Mutable map of decoded parameters
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return params;
+    }
+    
+    /**
+     * Parse a flat JSON object; string, number, boolean and null values are
+     * returned as text (null values are skipped)
+     * @param json The JSON text; blank means no fields
+     * @return Map of field names to values
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    static Map<String, String> parseJsonObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        JsonReader reader = new JsonReader(json);
+        if (!reader.skipWhitespace()) {
+            return fields;
+        }
+        reader.expect('{');
+        if (reader.peekIs('}')) {
+            reader.expect('}');
+        } else {
+            do {
+                String name = reader.readString();
+                reader.expect(':');
+                String value = reader.readValue();
+                if (value != null) {
+                    fields.put(name, value);
+                }
+            } while (reader.consumeIf(','));
+            reader.expect('}');
+        }
+        if (reader.skipWhitespace()) {
+            throw new IllegalArgumentException("Unexpected content after JSON object");
+        }
+        return fields;
+    }
+    
+    private static String bookJson(Book book) {
+        StringBuilder json = new StringBuilder(160);
+        appendBook(json, book);
+        return json.toString();
+    }
+    
+    private static String booksJson(List<Book> books) {
+        StringBuilder json = new StringBuilder(32 + books.size() * 160).append("{\"books\":[");
+        for (int i = 0; i < books.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendBook(json, books.get(i));
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static void appendBook(StringBuilder json, Book book) {
+        json.append("{\"bookId\":");
+        appendString(json, book.getBookId());
+        json.append(",\"title\":");
+        appendString(json, book.getTitle());
+        json.append(",\"author\":");
+        appendString(json, book.getAuthor());
+        json.append(",\"isbn\":");
+        appendString(json, book.getIsbn());
+        json.append(",\"available\":").append(book.isAvailable());
+        json.append(",\"issuedTo\":");
+        appendString(json, book.getIssuedTo());
+        json.append(",\"issueDate\":");
+        appendString(json, book.getIssueDate());
+        json.append(",\"dueDate\":");
+        appendString(json, book.getDueDate());
+        json.append('}');
+    }
+    
+    private String memberJson(Member member) {
+        StringBuilder json = new StringBuilder(160).append("{\"memberId\":");
+        appendString(json, member.getMemberId());
+        json.append(",\"name\":");
+        appendString(json, member.getName());
+        json.append(",\"email\":");
+        appendString(json, member.getEmail());
+        json.append(",\"phoneNumber\":");
+        appendString(json, member.getPhoneNumber());
+        json.append(",\"membershipDate\":");
+        appendString(json, member.getMembershipDate());
+        json.append(",\"booksIssued\":").append(member.getIssuedBooksCount());
+        json.append(",\"fineBalance\":").append(this.library.getAccount(member.getMemberId()).getBalance());
+        return json.append('}').toString();
+    }
+    
+    private static String holdsJson(List<Hold> holds) {
+        StringBuilder json = new StringBuilder(32 + holds.size() * 96).append("{\"holds\":[");
+        for (int i = 0; i < holds.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            holdJson(json, holds.get(i));
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static StringBuilder holdJson(StringBuilder json, Hold hold) {
+        json.append("{\"memberId\":");
+        appendString(json, hold.getMemberId());
+        json.append(",\"bookId\":");
+        appendString(json, hold.getBookId());
+        json.append(",\"status\":");
+        appendString(json, hold.getStatus().name());
+        json.append(",\"placedDate\":");
+        appendString(json, hold.getPlacedDate().toString());
+        json.append(",\"pickupDeadline\":");
+        LocalDate deadline = hold.getPickupDeadline();
+        appendString(json, deadline != null ? deadline.toString() : null);
+        return json.append('}');
+    }
+    
+    private static String checkoutJson(CheckoutResult result) {
+        StringBuilder json = new StringBuilder(64 + result.size() * 48).append("{\"memberId\":");
+        appendString(json, result.getMemberId());
+        json.append(",\"applied\":").append(result.isApplied());
+        json.append(",\"memberFailure\":");
+        appendString(json, result.getMemberFailure() != null ? result.getMemberFailure().name() : null);
+        json.append(",\"books\":[");
+        for (int i = 0; i < result.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"bookId\":");
+            appendString(json, result.getBookId(i));
+            json.append(",\"failure\":");
+            appendString(json, result.getFailure(i) != null ? result.getFailure(i).name() : null);
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String statsJson(LibraryStats stats) {
+        StringBuilder json = new StringBuilder(160).append("{\"libraryName\":");
+        appendString(json, stats.getLibraryName());
+        return json.append(",\"totalBooks\":").append(stats.getTotalBooks())
+                .append(",\"availableBooks\":").append(stats.getAvailableBooks())
+                .append(",\"issuedBooks\":").append(stats.getIssuedBooks())
+                .append(",\"totalMembers\":").append(stats.getTotalMembers())
+                .append(",\"membersAtLimit\":").append(stats.getMembersAtLimit())
+                .append('}').toString();
+    }
+    
+    private static String countsJson(String keyName, int days, List<CirculationAnalytics.Count> counts) {
+        StringBuilder json = new StringBuilder(32 + counts.size() * 48).append("{\"days\":").append(days)
+                .append(",\"top\":[");
+        for (int i = 0; i < counts.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"").append(keyName).append("\":");
+            appendString(json, counts.get(i).getKey());
+            json.append(",\"issues\":").append(counts.get(i).getCount()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String followerJson(ReplicationFollower follower) {
+        StringBuilder json = new StringBuilder(192).append("{\"role\":");
+        appendString(json, follower.isPromoted() ? "leader" : "replica");
+        json.append(",\"connected\":").append(follower.isConnected())
+                .append(",\"appliedSeq\":").append(follower.getAppliedSeq())
+                .append(",\"leaderSeq\":").append(follower.getLeaderSeq())
+                .append(",\"lagRecords\":").append(follower.getLagRecords())
+                .append(",\"lagMillis\":").append(follower.getLagMillis())
+                .append(",\"failure\":");
+        appendString(json, follower.getFailure());
+        return json.append('}').toString();
+    }
+    
+    private static String leaderJson(ReplicationLeader leader) {
+        List<ReplicationLeader.ReplicaStatus> replicas = leader.getReplicas();
+        StringBuilder json = new StringBuilder(64 + replicas.size() * 128).append("{\"role\":\"leader\"")
+                .append(",\"durableSeq\":").append(leader.getDurableSeq())
+                .append(",\"replicas\":[");
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicationLeader.ReplicaStatus replica = replicas.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"address\":");
+            appendString(json, replica.getAddress());
+            json.append(",\"ackedSeq\":").append(replica.getAckedSeq())
+                    .append(",\"lagRecords\":").append(replica.getLagRecords())
+                    .append(",\"bytesShipped\":").append(replica.getBytesShipped())
+                    .append(",\"bytesSent\":").append(replica.getBytesSent())
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder(64).append("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+    
+    /**
+     * Append a JSON string literal
+     * @param json Destination
+     * @param value String to quote and escape, or null
+     */
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+    
+    /**
+     * Cursor over JSON text for parseJsonObject
+     */
+    private static class JsonReader {
+        private final String text;
+        private int pos;
+        
+        JsonReader(String text) {
+            this.text = text;
+        }
+        
+        boolean skipWhitespace() {
+            while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos))) {
+                this.pos++;
+            }
+            return this.pos < this.text.length();
+        }
+        
+        boolean peekIs(char c) {
+            return skipWhitespace() && this.text.charAt(this.pos) == c;
+        }
+        
+        boolean consumeIf(char c) {
+            if (peekIs(c)) {
+                this.pos++;
+                return true;
+            }
+            return false;
+        }
+        
+        void expect(char c) {
+            if (!consumeIf(c)) {
+                throw new IllegalArgumentException("Malformed JSON: expected '" + c + "' at offset " + this.pos);
+            }
+        }
+        
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (this.pos < this.text.length()) {
+                char c = this.text.charAt(this.pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                } else if (this.pos < this.text.length()) {
+                    char escaped = this.text.charAt(this.pos++);
+                    switch (escaped) {
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'b':
+                            value.append('\b');
+                            break;
+                        case 'f':
+                            value.append('\f');
+                            break;
+                        case 'u':
+                            if (this.pos + 4 > this.text.length()) {
+                                throw new IllegalArgumentException("Malformed JSON: bad \\u escape");
+                            }
+                            value.append((char) Integer.parseInt(this.text.substring(this.pos, this.pos + 4), 16));
+                            this.pos += 4;
+                            break;
+                        default:
+                            value.append(escaped);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Malformed JSON: unterminated string");
+        }
+        
+        String readValue() {
+            if (peekIs('"')) {
+                return readString();
+            }
+            if (consumeIf('[')) {
+                // Arrays of strings only, joined for the flat parameter map
+                StringBuilder elements = new StringBuilder();
+                if (!consumeIf(']')) {
+                    String separator = "";
+                    do {
+                        elements.append(separator).append(readString());
+                        separator = ARRAY_SEPARATOR;
+                    } while (consumeIf(','));
+                    expect(']');
+                }
+                return elements.toString();
+            }
+            int start = this.pos;
+            while (this.pos < this.text.length() && ",}".indexOf(this.text.charAt(this.pos)) < 0
+                    && !Character.isWhitespace(this.text.charAt(this.pos))) {
+                this.pos++;
+            }
+            String literal = this.text.substring(start, this.pos);
+            if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+                throw new IllegalArgumentException("Malformed JSON: only flat string, number and boolean values are supported");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+    }
+}
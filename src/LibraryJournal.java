@@ -0,0 +1,865 @@
+/**
+ * LibraryJournal.java
+ * Append-only write-ahead journal of library operations
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+ * Record layout: [int payloadLength][int crc32(payload)][payload]
+ * Payload: [byte type][fields...], strings as [int byteLength][UTF-8 bytes]
+ * (length -1 for null).
+ *
+ * Callers append records into an in-memory batch and a background flusher
+ * writes and fsyncs the whole batch at once (group commit). A batch is
+ * flushed when it reaches maxBatchSize records or when its oldest record
+ * has waited flushIntervalMillis, whichever comes first.
+ *
+ * Sequence numbers count records from the start of the file, so record n
+ * has the same number after a restart; replication ships records by it.
+ *
+ * The library admits each change before touching any state and releases
+ * it once the change's record is appended. close() waits for admitted
+ * changes and then refuses new ones, so a change made against a closed
+ * (or failed) journal is rejected whole rather than applied unrecorded.
+ * pause() holds new changes back the same way while a snapshot copies the
+ * library, so the snapshot matches the records appended so far exactly;
+ * replay skips the records a restored snapshot already covers.
+ */
+
+public class LibraryJournal implements AutoCloseable {
+    static final byte ADD_BOOK = 1;
+    static final byte ADD_MEMBER = 2;
+    static final byte ISSUE_BOOK = 3;
+    static final byte RETURN_BOOK = 4;
+    static final byte PAY_FINE = 5;
+    static final byte ACCRUE_FINES = 6;
+    static final byte PLACE_HOLD = 7;
+    static final byte CANCEL_HOLD = 8;
+    static final byte EXPIRE_HOLD = 9;
+    static final byte ISSUE_BOOKS = 10;
+    static final byte RETURN_BOOKS = 11;
+    
+    static final int HEADER_SIZE = 8;
+    static final int MAX_RECORD_SIZE = 1 << 20;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final long flushIntervalMillis;
+    private final int maxBatchSize;
+    private final Object monitor = new Object();
+    private final Thread flusher;
+    
+    // Guarded by monitor
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    private int pendingRecords;
+    private long firstPendingAt;
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private int admitted; // Changes between admit and release
+    private int pauses; // Snapshots holding new changes back
+    private boolean closing; // close() called; no new changes are admitted
+    private boolean closed;
+    
+    /**
+     * Create a journal over an existing, already replayed file
+     * @param path Journal file
+     * @param channel Channel positioned at the end of the last good record
+     * @param flushIntervalMillis Maximum time a record waits for its fsync
+     * @param maxBatchSize Number of records that triggers an immediate flush
+     * @param records Number of records already in the file
+     */
+    private LibraryJournal(Path path, FileChannel channel, long flushIntervalMillis, int maxBatchSize,
+            long records) {
+        this.path = path;
+        this.channel = channel;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.appendedSeq = records;
+        this.durableSeq = records;
+        this.flusher = new Thread(this::runFlusher, "library-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    /**
+     * Open a journal, replay its records into the library and attach it so
+     * that subsequent operations are journaled
+     * @param path Journal file (created if missing)
+     * @param library Library to rebuild; should be empty
+     * @param flushIntervalMillis Maximum time a record waits for its fsync
+     * @param maxBatchSize Number of records that triggers an immediate flush
+     * @return The open journal
+     * @throws IOException if the file cannot be read or opened
+     */
+    public static LibraryJournal open(Path path, Library library, long flushIntervalMillis, int maxBatchSize)
+            throws IOException {
+        return open(path, library, true, flushIntervalMillis, maxBatchSize);
+    }
+    
+    /**
+     * Attach a journal whose records the library already holds (a promoted
+     * replica's copy of its leader's journal) without replaying it
+     * @param path Journal file
+     * @param library Library whose state matches the file
+     * @param flushIntervalMillis Maximum time a record waits for its fsync
+     * @param maxBatchSize Number of records that triggers an immediate flush
+     * @return The open journal
+     * @throws IOException if the file cannot be read or opened
+     */
+    static LibraryJournal attach(Path path, Library library, long flushIntervalMillis, int maxBatchSize)
+            throws IOException {
+        return open(path, library, false, flushIntervalMillis, maxBatchSize);
+    }
+    
+    private static LibraryJournal open(Path path, Library library, boolean replay, long flushIntervalMillis,
+            int maxBatchSize) throws IOException {
+        if (flushIntervalMillis <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Flush interval and batch size must be positive");
+        }
+        
+        Scan scan = Files.exists(path) ? scan(path, replay ? library : null) : new Scan();
+        long goodLength = scan.length;
+        if (replay && scan.records < library.getRestoredJournalSeq()) {
+            throw new IOException("Journal has " + scan.records + " records but the restored snapshot covers "
+                    + library.getRestoredJournalSeq());
+        }
+        
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > goodLength) {
+            // Drop a torn final record so new records follow the last good one
+            channel.truncate(goodLength);
+            channel.force(true);
+        }
+        channel.position(goodLength);
+        
+        LibraryJournal journal = new LibraryJournal(path, channel, flushIntervalMillis, maxBatchSize, scan.records);
+        library.setJournal(journal);
+        return journal;
+    }
+    
+    /**
+     * Stream the records of a journal file into a library, skipping those
+     * a restored snapshot already covers
+     * @param path Journal file
+     * @param library Library to apply records to
+     * @return Length in bytes of the valid prefix of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path path, Library library) throws IOException {
+        return scan(path, library).length;
+    }
+    
+    /**
+     * Read the valid prefix of a journal file, applying each record after
+     * the library's restored snapshot
+     * @param path Journal file
+     * @param library Library to apply records to, or null to only count them
+     * @return Length and record count of the valid prefix
+     * @throws IOException if the file cannot be read
+     */
+    static Scan scan(Path path, Library library) throws IOException {
+        Scan scan = new Scan();
+        long covered = library != null ? library.getRestoredJournalSeq() : 0;
+        byte[] payload = new byte[256];
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    if (payload.length < length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break; // Torn final record
+                }
+                
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                
+                if (library != null && scan.records >= covered) {
+                    apply(ByteBuffer.wrap(payload, 0, length), library);
+                }
+                scan.length += HEADER_SIZE + length;
+                scan.records++;
+            }
+        }
+        return scan;
+    }
+    
+    /**
+     * Apply one decoded record to the library
+     * @param record Record payload
+     * @param library Library to update
+     * @throws IOException if the record type is unknown
+     */
+    static void apply(ByteBuffer record, Library library) throws IOException {
+        byte type = record.get();
+        switch (type) {
+            case ADD_BOOK: {
+                Book book = new Book(readString(record), readString(record), readString(record), readString(record));
+                // Only successful adds are journaled, so a book that is already
+                // present came from a reopened catalog
+                if (library.findBook(book.getBookId()) == null) {
+                    library.addBook(book);
+                }
+                break;
+            }
+            case ADD_MEMBER:
+                library.addMember(new Member(readString(record), readString(record),
+                        readString(record), readString(record), readString(record)));
+                break;
+            case ISSUE_BOOK: {
+                String memberId = readString(record);
+                String bookId = readString(record);
+                int issueDay = Book.toEpochDay(readString(record));
+                // Records written before due dates were tracked end after the issue date
+                int dueDay = record.hasRemaining() ? Book.toEpochDay(readString(record))
+                        : issueDay + library.getLoanPeriod();
+                library.issueBook(memberId, bookId, issueDay, dueDay);
+                break;
+            }
+            case RETURN_BOOK: {
+                String memberId = readString(record);
+                String bookId = readString(record);
+                // Records written before fines were charged carry no return date
+                int returnDay = record.hasRemaining() ? Book.toEpochDay(readString(record)) : Book.NO_DATE;
+                library.returnBook(memberId, bookId, returnDay);
+                break;
+            }
+            case PAY_FINE:
+                library.payFine(readString(record), Long.parseLong(readString(record)));
+                break;
+            case ACCRUE_FINES:
+                library.accrueFines(LocalDate.parse(readString(record)));
+                break;
+            case ISSUE_BOOKS: {
+                String memberId = readString(record);
+                int issueDay = Book.toEpochDay(readString(record));
+                int dueDay = Book.toEpochDay(readString(record));
+                CheckoutResult result = library.issueBooks(memberId, readStrings(record), issueDay, dueDay);
+                if (!result.isApplied()) {
+                    throw new IllegalStateException("Journaled checkout failed on replay: " + result);
+                }
+                break;
+            }
+            case RETURN_BOOKS: {
+                String memberId = readString(record);
+                int returnDay = Book.toEpochDay(readString(record));
+                CheckoutResult result = library.returnBooks(memberId, readStrings(record), returnDay);
+                if (!result.isApplied()) {
+                    throw new IllegalStateException("Journaled return failed on replay: " + result);
+                }
+                break;
+            }
+            case PLACE_HOLD:
+                library.placeHold(readString(record), readString(record), Book.toEpochDay(readString(record)));
+                break;
+            case CANCEL_HOLD:
+                library.cancelHold(readString(record), readString(record), Book.toEpochDay(readString(record)));
+                break;
+            case EXPIRE_HOLD:
+                library.expireHold(readString(record), Book.toEpochDay(readString(record)));
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+    
+    /**
+     * Journal an added book
+     * @param book The book
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendAddBook(Book book) {
+        synchronized (this.monitor) {
+            int start = beginRecord(ADD_BOOK);
+            this.pending.writeString(book.getBookId());
+            this.pending.writeString(book.getTitle());
+            this.pending.writeString(book.getAuthor());
+            this.pending.writeString(book.getIsbn());
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a registered member
+     * @param member The member
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendAddMember(Member member) {
+        synchronized (this.monitor) {
+            int start = beginRecord(ADD_MEMBER);
+            this.pending.writeString(member.getMemberId());
+            this.pending.writeString(member.getName());
+            this.pending.writeString(member.getEmail());
+            this.pending.writeString(member.getPhoneNumber());
+            this.pending.writeString(member.getMembershipDate());
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal an issued book
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendIssueBook(String memberId, String bookId, int issueDay, int dueDay) {
+        String issueDate = Book.formatDay(issueDay);
+        String dueDate = Book.formatDay(dueDay);
+        synchronized (this.monitor) {
+            int start = beginRecord(ISSUE_BOOK);
+            this.pending.writeString(memberId);
+            this.pending.writeString(bookId);
+            this.pending.writeString(issueDate);
+            this.pending.writeString(dueDate);
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a returned book
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param returnDay Epoch day of return, or Book.NO_DATE
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendReturnBook(String memberId, String bookId, int returnDay) {
+        String returnDate = returnDay != Book.NO_DATE ? Book.formatDay(returnDay) : null;
+        synchronized (this.monitor) {
+            int start = beginRecord(RETURN_BOOK);
+            this.pending.writeString(memberId);
+            this.pending.writeString(bookId);
+            if (returnDate != null) {
+                this.pending.writeString(returnDate);
+            }
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a multi-book issue as one record, so a crash never leaves
+     * part of it
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the books are due back
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendIssueBooks(String memberId, List<String> bookIds, int issueDay, int dueDay) {
+        String issueDate = Book.formatDay(issueDay);
+        String dueDate = Book.formatDay(dueDay);
+        synchronized (this.monitor) {
+            int start = beginRecord(ISSUE_BOOKS);
+            this.pending.writeString(memberId);
+            this.pending.writeString(issueDate);
+            this.pending.writeString(dueDate);
+            for (String bookId : bookIds) {
+                this.pending.writeString(bookId);
+            }
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a multi-book return as one record
+     * @param memberId ID of the member
+     * @param bookIds IDs of the books
+     * @param returnDay Epoch day of return
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendReturnBooks(String memberId, List<String> bookIds, int returnDay) {
+        String returnDate = Book.formatDay(returnDay);
+        synchronized (this.monitor) {
+            int start = beginRecord(RETURN_BOOKS);
+            this.pending.writeString(memberId);
+            this.pending.writeString(returnDate);
+            for (String bookId : bookIds) {
+                this.pending.writeString(bookId);
+            }
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a fine payment
+     * @param memberId ID of the member
+     * @param amount Amount paid, in minor units
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendPayFine(String memberId, long amount) {
+        synchronized (this.monitor) {
+            int start = beginRecord(PAY_FINE);
+            this.pending.writeString(memberId);
+            this.pending.writeString(Long.toString(amount));
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a fine accrual run; replay repeats the run, which charges the
+     * same amounts because accrual depends only on the loans and the day
+     * @param asOfDay Epoch day charged up to
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendAccrueFines(int asOfDay) {
+        String asOf = Book.formatDay(asOfDay);
+        synchronized (this.monitor) {
+            int start = beginRecord(ACCRUE_FINES);
+            this.pending.writeString(asOf);
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Journal a hold joining a book's waitlist
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param day Epoch day the hold was placed
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendPlaceHold(String memberId, String bookId, int day) {
+        return appendHold(PLACE_HOLD, memberId, bookId, day);
+    }
+    
+    /**
+     * Journal a cancelled hold
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param day Epoch day of the cancellation
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendCancelHold(String memberId, String bookId, int day) {
+        return appendHold(CANCEL_HOLD, memberId, bookId, day);
+    }
+    
+    /**
+     * Journal an expired hold; replay expires whichever hold the book is
+     * set aside for, which is the same one
+     * @param bookId ID of the book
+     * @param asOfDay Epoch day of the expiry check
+     * @return Sequence number to pass to awaitDurable
+     */
+    public long appendExpireHold(String bookId, int asOfDay) {
+        String asOf = Book.formatDay(asOfDay);
+        synchronized (this.monitor) {
+            int start = beginRecord(EXPIRE_HOLD);
+            this.pending.writeString(bookId);
+            this.pending.writeString(asOf);
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Block until a record and everything before it has been fsynced
+     * @param seq Sequence number returned by an append method
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    public void awaitDurable(long seq) {
+        synchronized (this.monitor) {
+            boolean interrupted = false;
+            while (this.durableSeq < seq && this.failure == null) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.durableSeq < seq) {
+                throw new UncheckedIOException("Journal write failed", this.failure);
+            }
+        }
+    }
+    
+    /**
+     * Admit a library change before it touches any state; its record must
+     * be appended, or the change abandoned, before release
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    void admit() {
+        synchronized (this.monitor) {
+            boolean interrupted = false;
+            while (this.pauses > 0 && !this.closing && this.failure == null) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.failure != null) {
+                throw new UncheckedIOException("Journal write failed", this.failure);
+            }
+            if (this.closing || this.closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            this.admitted++;
+        }
+    }
+    
+    /**
+     * End an admitted change
+     */
+    void release() {
+        synchronized (this.monitor) {
+            if (--this.admitted == 0 && (this.closing || this.pauses > 0)) {
+                this.monitor.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Hold new changes back and wait for admitted ones, so the library
+     * matches the records appended so far until resume is called
+     * @return Sequence number of the last appended record
+     */
+    long pause() {
+        synchronized (this.monitor) {
+            this.pauses++;
+            boolean interrupted = false;
+            while (this.admitted > 0) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return this.appendedSeq;
+        }
+    }
+    
+    /**
+     * Let changes held back by pause continue
+     */
+    void resume() {
+        synchronized (this.monitor) {
+            if (--this.pauses == 0) {
+                this.monitor.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Wait for admitted changes, flush outstanding records and close the
+     * journal file. The library stays attached, so later changes fail
+     * with IllegalStateException without being applied.
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.monitor) {
+            this.closing = true;
+            boolean interrupted = false;
+            while (this.admitted > 0) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            this.closed = true;
+            this.monitor.notifyAll();
+        }
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+        synchronized (this.monitor) {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+    
+    /**
+     * Wait until records after a sequence number are durable
+     * @param seq Sequence number already seen
+     * @param timeoutMillis Longest time to wait
+     * @return Sequence number of the last durable record; equal to seq on timeout
+     * @throws InterruptedException if interrupted while waiting
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    long awaitDurableAfter(long seq, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this.monitor) {
+            long remaining = timeoutMillis;
+            while (this.durableSeq <= seq && this.failure == null && remaining > 0) {
+                this.monitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (this.durableSeq <= seq && this.failure != null) {
+                throw new UncheckedIOException("Journal write failed", this.failure);
+            }
+            return this.durableSeq;
+        }
+    }
+    
+    /**
+     * Get the number of records written and fsynced, counting from the
+     * start of the file
+     * @return Sequence number of the last durable record
+     */
+    public long getDurableSeq() {
+        synchronized (this.monitor) {
+            return this.durableSeq;
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Append a placed or cancelled hold
+     * @param type PLACE_HOLD or CANCEL_HOLD
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @param day Epoch day of the change
+     * @return Sequence number of the record
+     */
+    private long appendHold(byte type, String memberId, String bookId, int day) {
+        String date = Book.formatDay(day);
+        synchronized (this.monitor) {
+            int start = beginRecord(type);
+            this.pending.writeString(memberId);
+            this.pending.writeString(bookId);
+            this.pending.writeString(date);
+            return endRecord(start);
+        }
+    }
+    
+    /**
+     * Write the record header placeholder and type byte
+     * @param type Record type
+     * @return Offset of the record in the pending batch
+     */
+    private int beginRecord(byte type) {
+        if (this.closed && this.failure == null) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        // After a failed flush, admitted changes still append; awaitDurable reports the failure
+        int start = this.pending.size();
+        this.pending.writeInt(0);
+        this.pending.writeInt(0);
+        this.pending.write(type);
+        return start;
+    }
+    
+    /**
+     * Fill in the record header and hand the batch to the flusher if full
+     * @param start Offset of the record in the pending batch
+     * @return Sequence number of the record
+     */
+    private long endRecord(int start) {
+        int payloadStart = start + HEADER_SIZE;
+        int length = this.pending.size() - payloadStart;
+        this.pending.patchInt(start, length);
+        this.pending.patchInt(start + 4, this.pending.crc(payloadStart, length));
+        
+        if (this.pendingRecords++ == 0) {
+            this.firstPendingAt = System.currentTimeMillis();
+            this.monitor.notifyAll();
+        } else if (this.pendingRecords >= this.maxBatchSize) {
+            this.monitor.notifyAll();
+        }
+        return ++this.appendedSeq;
+    }
+    
+    /**
+     * Background loop that writes and fsyncs batches of records
+     */
+    private void runFlusher() {
+        while (true) {
+            RecordBuffer batch;
+            long batchSeq;
+            synchronized (this.monitor) {
+                while (!this.closed && !batchReady()) {
+                    try {
+                        if (this.pendingRecords == 0) {
+                            this.monitor.wait();
+                        } else {
+                            long waitMillis = this.firstPendingAt + this.flushIntervalMillis
+                                    - System.currentTimeMillis();
+                            this.monitor.wait(Math.max(1, waitMillis));
+                        }
+                    } catch (InterruptedException e) {
+                        // Only close() stops the flusher
+                    }
+                }
+                if (this.pendingRecords == 0) {
+                    return; // Closed with nothing left to write
+                }
+                batch = this.pending;
+                batchSeq = this.appendedSeq;
+                this.pending = this.spare;
+                this.spare = null;
+                this.pendingRecords = 0;
+            }
+            
+            IOException error = null;
+            try {
+                ByteBuffer buffer = batch.toByteBuffer();
+                while (buffer.hasRemaining()) {
+                    this.channel.write(buffer);
+                }
+                this.channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.reset();
+            
+            synchronized (this.monitor) {
+                this.spare = batch;
+                if (error != null) {
+                    this.failure = error;
+                    this.closed = true;
+                } else {
+                    this.durableSeq = batchSeq;
+                }
+                this.monitor.notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check whether the pending batch should be flushed now (caller holds monitor)
+     * @return true if the batch is full or its oldest record has waited long enough
+     */
+    private boolean batchReady() {
+        return this.pendingRecords >= this.maxBatchSize
+                || (this.pendingRecords > 0
+                    && System.currentTimeMillis() - this.firstPendingAt >= this.flushIntervalMillis);
+    }
+    
+    /**
+     * Read a length-prefixed UTF-8 string
+     * @param record Record payload
+     * @return The string, or null
+     */
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.arrayOffset() + record.position(),
+                length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+    
+    /**
+     * Read the strings that fill the rest of a record
+     * @param record Record payload positioned at the first string
+     * @return The strings, in order
+     */
+    private static List<String> readStrings(ByteBuffer record) {
+        List<String> values = new ArrayList<>();
+        while (record.hasRemaining()) {
+            values.add(readString(record));
+        }
+        return values;
+    }
+    
+    /**
+     * Valid prefix of a journal file
+     */
+    static class Scan {
+        long length;  // Bytes
+        long records;
+    }
+    
+    /**
+     * Growable batch buffer that can patch record headers in place
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        private final CRC32 crc = new CRC32();
+        
+        RecordBuffer() {
+            super(1 << 16);
+        }
+        
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+        
+        void patchInt(int offset, int value) {
+            this.buf[offset] = (byte) (value >>> 24);
+            this.buf[offset + 1] = (byte) (value >>> 16);
+            this.buf[offset + 2] = (byte) (value >>> 8);
+            this.buf[offset + 3] = (byte) value;
+        }
+        
+        int crc(int offset, int length) {
+            this.crc.reset();
+            this.crc.update(this.buf, offset, length);
+            return (int) this.crc.getValue();
+        }
+        
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(this.buf, 0, this.count);
+        }
+    }
+}
@@ -3,18 +3,66 @@
  * Main class for library management system
  */
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.management.JMException;
 
 public class LibraryManagementSystem {
+    private static final long JOURNAL_FLUSH_MILLIS = 5;
+    private static final int JOURNAL_BATCH_SIZE = 512;
+    private static final long REPORT_CACHE_BYTES = 64L << 20;
+    
     private static Scanner scanner = new Scanner(System.in);
     private static Library library = new Library("Central Library");
     
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
+        
         System.out.println("\n╔════════════════════════════════════════════════╗");
         System.out.println("║   Welcome to Library Management System      ║");
         System.out.println("║   HexSoftwares Internship Project           ║");
         System.out.println("╚════════════════════════════════════════════════╝\n");
         
+        // Record operation metrics and publish them over JMX
+        LibraryMetrics metrics = new LibraryMetrics();
+        library.setMetrics(metrics);
+        try {
+            metrics.registerMBean(library.getLibraryName());
+        } catch (JMException e) {
+            System.out.println("✗ Metrics MBean not registered: " + e.getMessage());
+        }
+        
+        // Confirm each change on the console as it is made
+        library.setEventListener(new EventPrinter(System.out));
+        
+        // Keep rendered listings between menu visits; changes drop only the segments they touch
+        library.setReportCache(new ReportCache(REPORT_CACHE_BYTES));
+        
+        // Count issues by title and borrower for the popularity report
+        library.setCirculationAnalytics(new CirculationAnalytics());
+        
         // Initialize library with sample books
         initializeLibrary();
         
@@ -26,6 +74,187 @@ public class LibraryManagementSystem {
         }
     }
     
+    /**
+     * Run commands non-interactively instead of showing the menu
+     * Usage: --batch <commandFile|-> [--results <file>] [--errors-only]
+     * @param args Command-line arguments; "-" reads commands from stdin
+     */
+    private static void runBatch(String[] args) {
+        String source = args.length > 1 ? args[1] : "-";
+        String resultsFile = null;
+        boolean errorsOnly = false;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--results") && i + 1 < args.length) {
+                resultsFile = args[++i];
+            } else if (args[i].equals("--errors-only")) {
+                errorsOnly = true;
+            } else {
+                System.out.println("✗ Unknown batch option " + args[i]);
+                System.exit(2);
+            }
+        }
+        
+        Reader input;
+        Writer output;
+        try {
+            input = source.equals("-")
+                    ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                    : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+            output = resultsFile == null
+                    ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(Paths.get(resultsFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("✗ Error: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        
+        try (BufferedReader in = new BufferedReader(input, 1 << 16);
+                PrintWriter out = new PrintWriter(new BufferedWriter(output, 1 << 16), false)) {
+            BatchReport report = new BatchCommandRunner(library).run(in, out, errorsOnly);
+            System.out.println("✓ " + report);
+        } catch (IOException e) {
+            System.out.println("✗ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Serve the library over HTTP instead of showing the menu
+     * Usage: --serve [port] [--catalog <directory>] [--events block|drop|sample|silent]
+     *        [--journal <file> [--replicate <port> | --follow <host:port>]]
+     * @param args Command-line arguments; the port defaults to 8080. With
+     *        --catalog, book records live in memory-mapped files in the
+     *        directory and a restart reopens them instead of reloading.
+     *        Events are logged to the console from a background thread;
+     *        --events sets what happens when the log falls behind (default drop).
+     *        --journal replays and keeps a write-ahead journal; --replicate
+     *        ships it to followers on a port. --follow serves a read replica
+     *        of that leader, keeping its copy of the journal in the file.
+     */
+    private static void runServer(String[] args) {
+        int port = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 8080;
+        OffHeapCatalog catalog = null;
+        String eventPolicy = "drop";
+        String journalFile = null;
+        int replicationPort = -1;
+        String leaderAddress = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--catalog") && i + 1 < args.length) {
+                    catalog = OffHeapCatalog.open(Paths.get(args[++i]));
+                    library = new Library(library.getLibraryName(), catalog);
+                } else if (args[i].equals("--events") && i + 1 < args.length) {
+                    eventPolicy = args[++i];
+                    if (!eventPolicy.matches("block|drop|sample|silent")) {
+                        System.out.println("✗ Unknown event policy " + eventPolicy);
+                        System.exit(2);
+                    }
+                } else if (args[i].equals("--journal") && i + 1 < args.length) {
+                    journalFile = args[++i];
+                } else if (args[i].equals("--replicate") && i + 1 < args.length) {
+                    replicationPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--follow") && i + 1 < args.length) {
+                    leaderAddress = args[++i];
+                }
+            }
+            if (journalFile == null && (replicationPort >= 0 || leaderAddress != null)) {
+                System.out.println("✗ Replication needs --journal <file>");
+                System.exit(2);
+            }
+            if (replicationPort >= 0 && leaderAddress != null) {
+                System.out.println("✗ Use either --replicate or --follow");
+                System.exit(2);
+            }
+            LibraryEventBus events = null;
+            if (!eventPolicy.equals("silent")) {
+                events = new LibraryEventBus(LibraryEventBus.DEFAULT_CAPACITY,
+                        LibraryEventBus.Backpressure.valueOf(eventPolicy.toUpperCase()), 16);
+                events.subscribe(new EventPrinter(System.out));
+                library.setEventListener(events);
+            }
+            // Attached before the journal replays, so recent history is counted
+            library.setCirculationAnalytics(new CirculationAnalytics());
+            LibraryJournal journal = null;
+            ReplicationFollower follower = null;
+            if (leaderAddress != null) {
+                // The leader's changes arrive through the journal copy; nothing is added here
+                follower = ReplicationFollower.open(Paths.get(journalFile), library,
+                        JOURNAL_FLUSH_MILLIS, JOURNAL_BATCH_SIZE);
+                int colon = leaderAddress.lastIndexOf(':');
+                follower.start(leaderAddress.substring(0, colon), Integer.parseInt(leaderAddress.substring(colon + 1)));
+                System.out.println("✓ Following " + leaderAddress + " from record " + follower.getAppliedSeq());
+            } else {
+                if (journalFile != null) {
+                    journal = LibraryJournal.open(Paths.get(journalFile), library,
+                            JOURNAL_FLUSH_MILLIS, JOURNAL_BATCH_SIZE);
+                }
+                if (library.getTotalBooks() == 0) {
+                    initializeLibrary();
+                } else {
+                    System.out.println("✓ Reopened library with " + library.getTotalBooks() + " books");
+                }
+            }
+            if (events != null) {
+                events.flush(); // Keep the start-up log in order
+            }
+            OffHeapCatalog openCatalog = catalog;
+            LibraryEventBus openEvents = events;
+            LibraryJournal openJournal = journal;
+            ReplicationFollower openFollower = follower;
+            ReplicationLeader leader = replicationPort >= 0 ? new ReplicationLeader(journal, replicationPort) : null;
+            LibraryHttpServer server = new LibraryHttpServer(library, port);
+            server.setLeader(leader);
+            server.setFollower(follower);
+            // A replica gets fines and hold expiries from its leader, so only a leader sweeps
+            OverdueSweeper sweeper = follower == null ? new OverdueSweeper(library, (loan, asOf) ->
+                    System.out.println("✗ Overdue: " + loan + " (" + loan.getDaysOverdue(asOf) + " days)")) : null;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (sweeper != null) {
+                    sweeper.stop();
+                }
+                server.stop(1);
+                if (leader != null) {
+                    leader.close();
+                }
+                try {
+                    LibraryJournal promoted = null;
+                    if (openFollower != null) {
+                        openFollower.close();
+                        promoted = openFollower.getJournal();
+                    }
+                    if (openJournal != null) {
+                        openJournal.close();
+                    } else if (promoted != null) {
+                        promoted.close();
+                    }
+                } catch (IOException e) {
+                    System.out.println("✗ Journal not closed cleanly: " + e.getMessage());
+                }
+                if (openEvents != null) {
+                    openEvents.close();
+                }
+                if (openCatalog != null) {
+                    try {
+                        openCatalog.close();
+                    } catch (IOException e) {
+                        System.out.println("✗ Catalog not closed cleanly: " + e.getMessage());
+                    }
+                }
+            }));
+            if (leader != null) {
+                leader.start();
+            }
+            server.start();
+            if (sweeper != null) {
+                sweeper.start(LocalTime.of(8, 0));
+            }
+        } catch (IOException e) {
+            System.out.println("✗ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     /**
      * Initialize library with sample books and members
      */
@@ -104,6 +333,7 @@ public class LibraryManagementSystem {
         System.out.println("2. View Available Books");
         System.out.println("3. View Issued Books");
         System.out.println("4. Add New Book");
+        System.out.println("5. Search Books");
         System.out.print("Enter your choice: ");
         
         try {
@@ -123,6 +353,9 @@ public class LibraryManagementSystem {
                 case 4:
                     addNewBook();
                     break;
+                case 5:
+                    searchBooks();
+                    break;
                 default:
                     System.out.println("✗ Invalid choice.");
             }
@@ -168,6 +401,8 @@ public class LibraryManagementSystem {
         System.out.println("\n--- Issue/Return Books ---");
         System.out.println("1. Issue Book");
         System.out.println("2. Return Book");
+        System.out.println("3. Pay Fine");
+        System.out.println("4. Place or Cancel Hold");
         System.out.print("Enter your choice: ");
         
         try {
@@ -181,6 +416,12 @@ public class LibraryManagementSystem {
                 case 2:
                     returnBook();
                     break;
+                case 3:
+                    payFine();
+                    break;
+                case 4:
+                    manageHold();
+                    break;
                 default:
                     System.out.println("✗ Invalid choice.");
             }
@@ -198,6 +439,9 @@ public class LibraryManagementSystem {
         System.out.println("1. View Statistics");
         System.out.println("2. View Member Details");
         System.out.println("3. View Book Details");
+        System.out.println("4. View Operation Metrics");
+        System.out.println("5. View Overdue and Due-Soon Loans");
+        System.out.println("6. View Popular Titles and Top Borrowers");
         System.out.print("Enter your choice: ");
         
         try {
@@ -214,6 +458,15 @@ public class LibraryManagementSystem {
                 case 3:
                     viewBookDetails();
                     break;
+                case 4:
+                    library.getMetrics().displayMetrics();
+                    break;
+                case 5:
+                    viewOverdueLoans();
+                    break;
+                case 6:
+                    viewCirculation();
+                    break;
                 default:
                     System.out.println("✗ Invalid choice.");
             }
@@ -244,6 +497,27 @@ public class LibraryManagementSystem {
         }
     }
     
+    /**
+     * Search books by title or author
+     */
+    private static void searchBooks() {
+        System.out.print("\nEnter title/author keywords: ");
+        String query = scanner.nextLine();
+        
+        java.util.List<Book> results = library.searchBooks(query, 20);
+        System.out.println("\n=== Search Results ===");
+        if (results.isEmpty()) {
+            System.out.println("No matching books.");
+        } else {
+            for (int i = 0; i < results.size(); i++) {
+                Book book = results.get(i);
+                System.out.println((i + 1) + ". " + book.getTitle() + " by " + book.getAuthor() + 
+                                 " (ID: " + book.getBookId() + ")");
+            }
+        }
+        System.out.println("======================");
+    }
+    
     /**
      * Register a new member
      */
@@ -269,34 +543,125 @@ public class LibraryManagementSystem {
     }
     
     /**
-     * Issue a book to a member
+     * Issue one or more books to a member; several IDs are issued all or none
      */
     private static void issueBook() {
         System.out.println("\n--- Issue Book ---");
         System.out.print("Enter Member ID: ");
         String memberId = scanner.nextLine();
-        System.out.print("Enter Book ID: ");
-        String bookId = scanner.nextLine();
+        System.out.print("Enter Book ID(s), separated by spaces: ");
+        String[] bookIds = scanner.nextLine().trim().split("[\\s,]+");
         
         try {
-            library.issueBook(memberId, bookId);
+            if (bookIds.length > 1) {
+                CheckoutResult result = library.issueBooks(memberId, Arrays.asList(bookIds));
+                if (!result.isApplied()) {
+                    System.out.println("✗ Error: " + result);
+                }
+            } else {
+                library.issueBook(memberId, bookIds[0]);
+            }
         } catch (Exception e) {
             System.out.println("✗ Error: " + e.getMessage());
         }
     }
     
     /**
-     * Return a book from a member
+     * Return one or more books from a member; several IDs are returned all or none
      */
     private static void returnBook() {
         System.out.println("\n--- Return Book ---");
         System.out.print("Enter Member ID: ");
         String memberId = scanner.nextLine();
+        System.out.print("Enter Book ID(s), separated by spaces: ");
+        String[] bookIds = scanner.nextLine().trim().split("[\\s,]+");
+        
+        try {
+            if (bookIds.length > 1) {
+                CheckoutResult result = library.returnBooks(memberId, Arrays.asList(bookIds));
+                if (!result.isApplied()) {
+                    System.out.println("✗ Error: " + result);
+                    return;
+                }
+            } else {
+                library.returnBook(memberId, bookIds[0]);
+            }
+            MemberAccount account = library.getAccount(memberId);
+            if (account.getBalance() > 0) {
+                System.out.println("Outstanding fines: " + FinePolicy.format(account.getBalance()));
+            }
+            for (String bookId : bookIds) {
+                List<Hold> holds = library.listHolds(bookId);
+                if (!holds.isEmpty() && holds.get(0).getStatus() == Hold.Status.READY) {
+                    System.out.println("Set aside for " + holds.get(0).getMemberId() + " until "
+                            + holds.get(0).getPickupDeadline());
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Put a member on a book's waitlist, or take them off it
+     */
+    private static void manageHold() {
+        System.out.println("\n--- Place or Cancel Hold ---");
+        System.out.print("Enter Member ID: ");
+        String memberId = scanner.nextLine();
         System.out.print("Enter Book ID: ");
         String bookId = scanner.nextLine();
         
         try {
-            library.returnBook(memberId, bookId);
+            boolean waiting = false;
+            for (Hold hold : library.listHolds(bookId)) {
+                waiting |= hold.getMemberId().equals(memberId);
+            }
+            if (waiting) {
+                library.cancelHold(memberId, bookId);
+                System.out.println("✓ Hold on " + bookId + " cancelled for " + memberId);
+                return;
+            }
+            Hold hold = library.placeHold(memberId, bookId);
+            if (hold.getStatus() == Hold.Status.READY) {
+                System.out.println("✓ Book " + bookId + " is set aside for " + memberId + " until "
+                        + hold.getPickupDeadline());
+            } else {
+                System.out.println("✓ Hold placed; " + memberId + " is number " + library.listHolds(bookId).size()
+                        + " in line for " + bookId);
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Take a fine payment from a member
+     */
+    private static void payFine() {
+        System.out.println("\n--- Pay Fine ---");
+        System.out.print("Enter Member ID: ");
+        String memberId = scanner.nextLine();
+        
+        MemberAccount account = library.getAccount(memberId);
+        if (account == null) {
+            System.out.println("✗ Error: Member with ID " + memberId + " not found");
+            return;
+        }
+        System.out.println("Balance: " + FinePolicy.format(account.getBalance()));
+        if (account.getBalance() <= 0) {
+            return;
+        }
+        System.out.print("Enter Amount (e.g. 2.50): ");
+        String input = scanner.nextLine().trim();
+        
+        try {
+            long amount = new BigDecimal(input).movePointRight(2).longValueExact();
+            long balance = library.payFine(memberId, amount);
+            System.out.println("✓ Payment of " + FinePolicy.format(amount) + " recorded; balance "
+                    + FinePolicy.format(balance));
+        } catch (ArithmeticException | NumberFormatException e) {
+            System.out.println("✗ Error: Invalid amount " + input);
         } catch (Exception e) {
             System.out.println("✗ Error: " + e.getMessage());
         }
@@ -308,7 +673,15 @@ public class LibraryManagementSystem {
     private static void viewMemberDetails() {
         System.out.print("\nEnter Member ID: ");
         String memberId = scanner.nextLine();
-        // Would need to add findMember method in Library class
+        
+        Member member = library.findMember(memberId);
+        if (member == null) {
+            System.out.println("✗ Error: Member with ID " + memberId + " not found");
+            return;
+        }
+        member.displayMemberDetails();
+        System.out.println(library.getAccount(memberId));
+        member.displayIssuedBooks();
     }
     
     /**
@@ -317,7 +690,71 @@ public class LibraryManagementSystem {
     private static void viewBookDetails() {
         System.out.print("\nEnter Book ID: ");
         String bookId = scanner.nextLine();
-        // Would need to add findBook method (make it public) in Library class
+        
+        Book book = library.findBook(bookId);
+        if (book == null) {
+            System.out.println("✗ Error: Book with ID " + bookId + " not found");
+            return;
+        }
+        book.displayBookDetails();
+        List<Hold> holds = library.listHolds(bookId);
+        if (!holds.isEmpty()) {
+            System.out.println("Holds (" + holds.size() + "):");
+            for (Hold hold : holds) {
+                System.out.println("  " + hold);
+            }
+        }
+    }
+    
+    /**
+     * Display loans that are overdue or due within the next three days
+     */
+    private static void viewOverdueLoans() {
+        LocalDate today = LocalDate.now();
+        System.out.println("\n=== Overdue Loans ===");
+        List<Loan> overdue = library.findOverdue(today);
+        for (Loan loan : overdue) {
+            System.out.println(loan + " (" + loan.getDaysOverdue(today) + " days overdue)");
+        }
+        if (overdue.isEmpty()) {
+            System.out.println("No overdue loans.");
+        }
+        System.out.println("\n=== Due in the Next 3 Days ===");
+        List<Loan> dueSoon = library.findDueWithin(today, 3);
+        for (Loan loan : dueSoon) {
+            System.out.println(loan);
+        }
+        if (dueSoon.isEmpty()) {
+            System.out.println("No loans due soon.");
+        }
+    }
+    
+    /**
+     * Display the most-issued titles this week and the heaviest borrowers this month
+     */
+    private static void viewCirculation() {
+        CirculationAnalytics analytics = library.getCirculationAnalytics();
+        if (analytics == null) {
+            System.out.println("✗ Circulation is not being counted.");
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        System.out.println("\n=== Most Issued Titles (Last 7 Days) ===");
+        List<CirculationAnalytics.Count> titles = analytics.topTitles(10, 7, today);
+        for (int i = 0; i < titles.size(); i++) {
+            System.out.println((i + 1) + ". " + titles.get(i));
+        }
+        if (titles.isEmpty()) {
+            System.out.println("No books issued.");
+        }
+        System.out.println("\n=== Top Borrowers (Last 30 Days) ===");
+        List<CirculationAnalytics.Count> borrowers = analytics.topBorrowers(10, 30, today);
+        for (int i = 0; i < borrowers.size(); i++) {
+            System.out.println((i + 1) + ". " + borrowers.get(i));
+        }
+        if (borrowers.isEmpty()) {
+            System.out.println("No books issued.");
+        }
     }
     
     /**
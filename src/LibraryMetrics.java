@@ -0,0 +1,169 @@
+/**
+ * LibraryMetrics.java
+ * Operation counters, failure reasons and latency histograms for a Library
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Recording uses only LongAdders and a preallocated histogram per operation,
+ * so it is lock-free and does not allocate. A Library without metrics
+ * attached skips recording entirely, including the clock reads.
+ */
+
+public class LibraryMetrics implements LibraryMetricsMXBean {
+    /**
+     * Library operations that are measured
+     */
+    public enum Operation {
+        ADD_BOOK,
+        ADD_MEMBER,
+        ISSUE_BOOK,
+        RETURN_BOOK
+    }
+    
+    /**
+     * Why an operation failed
+     */
+    public enum FailureReason {
+        BOOK_NOT_FOUND,
+        MEMBER_NOT_FOUND,
+        ALREADY_ISSUED,
+        LIMIT_REACHED,
+        NOT_ISSUED,
+        NOT_ISSUED_TO_MEMBER,
+        FINES_OUTSTANDING,
+        ON_HOLD,
+        DUPLICATE_ID,
+        INVALID_ARGUMENT
+    }
+    
+    private final LongAdder[] successes;
+    private final LongAdder[] failures;
+    private final LongAdder[] failuresByReason;
+    private final LatencyHistogram[] latencies;
+    
+    /**
+     * Constructor to create empty metrics
+     */
+    public LibraryMetrics() {
+        int operations = Operation.values().length;
+        this.successes = new LongAdder[operations];
+        this.failures = new LongAdder[operations];
+        this.latencies = new LatencyHistogram[operations];
+        for (int i = 0; i < operations; i++) {
+            this.successes[i] = new LongAdder();
+            this.failures[i] = new LongAdder();
+            this.latencies[i] = new LatencyHistogram();
+        }
+        this.failuresByReason = new LongAdder[FailureReason.values().length];
+        for (int i = 0; i < this.failuresByReason.length; i++) {
+            this.failuresByReason[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Record a completed operation
+     * @param operation The operation
+     * @param startNanos System.nanoTime() taken when the operation started
+     */
+    public void recordSuccess(Operation operation, long startNanos) {
+        this.successes[operation.ordinal()].increment();
+        this.latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Record a failed operation
+     * @param operation The operation
+     * @param reason Why it failed
+     */
+    public void recordFailure(Operation operation, FailureReason reason) {
+        this.failures[operation.ordinal()].increment();
+        this.failuresByReason[reason.ordinal()].increment();
+    }
+    
+    /**
+     * Get the latency histogram of an operation
+     * @param operation The operation
+     * @return Live histogram
+     */
+    public LatencyHistogram getLatencies(Operation operation) {
+        return this.latencies[operation.ordinal()];
+    }
+    
+    /**
+     * Get the failure count for one reason
+     * @param reason The reason
+     * @return Number of failures
+     */
+    public long getFailureCount(FailureReason reason) {
+        return this.failuresByReason[reason.ordinal()].sum();
+    }
+    
+    @Override
+    public List<OperationStats> getOperationStats() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            int i = operation.ordinal();
+            stats.add(new OperationStats(operation.name(), this.successes[i].sum(),
+                    this.failures[i].sum(), this.latencies[i]));
+        }
+        return stats;
+    }
+    
+    @Override
+    public Map<String, Long> getFailuresByReason() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (FailureReason reason : FailureReason.values()) {
+            counts.put(reason.name(), this.failuresByReason[reason.ordinal()].sum());
+        }
+        return counts;
+    }
+    
+    @Override
+    public void reset() {
+        for (int i = 0; i < this.successes.length; i++) {
+            this.successes[i].reset();
+            this.failures[i].reset();
+            this.latencies[i].reset();
+        }
+        for (LongAdder counter : this.failuresByReason) {
+            counter.reset();
+        }
+    }
+    
+    /**
+     * Register these metrics with the platform MBean server
+     * @param libraryName Name used in the MBean's ObjectName
+     * @return The registered ObjectName
+     * @throws JMException if registration fails
+     */
+    public ObjectName registerMBean(String libraryName) throws JMException {
+        ObjectName name = new ObjectName("library:type=LibraryMetrics,name=" + ObjectName.quote(libraryName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+    
+    /**
+     * Display a metrics report
+     */
+    public void displayMetrics() {
+        System.out.println("\n=== Library Metrics ===");
+        for (OperationStats stats : getOperationStats()) {
+            System.out.println(stats);
+        }
+        for (Map.Entry<String, Long> entry : getFailuresByReason().entrySet()) {
+            if (entry.getValue() > 0) {
+                System.out.println("Failures (" + entry.getKey() + "): " + entry.getValue());
+            }
+        }
+        System.out.println("=======================");
+    }
+}
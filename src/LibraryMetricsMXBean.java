@@ -0,0 +1,26 @@
+/**
+ * LibraryMetricsMXBean.java
+ * JMX view of LibraryMetrics
+ */
+
+import java.util.List;
+import java.util.Map;
+
+public interface LibraryMetricsMXBean {
+    /**
+     * Get per-operation counts and latency percentiles
+     * @return One entry per operation
+     */
+    List<OperationStats> getOperationStats();
+    
+    /**
+     * Get failure counts keyed by reason
+     * @return Reason name -> count
+     */
+    Map<String, Long> getFailuresByReason();
+    
+    /**
+     * Clear all counters and histograms
+     */
+    void reset();
+}
@@ -0,0 +1,330 @@
+/**
+ * LibrarySnapshot.java
+ * Compact binary snapshots of a library's books, members, loans and holds
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+/*
+ * File layout (big-endian):
+ *   int magic, int version, int bookCount, int memberCount, int loanCount
+ *   long journalSeq (version 5 and later)
+ *   int[bookCount] bookOffsets, int[memberCount] memberOffsets, int loansOffset
+ *   book records:   bookId, title, author, isbn
+ *   member records: memberId, name, email, phoneNumber, membershipDate
+ *   loan records:   int memberIndex, int bookIndex, int issueDay, int dueDay,
+ *                   long accruedFine
+ *                   (version 2: no accruedFine;
+ *                    version 1: int memberIndex, int bookIndex, issueDate)
+ *   fine accounts:  long charged, long paid per member (version 3 and later)
+ *   holds:          int holdCount, then int bookIndex, int memberIndex,
+ *                   int placedDay, int pickupDeadline per hold, each book's
+ *                   holds in queue order (version 4 and later)
+ * Strings are [int byteLength][UTF-8 bytes], length -1 for null. The offset
+ * table lets restore decode records in parallel straight from the mapping.
+ *
+ * journalSeq is the number of journal records the snapshot reflects (0
+ * without a journal). The journal holds changes back while the snapshot is
+ * copied, so the copy matches those records exactly; after a restore,
+ * opening the journal replays only the records after them.
+ */
+
+public class LibrarySnapshot {
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 5;
+    private static final int PARALLEL_CHUNK = 16384; // Records decoded per task
+    
+    /**
+     * Write a snapshot of the library to a file. Changes are paused only
+     * while the library is copied; encoding and I/O happen after it has
+     * resumed serving requests. The file is replaced only once the journal
+     * records it covers are durable.
+     * @param library Library to snapshot
+     * @param path Destination file, replaced atomically
+     * @return Size of the snapshot in bytes
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(Library library, Path path) throws IOException {
+        Book[] books;
+        Member[] members;
+        int[] loanMembers;
+        int[] loanBooks;
+        int[] loanIssueDays;
+        int[] loanDueDays;
+        long[] loanFines;
+        long[] charged;
+        long[] paid;
+        List<Hold> holds;
+        int loanCount = 0;
+        
+        // Catalog before member locks, so no member can join between the copies of members and holds
+        LibraryJournal journal = library.getJournal();
+        long journalSeq = journal != null ? journal.pause() : 0;
+        library.lockCatalog();
+        library.lockAllMembers();
+        try {
+            books = library.bookArray();
+            members = library.memberArray();
+            int capacity = 0;
+            for (Member member : members) {
+                capacity += member.getIssuedBooksCount();
+            }
+            loanMembers = new int[capacity];
+            loanBooks = new int[capacity];
+            loanIssueDays = new int[capacity];
+            loanDueDays = new int[capacity];
+            loanFines = new long[capacity];
+            charged = new long[members.length];
+            paid = new long[members.length];
+            for (int m = 0; m < members.length; m++) {
+                MemberAccount account = library.account(members[m]);
+                charged[m] = account.getCharged();
+                paid[m] = account.getPaid();
+                List<Book> issued = members[m].getIssuedBooks();
+                for (Book book : issued) {
+                    loanMembers[loanCount] = m;
+                    loanBooks[loanCount] = book.getOrdinal();
+                    loanIssueDays[loanCount] = book.getIssueDay();
+                    loanDueDays[loanCount] = book.getDueDay();
+                    loanFines[loanCount] = library.accruedFine(book);
+                    loanCount++;
+                }
+            }
+            holds = library.holdArray();
+        } finally {
+            library.unlockAllMembers();
+            library.unlockCatalog();
+            if (journal != null) {
+                journal.resume();
+            }
+        }
+        
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int headerSize = 32 + 4 * (books.length + members.length);
+        int[] offsets = new int[books.length + members.length + 1];
+        long size;
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(books.length);
+            out.writeInt(members.length);
+            out.writeInt(loanCount);
+            out.writeLong(journalSeq);
+            out.write(new byte[headerSize - 28]); // Offset table, filled in below
+            
+            int next = 0;
+            for (Book book : books) {
+                offsets[next++] = checkedSize(out);
+                writeString(out, book.getBookId());
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+                writeString(out, book.getIsbn());
+            }
+            for (Member member : members) {
+                offsets[next++] = checkedSize(out);
+                writeString(out, member.getMemberId());
+                writeString(out, member.getName());
+                writeString(out, member.getEmail());
+                writeString(out, member.getPhoneNumber());
+                writeString(out, member.getMembershipDate());
+            }
+            offsets[next] = checkedSize(out);
+            for (int i = 0; i < loanCount; i++) {
+                out.writeInt(loanMembers[i]);
+                out.writeInt(loanBooks[i]);
+                out.writeInt(loanIssueDays[i]);
+                out.writeInt(loanDueDays[i]);
+                out.writeLong(loanFines[i]);
+            }
+            for (int m = 0; m < members.length; m++) {
+                out.writeLong(charged[m]);
+                out.writeLong(paid[m]);
+            }
+            out.writeInt(holds.size());
+            for (Hold hold : holds) {
+                out.writeInt(library.findBook(hold.getBookId()).getOrdinal());
+                out.writeInt(library.findMember(hold.getMemberId()).getOrdinal());
+                out.writeInt(hold.getPlacedDay());
+                out.writeInt(hold.getPickupDeadlineDay());
+            }
+            out.flush();
+            size = checkedSize(out);
+        }
+        
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer table = ByteBuffer.allocate(4 * offsets.length);
+            table.asIntBuffer().put(offsets);
+            channel.write(table, 28);
+            channel.force(true);
+        }
+        if (journal != null) {
+            journal.awaitDurable(journalSeq); // A snapshot must never cover records a crash could lose
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+    
+    /**
+     * Take a snapshot on a background executor while the library keeps serving
+     * @param library Library to snapshot
+     * @param path Destination file
+     * @param executor Executor to run the snapshot on
+     * @return Future completing with the snapshot size in bytes
+     */
+    public static CompletableFuture<Long> writeAsync(Library library, Path path, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return write(library, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+    
+    /**
+     * Restore a snapshot into an empty library by memory-mapping the file;
+     * open the library's journal afterwards to replay the later changes
+     * @param path Snapshot file
+     * @param library Empty library to populate (before it starts serving)
+     * @return Number of journal records the snapshot covers, 0 if none
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static long restore(Path path, Library library) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2 GB is not supported");
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        if (map.remaining() < 24 || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a library snapshot: " + path);
+        }
+        int version = map.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        if (version >= 5 && map.remaining() < 32) {
+            throw new IOException("Truncated library snapshot: " + path);
+        }
+        int bookCount = map.getInt(8);
+        int memberCount = map.getInt(12);
+        int loanCount = map.getInt(16);
+        long journalSeq = version >= 5 ? map.getLong(20) : 0;
+        int table = version >= 5 ? 28 : 20; // Offset table
+        
+        Book[] books = new Book[bookCount];
+        Member[] members = new Member[memberCount];
+        int chunks = (bookCount + memberCount + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            ByteBuffer in = map.duplicate();
+            byte[] scratch = new byte[256];
+            int end = Math.min((chunk + 1) * PARALLEL_CHUNK, bookCount + memberCount);
+            for (int i = chunk * PARALLEL_CHUNK; i < end; i++) {
+                in.position(map.getInt(table + 4 * i));
+                if (i < bookCount) {
+                    books[i] = new Book(readString(in, scratch), readString(in, scratch),
+                            readString(in, scratch), readString(in, scratch));
+                } else {
+                    members[i - bookCount] = new Member(readString(in, scratch), readString(in, scratch),
+                            readString(in, scratch), readString(in, scratch), readString(in, scratch));
+                }
+            }
+        });
+        library.restoreCatalog(books, members);
+        
+        ByteBuffer in = map.duplicate();
+        in.position(map.getInt(table + 4 * (bookCount + memberCount)));
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < loanCount; i++) {
+            Member member = members[in.getInt()];
+            Book book = books[in.getInt()];
+            if (version == 1) {
+                int issueDay = Book.toEpochDay(readString(in, scratch));
+                library.restoreLoan(member, book, issueDay, issueDay + library.getLoanPeriod(), 0);
+            } else {
+                int issueDay = in.getInt();
+                int dueDay = in.getInt();
+                library.restoreLoan(member, book, issueDay, dueDay, version >= 3 ? in.getLong() : 0);
+            }
+        }
+        if (version >= 3) {
+            for (Member member : members) {
+                library.restoreAccount(member, in.getLong(), in.getLong());
+            }
+        }
+        if (version >= 4) {
+            int holdCount = in.getInt();
+            for (int i = 0; i < holdCount; i++) {
+                Book book = books[in.getInt()];
+                library.restoreHold(members[in.getInt()], book, in.getInt(), in.getInt());
+            }
+        }
+        library.setRestoredJournalSeq(journalSeq);
+        return journalSeq;
+    }
+    
+    /**
+     * Get the number of bytes written so far, refusing snapshots over 2 GB
+     * @param out Snapshot stream
+     * @return Current offset in the file
+     * @throws IOException if the snapshot has grown too large
+     */
+    private static int checkedSize(DataOutputStream out) throws IOException {
+        int size = out.size();
+        if (size == Integer.MAX_VALUE) { // DataOutputStream saturates its counter
+            throw new IOException("Snapshot larger than 2 GB is not supported");
+        }
+        return size;
+    }
+    
+    /**
+     * Write a length-prefixed UTF-8 string
+     * @param out Snapshot stream
+     * @param value The string, may be null
+     * @throws IOException if the write fails
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Read a length-prefixed UTF-8 string
+     * @param in Mapped snapshot positioned at the string
+     * @param scratch Reusable buffer, grown if too small
+     * @return The string, or null
+     */
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
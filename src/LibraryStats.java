@@ -0,0 +1,60 @@
+/**
+ * LibraryStats.java
+ * Immutable point-in-time snapshot of library statistics
+ */
+
+public class LibraryStats {
+    private final String libraryName;
+    private final int totalBooks;
+    private final int issuedBooks;
+    private final int totalMembers;
+    private final int membersAtLimit;
+    
+    /**
+     * Constructor to create a statistics snapshot
+     * @param libraryName Name of the library
+     * @param totalBooks Number of books in the catalog
+     * @param issuedBooks Number of books currently issued
+     * @param totalMembers Number of registered members
+     * @param membersAtLimit Number of members holding the maximum number of books
+     */
+    public LibraryStats(String libraryName, int totalBooks, int issuedBooks, int totalMembers, int membersAtLimit) {
+        this.libraryName = libraryName;
+        this.totalBooks = totalBooks;
+        this.issuedBooks = issuedBooks;
+        this.totalMembers = totalMembers;
+        this.membersAtLimit = membersAtLimit;
+    }
+    
+    // Getters
+    public String getLibraryName() {
+        return libraryName;
+    }
+    
+    public int getTotalBooks() {
+        return totalBooks;
+    }
+    
+    public int getAvailableBooks() {
+        return totalBooks - issuedBooks;
+    }
+    
+    public int getIssuedBooks() {
+        return issuedBooks;
+    }
+    
+    public int getTotalMembers() {
+        return totalMembers;
+    }
+    
+    public int getMembersAtLimit() {
+        return membersAtLimit;
+    }
+    
+    @Override
+    public String toString() {
+        return "LibraryStats{totalBooks=" + totalBooks + ", availableBooks=" + getAvailableBooks()
+                + ", issuedBooks=" + issuedBooks + ", totalMembers=" + totalMembers
+                + ", membersAtLimit=" + membersAtLimit + "}";
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Loan.java
+ * Immutable view of one book on loan to a member
+ */
+
+import java.time.LocalDate;
+
+public class Loan {
+    private final Book book;
+    private final Member member;
+    private final int issueDay;
+    private final int dueDay;
+    
+    /**
+     * Constructor to create a loan record
+     * @param book The book on loan
+     * @param member Member holding the book
+     * @param issueDay Epoch day of issue
+     * @param dueDay Epoch day the book is due back
+     */
+    public Loan(Book book, Member member, int issueDay, int dueDay) {
+        this.book = book;
+        this.member = member;
+        this.issueDay = issueDay;
+        this.dueDay = dueDay;
+    }
+    
+    /**
+     * Get the number of days the loan is overdue
+     * @param asOf Day to measure from
+     * @return Days past the due date, 0 if not overdue
+     */
+    public int getDaysOverdue(LocalDate asOf) {
+        return (int) Math.max(0, asOf.toEpochDay() - this.dueDay);
+    }
+    
+    // Getters
+    public Book getBook() {
+        return book;
+    }
+    
+    public Member getMember() {
+        return member;
+    }
+    
+    public LocalDate getIssueDate() {
+        return LocalDate.ofEpochDay(issueDay);
+    }
+    
+    public LocalDate getDueDate() {
+        return LocalDate.ofEpochDay(dueDay);
+    }
+    
+    public int getIssueDay() {
+        return issueDay;
+    }
+    
+    public int getDueDay() {
+        return dueDay;
+    }
+    
+    @Override
+    public String toString() {
+        return "'" + book.getTitle() + "' (" + book.getBookId() + ") held by " + member.getName()
+                + " (" + member.getMemberId() + "), due " + getDueDate();
+    }
+}
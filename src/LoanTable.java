@@ -0,0 +1,124 @@
+/**
+ * LoanTable.java
+ * Current loans, keyed by book ordinal
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * One entry per book ordinal packs ((memberOrdinal + 1) << 32 | slot), where
+ * slot is the book's position in the member's loan array; 0 means the
+ * book is not on loan. That gives O(1) "who holds this book" and lets a
+ * return remove the loan from the member without searching. A second
+ * column holds the fine accrued so far on each loan, in minor units.
+ *
+ * Entries live in fixed 4096-entry pages that are never moved, so growing
+ * the table (under the catalog write lock) never blocks readers. An entry
+ * is written by the thread holding the book's stripe lock when the book is
+ * issued, and the holder's member lock while it is on loan; reads are
+ * volatile, so unlocked lookups see the latest completed issue or return.
+ */
+
+class LoanTable {
+    static final int NO_HOLDER = -1;
+    
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+    private volatile AtomicLongArray[] accrued = new AtomicLongArray[0];
+    
+    /**
+     * Make room for books with ordinals below a bound; call with the
+     * catalog write lock held
+     * @param bookCount Number of books in the catalog
+     */
+    void ensureCapacity(int bookCount) {
+        AtomicLongArray[] current = this.pages;
+        int needed = (bookCount + PAGE_MASK) >>> PAGE_BITS;
+        if (needed <= current.length) {
+            return;
+        }
+        int length = Math.max(needed, current.length * 2);
+        this.accrued = grow(this.accrued, length);
+        this.pages = grow(current, length);
+    }
+    
+    /**
+     * Get the member holding a book
+     * @param bookOrdinal Book ordinal
+     * @return Member ordinal, or NO_HOLDER if the book is not on loan
+     */
+    int holderOf(int bookOrdinal) {
+        return (int) (entry(bookOrdinal) >>> 32) - 1;
+    }
+    
+    /**
+     * Get a loaned book's position in its holder's loan array
+     * @param bookOrdinal Book ordinal (must be on loan)
+     * @return Slot index
+     */
+    int slotOf(int bookOrdinal) {
+        return (int) entry(bookOrdinal);
+    }
+    
+    /**
+     * Record a loan
+     * @param bookOrdinal Book ordinal
+     * @param memberOrdinal Ordinal of the member borrowing it
+     * @param slot Book's position in the member's loan array
+     */
+    void put(int bookOrdinal, int memberOrdinal, int slot) {
+        this.pages[bookOrdinal >>> PAGE_BITS].set(bookOrdinal & PAGE_MASK, (long) (memberOrdinal + 1) << 32 | slot);
+    }
+    
+    /**
+     * Update the slot of a loan after the member's loan array was compacted
+     * @param bookOrdinal Book ordinal (must be on loan)
+     * @param slot New slot index
+     */
+    void moveSlot(int bookOrdinal, int slot) {
+        put(bookOrdinal, holderOf(bookOrdinal), slot);
+    }
+    
+    /**
+     * Remove a loan and its accrued fine
+     * @param bookOrdinal Book ordinal
+     */
+    void remove(int bookOrdinal) {
+        this.pages[bookOrdinal >>> PAGE_BITS].set(bookOrdinal & PAGE_MASK, 0);
+        this.accrued[bookOrdinal >>> PAGE_BITS].set(bookOrdinal & PAGE_MASK, 0);
+    }
+    
+    /**
+     * Get the fine charged so far on a loan
+     * @param bookOrdinal Book ordinal
+     * @return Amount in minor units
+     */
+    long accruedFine(int bookOrdinal) {
+        return this.accrued[bookOrdinal >>> PAGE_BITS].get(bookOrdinal & PAGE_MASK);
+    }
+    
+    /**
+     * Set the fine charged so far on a loan
+     * @param bookOrdinal Book ordinal
+     * @param amount Amount in minor units
+     */
+    void setAccruedFine(int bookOrdinal, long amount) {
+        this.accrued[bookOrdinal >>> PAGE_BITS].set(bookOrdinal & PAGE_MASK, amount);
+    }
+    
+    private long entry(int bookOrdinal) {
+        return this.pages[bookOrdinal >>> PAGE_BITS].get(bookOrdinal & PAGE_MASK);
+    }
+    
+    private static AtomicLongArray[] grow(AtomicLongArray[] pages, int length) {
+        AtomicLongArray[] grown = Arrays.copyOf(pages, length);
+        for (int i = pages.length; i < length; i++) {
+            grown[i] = new AtomicLongArray(PAGE_SIZE);
+        }
+        return grown;
+    }
+}
@@ -3,16 +3,22 @@
  * Represents a member/user of the library
  */
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Member {
+    public static final int MAX_BOOKS = 5; // Loan limit per member
+    
     private String memberId;
     private String name;
     private String email;
     private String phoneNumber;
-    private List<Book> issuedBooks;
+    private Book[] loans; // Issued books; slots [0, loanCount) are in use
+    private int loanCount;
+    private final List<Book> issuedBooksView;
     private String membershipDate;
+    private int ordinal = -1; // Position in the library's member list
     
     /**
      * Constructor to create a new member
@@ -28,28 +34,45 @@ public class Member {
         this.email = email;
         this.phoneNumber = phoneNumber;
         this.membershipDate = membershipDate;
-        this.issuedBooks = new ArrayList<>();
+        this.loans = new Book[MAX_BOOKS];
+        this.issuedBooksView = new LoanView();
     }
     
     /**
-     * Add issued book to member's list
+     * Add issued book to member's list. Only Library calls this, when it
+     * issues or restores a loan, and records the returned slot in its loan
+     * table.
      * @param book The book to add
+     * @return Slot the book was stored in
      * @throws IllegalArgumentException if book is null
      */
-    public void addIssuedBook(Book book) {
+    int addIssuedBook(Book book) {
         if (book == null) {
             throw new IllegalArgumentException("Book cannot be null");
         }
-        this.issuedBooks.add(book);
+        if (this.loanCount == this.loans.length) {
+            this.loans = Arrays.copyOf(this.loans, this.loans.length * 2);
+        }
+        this.loans[this.loanCount] = book;
+        return this.loanCount++;
     }
     
     /**
-     * Remove returned book from member's list
-     * @param book The book to remove
-     * @return true if book was removed, false otherwise
+     * Remove returned book from member's list by moving the last loan into
+     * its slot. Only Library calls this, on a return, and updates the loan
+     * table entry of the book that moved.
+     * @param slot Slot of the returned book
+     * @return The book moved into the slot, or null if the slot was the last one
      */
-    public boolean removeIssuedBook(Book book) {
-        return this.issuedBooks.remove(book);
+    Book removeIssuedBook(int slot) {
+        int last = --this.loanCount;
+        Book moved = null;
+        if (slot != last) {
+            moved = this.loans[last];
+            this.loans[slot] = moved;
+        }
+        this.loans[last] = null;
+        return moved;
     }
     
     /**
@@ -57,15 +80,15 @@ public class Member {
      * @return Count of issued books
      */
     public int getIssuedBooksCount() {
-        return this.issuedBooks.size();
+        return this.loanCount;
     }
     
     /**
-     * Check if member has reached maximum book limit (usually 5 books)
+     * Check if member has reached maximum book limit (MAX_BOOKS)
      * @return true if at limit, false otherwise
      */
     public boolean hasReachedLimit() {
-        return this.issuedBooks.size() >= 5;
+        return this.loanCount >= MAX_BOOKS;
     }
     
     /**
@@ -73,11 +96,11 @@ public class Member {
      */
     public void displayIssuedBooks() {
         System.out.println("\n=== Books Issued to " + this.name + " ===");
-        if (this.issuedBooks.isEmpty()) {
+        if (this.loanCount == 0) {
             System.out.println("No books issued.");
         } else {
-            for (int i = 0; i < this.issuedBooks.size(); i++) {
-                Book book = this.issuedBooks.get(i);
+            for (int i = 0; i < this.loanCount; i++) {
+                Book book = this.loans[i];
                 System.out.println((i + 1) + ". " + book.getTitle() + " by " + book.getAuthor() + 
                                  " (ISBN: " + book.getIsbn() + ")");
             }
@@ -95,7 +118,7 @@ public class Member {
         System.out.println("Email: " + this.email);
         System.out.println("Phone: " + this.phoneNumber);
         System.out.println("Membership Date: " + this.membershipDate);
-        System.out.println("Books Issued: " + this.issuedBooks.size() + "/5");
+        System.out.println("Books Issued: " + this.loanCount + "/" + MAX_BOOKS);
         System.out.println("---------------------------");
     }
     
@@ -120,7 +143,39 @@ public class Member {
         return membershipDate;
     }
     
+    /**
+     * Get the books issued to this member
+     * @return Read-only live view, in no particular order; it reflects later
+     *         issues and returns, so hold the member's lock (or copy it)
+     *         when a stable list is needed
+     */
     public List<Book> getIssuedBooks() {
-        return new ArrayList<>(this.issuedBooks);
+        return issuedBooksView;
+    }
+    
+    int getOrdinal() {
+        return ordinal;
+    }
+    
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+    
+    /**
+     * Read-only list view over the loan array
+     */
+    private class LoanView extends AbstractList<Book> {
+        @Override
+        public Book get(int index) {
+            if (index < 0 || index >= loanCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + loanCount);
+            }
+            return loans[index];
+        }
+        
+        @Override
+        public int size() {
+            return loanCount;
+        }
     }
 }
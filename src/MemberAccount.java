@@ -0,0 +1,49 @@
+/**
+ * MemberAccount.java
+ * Immutable snapshot of a member's fine account
+ */
+
+public class MemberAccount {
+    private final String memberId;
+    private final long charged;
+    private final long paid;
+    
+    /**
+     * Constructor to create an account snapshot
+     * @param memberId ID of the member
+     * @param charged Total fines charged, in minor units
+     * @param paid Total paid, in minor units
+     */
+    public MemberAccount(String memberId, long charged, long paid) {
+        this.memberId = memberId;
+        this.charged = charged;
+        this.paid = paid;
+    }
+    
+    /**
+     * Get the amount owed
+     * @return Charged minus paid, in minor units
+     */
+    public long getBalance() {
+        return this.charged - this.paid;
+    }
+    
+    // Getters
+    public String getMemberId() {
+        return memberId;
+    }
+    
+    public long getCharged() {
+        return charged;
+    }
+    
+    public long getPaid() {
+        return paid;
+    }
+    
+    @Override
+    public String toString() {
+        return "Account " + memberId + ": charged " + FinePolicy.format(charged) + ", paid "
+                + FinePolicy.format(paid) + ", balance " + FinePolicy.format(getBalance());
+    }
+}
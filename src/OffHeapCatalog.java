@@ -0,0 +1,469 @@
+/**
+ * OffHeapCatalog.java
+ * Book records stored outside the Java heap, optionally in memory-mapped files
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Three regions, each a growing list of 16 MB chunks - direct buffers, or
+ * mappings of one file per region in the catalog directory:
+ *   slots.dat  64-byte header, then one 32-byte slot per book:
+ *              long textOffset, int idLength, int titleLength,
+ *              int authorLength, int isbnLength (-1 for null), int idHash, int spare
+ *   text.dat   UTF-8 bookId, title, author and isbn back to back; a record
+ *              never crosses a chunk boundary
+ *   ids.dat    open-addressing table of ordinal + 1 (0 = empty), probed by idHash
+ * Header: int magic, int version, int count, int idTableSize, long textEnd.
+ *
+ * The collector sees a few hundred buffers however many books there are.
+ * Book objects are built on demand and dropped by the caller, except for
+ * books on loan, which stay resident so every caller shares the object the
+ * Library updates. Loans are not stored here; they come back from the
+ * snapshot and journal like the rest of the library state.
+ *
+ * Adds are serialized; lookups never lock. A new record is written before
+ * the count is published and its ID entry last, so a reader that finds
+ * an entry always sees the complete record. The header count is written
+ * after that, so the files survive a crash of the process; flush() makes
+ * them survive a crash of the machine.
+ */
+
+public class OffHeapCatalog implements BookStore, AutoCloseable {
+    private static final int MAGIC = 0x4C494243; // "LIBC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MIN_ID_TABLE = 1 << 16;
+    private static final int ABSENT = -1;
+    
+    private final Path directory; // Null when memory-only
+    private final Region slots;
+    private final Region text;
+    private volatile IdTable ids;
+    private volatile int size;
+    private long textEnd;
+    private final Map<Integer, Book> resident = new ConcurrentHashMap<>(); // Books on loan
+    
+    private OffHeapCatalog(Path directory) throws IOException {
+        this.directory = directory;
+        this.slots = new Region(directory != null ? directory.resolve("slots.dat") : null);
+        this.text = new Region(directory != null ? directory.resolve("text.dat") : null);
+        this.slots.ensure(HEADER_SIZE);
+        ByteBuffer header = this.slots.chunk(0);
+        if (header.getInt(0) == 0) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            this.ids = new IdTable(new Region(directory != null ? directory.resolve("ids.dat") : null), MIN_ID_TABLE);
+            writeHeader();
+        } else {
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a catalog or unsupported version: " + directory);
+            }
+            this.size = header.getInt(8);
+            this.textEnd = header.getLong(16);
+            this.ids = new IdTable(new Region(directory.resolve("ids.dat")), header.getInt(12));
+        }
+    }
+    
+    /**
+     * Create an empty catalog in direct (off-heap) memory
+     * @return The catalog
+     */
+    public static OffHeapCatalog create() {
+        try {
+            return new OffHeapCatalog(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not reachable without files
+        }
+    }
+    
+    /**
+     * Open a catalog backed by memory-mapped files, creating it if the
+     * directory is empty; reopening does not read or copy the records
+     * @param directory Catalog directory
+     * @return The catalog
+     * @throws IOException if the files cannot be mapped or are not a catalog
+     */
+    public static OffHeapCatalog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new OffHeapCatalog(directory);
+    }
+    
+    @Override
+    public synchronized boolean add(Book book) {
+        String bookId = book.getBookId();
+        byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(id);
+        if (probe(this.ids, id, hash) != ABSENT) {
+            return false;
+        }
+        byte[] title = bytes(book.getTitle());
+        byte[] author = bytes(book.getAuthor());
+        byte[] isbn = bytes(book.getIsbn());
+        long length = (long) id.length + length(title) + length(author) + length(isbn);
+        if (length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Book " + bookId + " is too large for the off-heap catalog");
+        }
+        
+        // Start the record in a fresh chunk if it would straddle a boundary
+        long offset = this.textEnd;
+        if ((offset & (CHUNK_SIZE - 1)) + length > CHUNK_SIZE) {
+            offset = (offset | (CHUNK_SIZE - 1)) + 1;
+        }
+        this.text.ensure(offset + length);
+        ByteBuffer chunk = this.text.chunk(offset);
+        int position = Region.offset(offset);
+        position = put(chunk, position, id);
+        position = put(chunk, position, title);
+        position = put(chunk, position, author);
+        put(chunk, position, isbn);
+        
+        int ordinal = this.size;
+        long slot = HEADER_SIZE + (long) ordinal * SLOT_SIZE;
+        this.slots.ensure(slot + SLOT_SIZE);
+        ByteBuffer slots = this.slots.chunk(slot);
+        int at = Region.offset(slot);
+        slots.putLong(at, offset);
+        slots.putInt(at + 8, id.length);
+        slots.putInt(at + 12, title != null ? title.length : -1);
+        slots.putInt(at + 16, author != null ? author.length : -1);
+        slots.putInt(at + 20, isbn != null ? isbn.length : -1);
+        slots.putInt(at + 24, hash);
+        
+        this.textEnd = offset + length;
+        if ((ordinal + 1) * 2L > this.ids.size) {
+            rehash(this.ids.size * 2, ordinal);
+        }
+        this.size = ordinal + 1;
+        this.ids.insert(hash, ordinal);
+        writeHeader();
+        book.setOrdinal(ordinal);
+        if (!book.isAvailable()) {
+            this.resident.put(ordinal, book);
+        }
+        return true;
+    }
+    
+    @Override
+    public Book get(int ordinal) {
+        if (ordinal < 0 || ordinal >= this.size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of range 0.." + (this.size - 1));
+        }
+        Book book = this.resident.get(ordinal);
+        return book != null ? book : materialize(ordinal);
+    }
+    
+    @Override
+    public Book find(String bookId) {
+        if (bookId == null) {
+            return null;
+        }
+        byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+        int ordinal = probe(this.ids, id, hash(id));
+        return ordinal == ABSENT ? null : get(ordinal);
+    }
+    
+    @Override
+    public Book current(Book book) {
+        Book onLoan = this.resident.get(book.getOrdinal());
+        return onLoan != null ? onLoan : book;
+    }
+    
+    @Override
+    public void update(Book book) {
+        if (book.isAvailable()) {
+            this.resident.remove(book.getOrdinal());
+        } else {
+            this.resident.put(book.getOrdinal(), book);
+        }
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the memory held outside the heap (mapped or direct)
+     * @return Bytes reserved by all regions
+     */
+    public long getOffHeapBytes() {
+        return this.slots.capacity() + this.text.capacity() + this.ids.region.capacity();
+    }
+    
+    public boolean isMapped() {
+        return this.directory != null;
+    }
+    
+    /**
+     * Write mapped changes through to the files
+     */
+    public synchronized void flush() {
+        this.slots.force();
+        this.text.force();
+        this.ids.region.force();
+    }
+    
+    /**
+     * Flush and release the files; the catalog must not be used afterwards
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        this.slots.close();
+        this.text.close();
+        this.ids.region.close();
+    }
+    
+    /**
+     * Build a Book from a slot
+     * @param ordinal Book ordinal
+     * @return New, available Book
+     */
+    private Book materialize(int ordinal) {
+        long slot = HEADER_SIZE + (long) ordinal * SLOT_SIZE;
+        ByteBuffer slots = this.slots.chunk(slot);
+        int at = Region.offset(slot);
+        long offset = slots.getLong(at);
+        ByteBuffer chunk = this.text.chunk(offset);
+        int position = Region.offset(offset);
+        
+        int idLength = slots.getInt(at + 8);
+        String bookId = string(chunk, position, idLength);
+        position += idLength;
+        int titleLength = slots.getInt(at + 12);
+        String title = string(chunk, position, titleLength);
+        position += Math.max(0, titleLength);
+        int authorLength = slots.getInt(at + 16);
+        String author = string(chunk, position, authorLength);
+        position += Math.max(0, authorLength);
+        String isbn = string(chunk, position, slots.getInt(at + 20));
+        
+        Book book = new Book(bookId, title, author, isbn);
+        book.setOrdinal(ordinal);
+        return book;
+    }
+    
+    /**
+     * Look up an ID
+     * @param table ID table
+     * @param id UTF-8 ID bytes
+     * @param hash Hash of id
+     * @return Ordinal, or ABSENT
+     */
+    private int probe(IdTable table, byte[] id, int hash) {
+        int mask = table.size - 1;
+        int count = this.size;
+        for (int entry = hash & mask; ; entry = (entry + 1) & mask) {
+            int ordinal = table.get(entry) - 1;
+            if (ordinal < 0) {
+                return ABSENT;
+            }
+            if (ordinal < count && idEquals(ordinal, id, hash)) {
+                return ordinal;
+            }
+        }
+    }
+    
+    private boolean idEquals(int ordinal, byte[] id, int hash) {
+        long slot = HEADER_SIZE + (long) ordinal * SLOT_SIZE;
+        ByteBuffer slots = this.slots.chunk(slot);
+        int at = Region.offset(slot);
+        if (slots.getInt(at + 24) != hash || slots.getInt(at + 8) != id.length) {
+            return false;
+        }
+        long offset = slots.getLong(at);
+        ByteBuffer chunk = this.text.chunk(offset);
+        int position = Region.offset(offset);
+        for (int i = 0; i < id.length; i++) {
+            if (chunk.get(position + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Rebuild the ID table at a new size and switch readers to it
+     * @param tableSize Power-of-two number of entries
+     * @param count Number of records to index
+     */
+    private void rehash(int tableSize, int count) {
+        try {
+            Path next = this.directory != null ? this.directory.resolve("ids.dat.new") : null;
+            if (next != null) {
+                Files.deleteIfExists(next);
+            }
+            IdTable table = new IdTable(new Region(next), tableSize);
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                long slot = HEADER_SIZE + (long) ordinal * SLOT_SIZE;
+                table.insert(this.slots.chunk(slot).getInt(Region.offset(slot) + 24), ordinal);
+            }
+            if (next != null) {
+                table.region.force();
+                Files.move(next, this.directory.resolve("ids.dat"), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            IdTable previous = this.ids;
+            this.ids = table;
+            previous.region.close(); // Readers still probing it keep a valid mapping
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow the catalog ID table", e);
+        }
+    }
+    
+    private void writeHeader() {
+        ByteBuffer header = this.slots.chunk(0);
+        header.putInt(8, this.size);
+        header.putInt(12, this.ids.size);
+        header.putLong(16, this.textEnd);
+    }
+    
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+    
+    private static int put(ByteBuffer chunk, int position, byte[] bytes) {
+        if (bytes == null) {
+            return position;
+        }
+        for (byte b : bytes) {
+            chunk.put(position++, b);
+        }
+        return position;
+    }
+    
+    private static String string(ByteBuffer chunk, int position, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Open-addressing table of ordinal + 1; the entry count travels with
+     * the region so readers never pair a table with the wrong size
+     */
+    private static final class IdTable {
+        private final Region region;
+        private final int size; // Power of two
+        
+        IdTable(Region region, int size) {
+            region.ensure(4L * size);
+            this.region = region;
+            this.size = size;
+        }
+        
+        int get(int entry) {
+            long position = 4L * entry;
+            return this.region.chunk(position).getInt(Region.offset(position));
+        }
+        
+        void insert(int hash, int ordinal) {
+            int mask = this.size - 1;
+            int entry = hash & mask;
+            while (get(entry) != 0) {
+                entry = (entry + 1) & mask;
+            }
+            long position = 4L * entry;
+            this.region.chunk(position).putInt(Region.offset(position), ordinal + 1);
+        }
+    }
+    
+    /**
+     * A growable run of fixed-size chunks, mapped from a file or allocated
+     * as direct buffers. Chunks are never moved, so readers can hold on to
+     * the array they read.
+     */
+    private static final class Region {
+        private final FileChannel channel;
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        
+        Region(Path file) throws IOException {
+            this.channel = file != null ? FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE) : null;
+            if (this.channel != null) {
+                ensure(this.channel.size());
+            }
+        }
+        
+        /**
+         * Make sure the region covers a number of bytes
+         * @param bytes Required size
+         */
+        void ensure(long bytes) {
+            ByteBuffer[] current = this.chunks;
+            int needed = (int) ((bytes + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+            if (needed <= current.length) {
+                return;
+            }
+            ByteBuffer[] grown = Arrays.copyOf(current, needed);
+            try {
+                for (int i = current.length; i < needed; i++) {
+                    grown[i] = this.channel != null
+                            ? this.channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_BITS, CHUNK_SIZE)
+                            : ByteBuffer.allocateDirect(CHUNK_SIZE);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map catalog file", e);
+            }
+            this.chunks = grown;
+        }
+        
+        ByteBuffer chunk(long position) {
+            return this.chunks[(int) (position >>> CHUNK_BITS)];
+        }
+        
+        static int offset(long position) {
+            return (int) position & (CHUNK_SIZE - 1);
+        }
+        
+        long capacity() {
+            return (long) this.chunks.length << CHUNK_BITS;
+        }
+        
+        void force() {
+            for (ByteBuffer chunk : this.chunks) {
+                if (chunk instanceof MappedByteBuffer) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+            }
+        }
+        
+        void close() throws IOException {
+            if (this.channel != null) {
+                force();
+                this.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * OperationStats.java
+ * Immutable snapshot of the metrics for one library operation
+ */
+
+public class OperationStats {
+    private final String operation;
+    private final long successCount;
+    private final long failureCount;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+    
+    /**
+     * Constructor to create an operation snapshot
+     * @param operation Operation name
+     * @param successCount Completed calls
+     * @param failureCount Calls that threw
+     * @param latencies Latencies of completed calls
+     */
+    public OperationStats(String operation, long successCount, long failureCount, LatencyHistogram latencies) {
+        this.operation = operation;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.meanMicros = latencies.getMean() / 1000.0;
+        this.p50Micros = latencies.getPercentile(50) / 1000.0;
+        this.p99Micros = latencies.getPercentile(99) / 1000.0;
+        this.p999Micros = latencies.getPercentile(99.9) / 1000.0;
+        this.maxMicros = latencies.getMax() / 1000.0;
+    }
+    
+    // Getters
+    public String getOperation() {
+        return operation;
+    }
+    
+    public long getSuccessCount() {
+        return successCount;
+    }
+    
+    public long getFailureCount() {
+        return failureCount;
+    }
+    
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+    
+    public double getP50Micros() {
+        return p50Micros;
+    }
+    
+    public double getP99Micros() {
+        return p99Micros;
+    }
+    
+    public double getP999Micros() {
+        return p999Micros;
+    }
+    
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%-12s ok=%d failed=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                operation, successCount, failureCount, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * OverdueSink.java
+ * Receives overdue notifications from an OverdueSweeper
+ */
+
+import java.time.LocalDate;
+
+public interface OverdueSink {
+    /**
+     * Called once per overdue loan on every sweep
+     * @param loan The overdue loan
+     * @param asOf Day of the sweep
+     */
+    void overdue(Loan loan, LocalDate asOf);
+}
@@ -0,0 +1,102 @@
+/**
+ * OverdueSweeper.java
+ * Daily sweep that charges late fines, expires uncollected holds and reports
+ * overdue loans to a sink
+ */
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class OverdueSweeper {
+    private final Library library;
+    private final OverdueSink sink;
+    private ScheduledExecutorService scheduler;
+    private LocalTime runAt;
+    
+    /**
+     * Constructor to create a sweeper
+     * @param library Library whose loans are checked
+     * @param sink Receives one notification per overdue loan
+     */
+    public OverdueSweeper(Library library, OverdueSink sink) {
+        if (library == null || sink == null) {
+            throw new IllegalArgumentException("Library and sink cannot be null");
+        }
+        this.library = library;
+        this.sink = sink;
+    }
+    
+    /**
+     * Charge fines up to a day and expire holds not picked up in time, then
+     * notify the sink of every loan overdue
+     * @param asOf Day of the sweep; loans due before it are overdue
+     * @return Number of overdue loans reported
+     */
+    public int sweep(LocalDate asOf) {
+        this.library.accrueFines(asOf);
+        this.library.expireHolds(asOf);
+        List<Loan> overdue = this.library.findOverdue(asOf);
+        for (Loan loan : overdue) {
+            this.sink.overdue(loan, asOf);
+        }
+        return overdue.size();
+    }
+    
+    /**
+     * Run a sweep every day at a fixed local time on a background thread
+     * @param runAt Time of day to sweep
+     * @throws IllegalStateException if the sweeper is already running
+     */
+    public synchronized void start(LocalTime runAt) {
+        if (this.scheduler != null) {
+            throw new IllegalStateException("Sweeper is already running");
+        }
+        this.runAt = runAt;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "overdue-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNext();
+    }
+    
+    /**
+     * Stop the daily sweep
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+    
+    /**
+     * Schedule the next sweep; rescheduling after each run (rather than at
+     * a fixed 24 h rate) keeps the wall-clock time across DST changes
+     */
+    private synchronized void scheduleNext() {
+        if (this.scheduler == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(this.runAt);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        this.scheduler.schedule(() -> {
+            try {
+                sweep(LocalDate.now());
+            } catch (RuntimeException e) {
+                System.out.println("✗ Overdue sweep failed: " + e.getMessage());
+            } finally {
+                scheduleNext();
+            }
+        }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Page.java
+ * One page of a cursor-based listing
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+public class Page<T> {
+    public static final int END = -1;
+    
+    private final List<T> items;
+    private final int nextCursor;
+    
+    /**
+     * Constructor to create a page
+     * @param items Items on this page
+     * @param nextCursor Cursor to pass for the next page, or END if this is the last page
+     */
+    public Page(List<T> items, int nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+    
+    /**
+     * Check whether more pages follow
+     * @return true if getNextCursor() can be used to fetch another page
+     */
+    public boolean hasNext() {
+        return this.nextCursor != END;
+    }
+    
+    // Getters
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public int getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,430 @@
+/**
+ * ReplicationFollower.java
+ * Read replica that applies a leader's journal as it is shipped
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * The follower keeps its own copy of the leader's journal. Each batch is
+ * checked, appended to the copy and fsynced, then applied to the local
+ * library and acknowledged. After a restart the copy is replayed and the
+ * follower asks the leader for the records after it, so it catches up from
+ * where it stopped instead of starting over; a lost connection is retried
+ * the same way.
+ *
+ * The library serves reads while batches are applied, but must not be
+ * changed except through replication until the follower is promoted.
+ * Promotion stops replication and attaches the copy as the library's
+ * journal, so the replica carries on as a leader with the same history.
+ */
+
+public class ReplicationFollower implements AutoCloseable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long RETRY_MILLIS = 1000;
+    
+    private final Library library;
+    private final Path path;
+    private final FileChannel channel;
+    private final long flushIntervalMillis;
+    private final int maxBatchSize;
+    private final Object monitor = new Object();
+    private final CRC32 crc = new CRC32();
+    private Thread receiver;
+    private volatile Socket socket;
+    private volatile boolean stopping;
+    private volatile boolean connected;
+    private volatile long appliedSeq;
+    private volatile long leaderSeq;
+    private volatile long lagMillis;
+    private volatile long lastContactMillis;
+    private volatile long bytesReceived; // Compressed bytes on the wire
+    private volatile long bytesApplied;  // Journal bytes
+    private volatile String failure;
+    private volatile LibraryJournal journal; // Set on promotion
+    
+    private ReplicationFollower(Library library, Path path, FileChannel channel, long records,
+            long flushIntervalMillis, int maxBatchSize) {
+        this.library = library;
+        this.path = path;
+        this.channel = channel;
+        this.appliedSeq = records;
+        this.leaderSeq = records;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+    
+    /**
+     * Open a replica's journal copy and replay it into the library; call
+     * start() to follow a leader
+     * @param path Local copy of the leader's journal (created if missing)
+     * @param library Library to keep in step with the leader; should be empty
+     * @param flushIntervalMillis Journal flush interval once promoted
+     * @param maxBatchSize Journal batch size once promoted
+     * @return The follower
+     * @throws IOException if the copy cannot be read or opened
+     */
+    public static ReplicationFollower open(Path path, Library library, long flushIntervalMillis, int maxBatchSize)
+            throws IOException {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        if (flushIntervalMillis <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Flush interval and batch size must be positive");
+        }
+        LibraryJournal.Scan scan = Files.exists(path) ? LibraryJournal.scan(path, library) : new LibraryJournal.Scan();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > scan.length) {
+            channel.truncate(scan.length);
+            channel.force(true);
+        }
+        channel.position(scan.length);
+        return new ReplicationFollower(library, path, channel, scan.records, flushIntervalMillis, maxBatchSize);
+    }
+    
+    /**
+     * Start following a leader on a background thread
+     * @param host Leader host
+     * @param port Leader replication port
+     * @throws IllegalStateException if already started or promoted
+     */
+    public synchronized void start(String host, int port) {
+        if (this.receiver != null || this.journal != null) {
+            throw new IllegalStateException("Follower already started");
+        }
+        InetSocketAddress leader = new InetSocketAddress(host, port);
+        this.receiver = new Thread(() -> follow(leader), "library-replica");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+    
+    /**
+     * Stop replicating and make the library writable, journaling to the
+     * copy of the leader's journal
+     * @return The library's new journal; the caller closes it
+     * @throws IOException if the journal cannot be opened
+     * @throws IllegalStateException if already promoted
+     */
+    public synchronized LibraryJournal promote() throws IOException {
+        if (this.journal != null) {
+            throw new IllegalStateException("Follower already promoted");
+        }
+        stopFollowing();
+        this.channel.close();
+        this.journal = LibraryJournal.attach(this.path, this.library, this.flushIntervalMillis, this.maxBatchSize);
+        return this.journal;
+    }
+    
+    /**
+     * Stop replicating; the journal returned by promote() stays open
+     * @throws IOException if the journal copy cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        stopFollowing();
+        this.channel.close();
+    }
+    
+    /**
+     * Disconnect and wait for the receiver to finish the batch it is applying
+     */
+    private void stopFollowing() {
+        this.stopping = true;
+        Socket current = this.socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+        synchronized (this.monitor) {
+            this.monitor.notifyAll();
+        }
+        // Not interrupted: an interrupt would close the journal copy mid-write
+        if (this.receiver != null) {
+            try {
+                this.receiver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Receiver loop: connect, catch up, apply batches; reconnect on failure
+     */
+    private void follow(InetSocketAddress leader) {
+        while (!this.stopping) {
+            try (Socket connection = new Socket()) {
+                this.socket = connection;
+                if (this.stopping) {
+                    return;
+                }
+                connection.connect(leader, CONNECT_TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                out.writeInt(ReplicationLeader.MAGIC);
+                out.writeInt(ReplicationLeader.VERSION);
+                out.writeLong(this.appliedSeq);
+                out.flush();
+                this.connected = true;
+                receive(in, out);
+            } catch (IOException e) {
+                // Leader unreachable or connection lost; retry from the applied sequence
+            } catch (RuntimeException e) {
+                // The leader refused us or a record did not apply: the histories differ
+                this.failure = e.getMessage();
+                return;
+            } finally {
+                this.connected = false;
+                this.socket = null;
+            }
+            synchronized (this.monitor) {
+                if (!this.stopping) {
+                    try {
+                        this.monitor.wait(RETRY_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+    
+    private void receive(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] compressed = new byte[4096];
+        byte[] records = new byte[1 << 16];
+        Inflater inflater = new Inflater();
+        try {
+            while (true) {
+                byte type = in.readByte();
+                this.lastContactMillis = System.currentTimeMillis();
+                if (type == ReplicationLeader.HEARTBEAT) {
+                    this.leaderSeq = in.readLong();
+                    in.readLong();
+                    if (this.appliedSeq >= this.leaderSeq) {
+                        this.lagMillis = 0;
+                    }
+                    continue;
+                }
+                if (type == ReplicationLeader.ERROR) {
+                    throw new IllegalStateException("Leader refused replication: " + in.readUTF());
+                }
+                if (type != ReplicationLeader.BATCH) {
+                    throw new IOException("Unknown replication frame " + type);
+                }
+                
+                long firstSeq = in.readLong();
+                int count = in.readInt();
+                long leaderAt = in.readLong();
+                long sentAt = in.readLong();
+                int rawLength = in.readInt();
+                int compressedLength = in.readInt();
+                if (firstSeq != this.appliedSeq) {
+                    throw new IOException("Expected record " + this.appliedSeq + " but the leader sent " + firstSeq);
+                }
+                if (rawLength <= 0 || compressedLength <= 0) {
+                    throw new IOException("Malformed replication batch");
+                }
+                if (compressed.length < compressedLength) {
+                    compressed = new byte[Math.max(compressedLength, compressed.length * 2)];
+                }
+                if (records.length <= rawLength) {
+                    records = new byte[Math.max(rawLength + 1, records.length * 2)];
+                }
+                in.readFully(compressed, 0, compressedLength);
+                inflate(inflater, compressed, compressedLength, records, rawLength);
+                
+                applyBatch(records, rawLength, count);
+                this.appliedSeq = firstSeq + count;
+                this.leaderSeq = Math.max(this.leaderSeq, leaderAt);
+                this.lagMillis = this.appliedSeq >= this.leaderSeq ? 0 : System.currentTimeMillis() - sentAt;
+                this.bytesReceived += ReplicationLeader.BATCH_HEADER_SIZE + compressedLength;
+                this.bytesApplied += rawLength;
+                
+                out.writeLong(this.appliedSeq);
+                out.flush();
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Inflate one batch from the connection's deflate stream. The leader
+     * sync-flushes every batch, so all of its input is consumed here and
+     * the stream continues with the next batch.
+     */
+    private static void inflate(Inflater inflater, byte[] compressed, int compressedLength, byte[] records,
+            int rawLength) throws IOException {
+        inflater.setInput(compressed, 0, compressedLength);
+        int inflated = 0;
+        try {
+            while (inflated < rawLength || inflater.getRemaining() > 0) {
+                int n = inflater.inflate(records, inflated, records.length - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+                if (inflated > rawLength) {
+                    throw new IOException("Replication batch is longer than announced");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt replication batch", e);
+        }
+        if (inflated < rawLength) {
+            throw new IOException("Truncated replication batch");
+        }
+    }
+    
+    /**
+     * Check a batch, append it to the journal copy and apply it
+     * @param records Journal records
+     * @param length Bytes of records
+     * @param count Number of records the leader sent
+     * @throws IOException if the batch is malformed or cannot be written
+     */
+    private void applyBatch(byte[] records, int length, int count) throws IOException {
+        // Check every record before keeping any of them
+        ByteBuffer batch = ByteBuffer.wrap(records, 0, length);
+        int offset = 0;
+        int found = 0;
+        while (offset < length) {
+            int recordLength = offset + LibraryJournal.HEADER_SIZE <= length ? batch.getInt(offset) : -1;
+            int payload = offset + LibraryJournal.HEADER_SIZE;
+            if (recordLength <= 0 || payload + recordLength > length) {
+                throw new IOException("Malformed replication batch");
+            }
+            this.crc.reset();
+            this.crc.update(records, payload, recordLength);
+            if ((int) this.crc.getValue() != batch.getInt(offset + 4)) {
+                throw new IOException("Checksum mismatch in replication batch");
+            }
+            offset = payload + recordLength;
+            found++;
+        }
+        if (found != count) {
+            throw new IOException("Replication batch has " + found + " records, expected " + count);
+        }
+        
+        // Durable in the copy first, so a crash here is repaired by replay on restart
+        while (batch.hasRemaining()) {
+            this.channel.write(batch);
+        }
+        this.channel.force(false);
+        
+        offset = 0;
+        while (offset < length) {
+            int recordLength = batch.getInt(offset);
+            int payload = offset + LibraryJournal.HEADER_SIZE;
+            try {
+                LibraryJournal.apply(ByteBuffer.wrap(records, payload, recordLength), this.library);
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            offset = payload + recordLength;
+        }
+    }
+    
+    public Library getLibrary() {
+        return library;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Check whether the replica has been promoted and accepts writes
+     * @return true after promote()
+     */
+    public boolean isPromoted() {
+        return journal != null;
+    }
+    
+    /**
+     * Get the journal the library writes to after promotion
+     * @return The journal, or null while following
+     */
+    public LibraryJournal getJournal() {
+        return journal;
+    }
+    
+    public boolean isConnected() {
+        return connected;
+    }
+    
+    /**
+     * Get the number of the leader's records applied here
+     * @return Sequence number of the last applied record
+     */
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+    
+    /**
+     * Get the leader's durable sequence as last reported
+     * @return Sequence number of the leader's last durable record
+     */
+    public long getLeaderSeq() {
+        return leaderSeq;
+    }
+    
+    /**
+     * Get how many records the replica is behind
+     * @return Records the leader has reported but the replica has not applied
+     */
+    public long getLagRecords() {
+        return Math.max(0, leaderSeq - appliedSeq);
+    }
+    
+    /**
+     * Get how old the newest applied batch was when applied, while behind
+     * @return Milliseconds, 0 when caught up
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+    
+    /**
+     * Get when the leader was last heard from
+     * @return Epoch milliseconds, 0 if never
+     */
+    public long getLastContactMillis() {
+        return lastContactMillis;
+    }
+    
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+    
+    public long getBytesApplied() {
+        return bytesApplied;
+    }
+    
+    /**
+     * Get why replication stopped for good
+     * @return The error, or null while replicating normally
+     */
+    public String getFailure() {
+        return failure;
+    }
+}
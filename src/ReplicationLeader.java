@@ -0,0 +1,416 @@
+/**
+ * ReplicationLeader.java
+ * Ships a library's journal to read replicas over TCP
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+
+/*
+ * Log shipping: each follower connection reads the leader's journal file
+ * on its own thread. The follower says how many records it already has;
+ * the leader skips that many and sends the rest, then keeps tailing the
+ * file as group commits make new records durable. Only fsynced records
+ * are shipped, so a replica never holds a change the leader could lose in
+ * a crash. Records travel in their journal layout (header, checksum,
+ * payload), so the follower appends them to its own copy unchanged.
+ *
+ * Protocol (big-endian):
+ *   follower -> leader: int MAGIC, int VERSION, long fromSeq, then the
+ *                       follower's applied sequence after every batch
+ *   leader -> follower: frames starting with a type byte
+ *     BATCH      long firstSeq, int records, long leaderSeq, long sentAt,
+ *                int rawLength, int compressedLength, deflated records
+ *                (one deflate stream per connection, sync-flushed at the
+ *                end of every batch, so small batches share a dictionary)
+ *     HEARTBEAT  long leaderSeq, long sentAt (when idle)
+ *     ERROR      UTF message; the leader then closes the connection
+ */
+
+public class ReplicationLeader implements AutoCloseable {
+    static final int MAGIC = 0x4C49424C; // "LIBL"
+    static final int VERSION = 2;
+    static final byte BATCH = 1;
+    static final byte HEARTBEAT = 2;
+    static final byte ERROR = 3;
+    static final int BATCH_HEADER_SIZE = 1 + 8 + 4 + 8 + 8 + 4 + 4;
+    
+    public static final int DEFAULT_MAX_BATCH_BYTES = 256 * 1024;
+    public static final long DEFAULT_HEARTBEAT_MILLIS = 1000;
+    
+    private final LibraryJournal journal;
+    private final ServerSocket server;
+    private final int maxBatchBytes;
+    private final long heartbeatMillis;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private volatile boolean closed;
+    
+    /**
+     * Constructor to create a leader with default batching; call start() to
+     * accept followers
+     * @param journal The library's open journal
+     * @param port TCP port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ReplicationLeader(LibraryJournal journal, int port) throws IOException {
+        this(journal, port, DEFAULT_MAX_BATCH_BYTES, DEFAULT_HEARTBEAT_MILLIS);
+    }
+    
+    /**
+     * Constructor to create a leader bound to a port; call start() to
+     * accept followers
+     * @param journal The library's open journal
+     * @param port TCP port, or 0 for any free port
+     * @param maxBatchBytes Most journal bytes per batch (a larger record is sent on its own)
+     * @param heartbeatMillis Longest silence on an idle connection
+     * @throws IOException if the port cannot be bound
+     * @throws IllegalArgumentException if journal is null or a limit is not positive
+     */
+    public ReplicationLeader(LibraryJournal journal, int port, int maxBatchBytes, long heartbeatMillis)
+            throws IOException {
+        if (journal == null) {
+            throw new IllegalArgumentException("Journal cannot be null");
+        }
+        if (maxBatchBytes <= 0 || heartbeatMillis <= 0) {
+            throw new IllegalArgumentException("Batch size and heartbeat interval must be positive");
+        }
+        this.journal = journal;
+        this.maxBatchBytes = maxBatchBytes;
+        this.heartbeatMillis = heartbeatMillis;
+        this.server = new ServerSocket(port);
+        this.acceptor = new Thread(this::acceptFollowers, "library-replication");
+        this.acceptor.setDaemon(true);
+    }
+    
+    /**
+     * Start accepting followers
+     */
+    public void start() {
+        this.acceptor.start();
+        System.out.println("✓ Replicating journal " + this.journal.getPath() + " on port " + getPort());
+    }
+    
+    /**
+     * Stop accepting followers and disconnect the connected ones. Returns
+     * once the port is released, so a new leader can bind it straight away
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Session session : this.sessions) {
+            session.disconnect();
+        }
+        try {
+            // The socket is only released when the acceptor leaves accept()
+            this.acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Get the bound port
+     * @return Port number
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+    
+    /**
+     * Get the number of records followers can be sent
+     * @return Sequence number of the last durable journal record
+     */
+    public long getDurableSeq() {
+        return this.journal.getDurableSeq();
+    }
+    
+    /**
+     * Get the progress of every connected follower
+     * @return One status per connection
+     */
+    public List<ReplicaStatus> getReplicas() {
+        long durable = this.journal.getDurableSeq();
+        List<ReplicaStatus> replicas = new ArrayList<>();
+        for (Session session : this.sessions) {
+            replicas.add(new ReplicaStatus(session.address, session.ackedSeq, session.shippedSeq,
+                    Math.max(0, durable - session.ackedSeq), session.bytesShipped, session.bytesSent));
+        }
+        return replicas;
+    }
+    
+    private void acceptFollowers() {
+        while (!this.closed) {
+            Socket socket;
+            try {
+                socket = this.server.accept();
+            } catch (IOException e) {
+                continue; // Closed, or a failed handshake at the TCP level
+            }
+            Session session = new Session(socket);
+            this.sessions.add(session);
+            session.start();
+        }
+    }
+    
+    /**
+     * Read journal bytes from a file position into a buffer
+     * @param file Journal file
+     * @param buffer Filled from its position up to its limit or the end of the file
+     * @param position File position of the buffer's start
+     * @throws IOException if the file cannot be read
+     */
+    private static void fill(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining() && file.read(buffer, position + buffer.position()) > 0) {
+            // Keep reading until the buffer is full or the file ends
+        }
+    }
+    
+    /**
+     * One follower connection
+     */
+    private class Session {
+        private final Socket socket;
+        private final String address;
+        private final Thread sender;
+        private volatile long ackedSeq;
+        private volatile long shippedSeq;
+        private volatile long bytesShipped; // Journal bytes
+        private volatile long bytesSent;    // Compressed bytes on the wire
+        
+        Session(Socket socket) {
+            this.socket = socket;
+            this.address = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+            this.sender = new Thread(this::run, "library-replication-" + this.address);
+            this.sender.setDaemon(true);
+        }
+        
+        void start() {
+            this.sender.start();
+        }
+        
+        void disconnect() {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            this.sender.interrupt();
+        }
+        
+        private void run() {
+            try (Socket connection = this.socket;
+                    FileChannel file = FileChannel.open(journal.getPath(), StandardOpenOption.READ)) {
+                connection.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    refuse(out, "Unsupported replication protocol");
+                    return;
+                }
+                long fromSeq = in.readLong();
+                long durable = journal.getDurableSeq();
+                if (fromSeq < 0 || fromSeq > durable) {
+                    // The follower has records this journal never made durable: its history diverged
+                    refuse(out, "Follower has " + fromSeq + " records but the leader has " + durable);
+                    return;
+                }
+                this.ackedSeq = fromSeq;
+                this.shippedSeq = fromSeq;
+                
+                Thread acks = new Thread(() -> readAcks(in), this.sender.getName() + "-acks");
+                acks.setDaemon(true);
+                acks.start();
+                ship(file, out, fromSeq);
+            } catch (IOException | UncheckedIOException | InterruptedException e) {
+                // Follower gone, leader closing, or the journal failed; the follower reconnects
+            } finally {
+                sessions.remove(this);
+            }
+        }
+        
+        private void refuse(DataOutputStream out, String message) throws IOException {
+            out.writeByte(ERROR);
+            out.writeUTF(message);
+            out.flush();
+        }
+        
+        private void readAcks(DataInputStream in) {
+            try {
+                while (true) {
+                    this.ackedSeq = in.readLong();
+                }
+            } catch (IOException e) {
+                // Connection closed
+            }
+        }
+        
+        /**
+         * Skip the records the follower has, then send batches as records
+         * become durable
+         */
+        private void ship(FileChannel file, DataOutputStream out, long fromSeq)
+                throws IOException, InterruptedException {
+            long seq = 0;
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(LibraryJournal.HEADER_SIZE);
+            while (seq < fromSeq) {
+                header.clear();
+                fill(file, header, position);
+                position += LibraryJournal.HEADER_SIZE + header.getInt(0);
+                seq++;
+            }
+            
+            int batchLimit = Math.max(maxBatchBytes, LibraryJournal.HEADER_SIZE);
+            ByteBuffer chunk = ByteBuffer.allocate(Math.max(batchLimit,
+                    LibraryJournal.HEADER_SIZE + LibraryJournal.MAX_RECORD_SIZE));
+            byte[] compressed = new byte[4096];
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                while (!closed) {
+                    long durable = journal.awaitDurableAfter(seq, heartbeatMillis);
+                    if (durable == seq) {
+                        out.writeByte(HEARTBEAT);
+                        out.writeLong(durable);
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        continue;
+                    }
+                    
+                    // Take whole durable records up to the batch limit
+                    chunk.clear();
+                    chunk.limit(batchLimit);
+                    fill(file, chunk, position);
+                    int end = 0;
+                    int records = 0;
+                    while (seq + records < durable && end + LibraryJournal.HEADER_SIZE <= chunk.position()) {
+                        int next = end + LibraryJournal.HEADER_SIZE + chunk.getInt(end);
+                        if (next > chunk.position()) {
+                            if (records > 0) {
+                                break;
+                            }
+                            chunk.limit(next); // A record larger than a batch goes on its own
+                            fill(file, chunk, position);
+                            if (next > chunk.position()) {
+                                throw new IOException("Journal ends inside a durable record");
+                            }
+                        }
+                        end = next;
+                        records++;
+                    }
+                    
+                    // Continue the connection's stream: a batch of one or two records compresses
+                    // against the records sent before it instead of growing on its own
+                    deflater.setInput(chunk.array(), 0, end);
+                    int compressedLength = 0;
+                    while (true) {
+                        compressedLength += deflater.deflate(compressed, compressedLength,
+                                compressed.length - compressedLength, Deflater.SYNC_FLUSH);
+                        if (compressedLength < compressed.length) {
+                            break; // Input consumed and flushed to a byte boundary
+                        }
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    
+                    out.writeByte(BATCH);
+                    out.writeLong(seq);
+                    out.writeInt(records);
+                    out.writeLong(durable);
+                    out.writeLong(System.currentTimeMillis());
+                    out.writeInt(end);
+                    out.writeInt(compressedLength);
+                    out.write(compressed, 0, compressedLength);
+                    out.flush();
+                    
+                    seq += records;
+                    position += end;
+                    this.shippedSeq = seq;
+                    this.bytesShipped += end;
+                    this.bytesSent += BATCH_HEADER_SIZE + compressedLength;
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+    
+    /**
+     * A follower's progress as seen by the leader
+     */
+    public static class ReplicaStatus {
+        private final String address;
+        private final long ackedSeq;
+        private final long shippedSeq;
+        private final long lagRecords;
+        private final long bytesShipped;
+        private final long bytesSent;
+        
+        ReplicaStatus(String address, long ackedSeq, long shippedSeq, long lagRecords, long bytesShipped,
+                long bytesSent) {
+            this.address = address;
+            this.ackedSeq = ackedSeq;
+            this.shippedSeq = shippedSeq;
+            this.lagRecords = lagRecords;
+            this.bytesShipped = bytesShipped;
+            this.bytesSent = bytesSent;
+        }
+        
+        public String getAddress() {
+            return address;
+        }
+        
+        /**
+         * Get the number of records the follower has applied
+         * @return Sequence number of its last applied record
+         */
+        public long getAckedSeq() {
+            return ackedSeq;
+        }
+        
+        public long getShippedSeq() {
+            return shippedSeq;
+        }
+        
+        /**
+         * Get how far the follower is behind the leader
+         * @return Durable records not yet applied by the follower
+         */
+        public long getLagRecords() {
+            return lagRecords;
+        }
+        
+        public long getBytesShipped() {
+            return bytesShipped;
+        }
+        
+        public long getBytesSent() {
+            return bytesSent;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s at record %d (%d behind), %,d journal bytes sent as %,d", this.address,
+                    this.ackedSeq, this.lagRecords, this.bytesShipped, this.bytesSent);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * ReportCache.java
+ * Rendered listing segments, invalidated from library events
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Each listing is cut into segments of SEGMENT_SIZE catalog (or member)
+ * ordinals, and a segment's rows are cached as rendered text without row
+ * numbers; the numbers are added while writing, so a book changing status
+ * does not shift the cached text of the segments after it. An issue or
+ * return therefore invalidates one segment of the all-books, available and
+ * issued listings and one segment of the member listing. Books and members
+ * added later only extend the tail: a segment also records how many
+ * ordinals it covers, and one that covers fewer than now exist is stale.
+ *
+ * Segments are kept in least-recently-used order and evicted once their
+ * estimated size passes the budget. A segment rendered while the rows it
+ * covers were changing is not stored: invalidation advances a stamp that
+ * the renderer read before it started.
+ */
+
+public class ReportCache implements LibraryEventListener {
+    /**
+     * The cached listings
+     */
+    public enum Report {
+        ALL_BOOKS,
+        AVAILABLE_BOOKS,
+        ISSUED_BOOKS,
+        ALL_MEMBERS
+    }
+    
+    public static final int SEGMENT_SIZE = 512; // Ordinals per segment
+    private static final int STAMP_STRIPES = 4096; // Must be a power of two
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    
+    private final long maxBytes;
+    private final LinkedHashMap<Long, Segment> segments = new LinkedHashMap<>(256, 0.75f, true); // Guarded by this
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+    
+    /**
+     * Constructor to create a cache; attach it with Library.setReportCache
+     * @param maxBytes Estimated memory the rendered segments may use
+     * @throws IllegalArgumentException if maxBytes is not positive
+     */
+    public ReportCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Drop the segments an issue or return changed (the library calls this)
+     * @param event The event
+     */
+    @Override
+    public void onEvent(LibraryEvent event) {
+        switch (event.getType()) {
+            case BOOK_ISSUED:
+            case BOOK_RETURNED: {
+                int bookSegment = event.getBookOrdinal() / SEGMENT_SIZE;
+                int memberSegment = event.getMemberOrdinal() / SEGMENT_SIZE;
+                synchronized (this) {
+                    remove(key(Report.ALL_BOOKS, bookSegment));
+                    remove(key(Report.AVAILABLE_BOOKS, bookSegment));
+                    remove(key(Report.ISSUED_BOOKS, bookSegment));
+                    remove(key(Report.ALL_MEMBERS, memberSegment));
+                }
+                break;
+            }
+            default:
+                break; // Additions only extend the tail segment, which checks its coverage
+        }
+    }
+    
+    /**
+     * Drop every segment, e.g. after changes that publish no events
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            this.stamps.incrementAndGet(i);
+        }
+        this.invalidations += this.segments.size();
+        this.segments.clear();
+        this.usedBytes = 0;
+    }
+    
+    /**
+     * Get a cached segment that covers every ordinal it should
+     * @param report The listing
+     * @param segment Segment number
+     * @param end Ordinal the segment must cover up to (exclusive)
+     * @return The segment, or null if it must be rendered
+     */
+    synchronized Segment get(Report report, int segment, int end) {
+        Segment cached = this.segments.get(key(report, segment));
+        if (cached != null && cached.end >= end) {
+            this.hits++;
+            return cached;
+        }
+        this.misses++;
+        return null;
+    }
+    
+    /**
+     * Read a segment's stamp before rendering it
+     * @param report The listing
+     * @param segment Segment number
+     * @return Stamp to pass to put
+     */
+    long stamp(Report report, int segment) {
+        return this.stamps.get(stripe(key(report, segment)));
+    }
+    
+    /**
+     * Store a rendered segment unless it was invalidated while rendering
+     * @param report The listing
+     * @param segment Segment number
+     * @param stamp Stamp read before rendering
+     * @param rendered The segment
+     */
+    synchronized void put(Report report, int segment, long stamp, Segment rendered) {
+        long key = key(report, segment);
+        if (this.stamps.get(stripe(key)) != stamp || rendered.bytes() > this.maxBytes) {
+            return;
+        }
+        Segment previous = this.segments.put(key, rendered);
+        if (previous != null) {
+            this.usedBytes -= previous.bytes();
+        }
+        this.usedBytes += rendered.bytes();
+        Iterator<Map.Entry<Long, Segment>> eldest = this.segments.entrySet().iterator();
+        while (this.usedBytes > this.maxBytes) {
+            this.usedBytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+    
+    private void remove(long key) {
+        this.stamps.incrementAndGet(stripe(key));
+        Segment removed = this.segments.remove(key);
+        if (removed != null) {
+            this.usedBytes -= removed.bytes();
+            this.invalidations++;
+        }
+    }
+    
+    private static long key(Report report, int segment) {
+        return (long) report.ordinal() << 32 | segment;
+    }
+    
+    private static int stripe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (STAMP_STRIPES - 1);
+    }
+    
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Get the number of cached segments dropped because their rows changed
+     * @return Invalidated segments
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+    
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * Get the estimated memory held by cached segments
+     * @return Bytes, counting two per character plus a fixed overhead per segment
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("%d segments, %,d of %,d bytes, %d hits, %d misses, %d invalidated, %d evicted",
+                this.segments.size(), this.usedBytes, this.maxBytes, this.hits, this.misses, this.invalidations,
+                this.evictions);
+    }
+    
+    /**
+     * The rows of one segment, each ending in a newline, without row numbers
+     */
+    static final class Segment {
+        final String rows;
+        final int end; // Ordinals covered, exclusive
+        
+        Segment(String rows, int end) {
+            this.rows = rows;
+            this.end = end;
+        }
+        
+        long bytes() {
+            return 2L * this.rows.length() + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+}
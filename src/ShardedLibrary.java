@@ -0,0 +1,498 @@
+/**
+ * ShardedLibrary.java
+ * One library partitioned across several Library shards by ID hash
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/*
+ * A book lives on the shard its ID hashes to, and so does a member (the
+ * member's home shard). Each shard is a complete Library with its own
+ * catalog lock, lock stripes and indexes, so adds, issues and returns on
+ * different shards never touch the same lock.
+ *
+ * A checkout whose book is on another shard uses a fixed two-step protocol:
+ * under the member's monitor, check the loan limit and fines across all
+ * shards and reserve one loan on the home shard; then issue the book on its
+ * own shard to a guest copy of the member, and release the reservation if
+ * that fails. A return runs the steps the other way round. The monitor is
+ * always taken before any shard lock and is never held while waiting on
+ * another member, so checkouts cannot deadlock. A failed checkout can
+ * briefly hold a reservation, which may make a concurrent checkout by the
+ * same member fail with the limit reached, but never lets a member exceed it.
+ *
+ * Point operations run on the calling thread, against the shard's own
+ * locks. Each shard also has a single-thread executor for the work that
+ * touches every shard: stats and search queries and bulk loads are fanned
+ * out to all executors at once and merged.
+ *
+ * Issue and return through this class only; a loan made directly on a
+ * shard is not counted against the member's limit on the other shards.
+ */
+
+public class ShardedLibrary implements AutoCloseable {
+    private static final Comparator<Book> BY_TITLE = Comparator.comparing(Book::getTitle,
+            String.CASE_INSENSITIVE_ORDER).thenComparing(Book::getBookId);
+    
+    private final String libraryName;
+    private final Library[] shards;
+    private final ExecutorService[] executors;
+    private final Map<String, MemberState> memberStates; // Member ID -> loans on other shards
+    private final AtomicInteger guestCount; // Guest copies of members on non-home shards
+    private final AtomicInteger membersAtLimit;
+    
+    /**
+     * Constructor to create a library of empty shards
+     * @param libraryName Name of the library
+     * @param shardCount Number of shards, e.g. the number of cores
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public ShardedLibrary(String libraryName, int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.libraryName = libraryName;
+        this.shards = new Library[shardCount];
+        this.executors = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Library(libraryName + " (shard " + i + ")");
+            String threadName = "library-shard-" + i;
+            this.executors[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.memberStates = new ConcurrentHashMap<>();
+        this.guestCount = new AtomicInteger();
+        this.membersAtLimit = new AtomicInteger();
+    }
+    
+    /**
+     * Add a new book to the shard that owns its ID
+     * @param book The book to add
+     * @throws IllegalArgumentException if book is null or its ID already exists
+     */
+    public void addBook(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+        this.shards[shardOf(book.getBookId())].addBook(book);
+    }
+    
+    /**
+     * Register a new member on their home shard
+     * @param member The member to register
+     * @throws IllegalArgumentException if member is null or its ID already exists
+     */
+    public void addMember(Member member) {
+        if (member == null) {
+            throw new IllegalArgumentException("Member cannot be null");
+        }
+        this.shards[shardOf(member.getMemberId())].addMember(member);
+    }
+    
+    /**
+     * Add many books, loading every shard's part in parallel
+     * @param newBooks Books to add
+     * @return Books rejected because their ID already exists
+     */
+    public List<Book> addBooks(List<Book> newBooks) {
+        List<List<Book>> parts = partition(newBooks, Book::getBookId);
+        List<Book> rejected = new ArrayList<>();
+        for (List<Book> shardRejected : onEveryShard(i -> this.shards[i].addBooks(parts.get(i)))) {
+            rejected.addAll(shardRejected);
+        }
+        return rejected;
+    }
+    
+    /**
+     * Register many members, loading every shard's part in parallel
+     * @param newMembers Members to register
+     * @return Members rejected because their ID already exists
+     */
+    public List<Member> addMembers(List<Member> newMembers) {
+        List<List<Member>> parts = partition(newMembers, Member::getMemberId);
+        List<Member> rejected = new ArrayList<>();
+        for (List<Member> shardRejected : onEveryShard(i -> this.shards[i].addMembers(parts.get(i)))) {
+            rejected.addAll(shardRejected);
+        }
+        return rejected;
+    }
+    
+    /**
+     * Issue a book to a member, wherever each of them lives
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if book is already issued or on hold for
+     *         someone else, or the member is at the limit or owes fines
+     */
+    public void issueBook(String memberId, String bookId) {
+        MemberState state = memberState(memberId);
+        int home = shardOf(memberId);
+        int owner = shardOf(bookId);
+        Library library = this.shards[owner];
+        if (owner == home) {
+            synchronized (state) {
+                checkCanBorrow(state, home);
+                boolean wasAtLimit = state.isAtLimit();
+                library.issueBook(memberId, bookId);
+                updateAtLimit(state, wasAtLimit);
+            }
+            return;
+        }
+        
+        // Two-shard checkout: reserve on the home shard, then issue on the book's shard
+        if (library.findBook(bookId) == null) {
+            throw new IllegalArgumentException("Book with ID " + bookId + " not found");
+        }
+        synchronized (state) {
+            checkCanBorrow(state, home);
+            if (state.records[owner] == null) {
+                Member member = state.member;
+                Member guest = new Member(memberId, member.getName(), member.getEmail(), member.getPhoneNumber(),
+                        member.getMembershipDate());
+                library.addMember(guest);
+                state.records[owner] = guest;
+                this.guestCount.incrementAndGet();
+            }
+            boolean wasAtLimit = state.isAtLimit();
+            state.remoteLoans++;
+            updateAtLimit(state, wasAtLimit);
+        }
+        try {
+            library.issueBook(memberId, bookId);
+        } catch (RuntimeException e) {
+            synchronized (state) {
+                boolean wasAtLimit = state.isAtLimit();
+                state.remoteLoans--;
+                updateAtLimit(state, wasAtLimit);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Return a book from a member, wherever each of them lives
+     * @param memberId ID of the member
+     * @param bookId ID of the book
+     * @throws IllegalArgumentException if member or book not found
+     * @throws IllegalStateException if book is not issued to member
+     */
+    public void returnBook(String memberId, String bookId) {
+        MemberState state = memberState(memberId);
+        int home = shardOf(memberId);
+        int owner = shardOf(bookId);
+        Library library = this.shards[owner];
+        if (owner == home) {
+            synchronized (state) {
+                boolean wasAtLimit = state.isAtLimit();
+                library.returnBook(memberId, bookId);
+                updateAtLimit(state, wasAtLimit);
+            }
+            return;
+        }
+        
+        // Return on the book's shard first, then release the loan on the home shard
+        if (library.findBook(bookId) == null) {
+            throw new IllegalArgumentException("Book with ID " + bookId + " not found");
+        }
+        synchronized (state) {
+            if (state.records[owner] == null) {
+                throw new IllegalStateException("Book is not issued to this member");
+            }
+        }
+        library.returnBook(memberId, bookId);
+        synchronized (state) {
+            boolean wasAtLimit = state.isAtLimit();
+            state.remoteLoans--;
+            updateAtLimit(state, wasAtLimit);
+        }
+    }
+    
+    /**
+     * Find a book by ID on the shard that owns it
+     * @param bookId The book ID to search for
+     * @return Book if found, null otherwise
+     */
+    public Book findBook(String bookId) {
+        return this.shards[shardOf(bookId)].findBook(bookId);
+    }
+    
+    /**
+     * Find a member by ID on their home shard
+     * @param memberId The member ID to search for
+     * @return Member if found, null otherwise
+     */
+    public Member findMember(String memberId) {
+        return this.shards[shardOf(memberId)].findMember(memberId);
+    }
+    
+    /**
+     * Get the number of books a member holds on every shard
+     * @param memberId ID of the member
+     * @return Books issued to the member
+     * @throws IllegalArgumentException if member not found
+     */
+    public int getIssuedBooksCount(String memberId) {
+        MemberState state = memberState(memberId);
+        synchronized (state) {
+            return state.loanCount();
+        }
+    }
+    
+    /**
+     * Get what a member owes in late fines on every shard
+     * @param memberId ID of the member
+     * @return Outstanding balance in minor units
+     * @throws IllegalArgumentException if member not found
+     */
+    public long getFineBalance(String memberId) {
+        MemberState state = memberState(memberId);
+        synchronized (state) {
+            return fineBalance(state);
+        }
+    }
+    
+    /**
+     * Search every shard in parallel and merge the results. Each shard sorts
+     * all of its matches by title before keeping the first limit, so the
+     * merge yields the first limit matches of the whole library.
+     * @param query Search terms, as for Library.searchBooks
+     * @param limit Maximum number of books to return
+     * @return Matching books ordered by title, then ID
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        List<List<Book>> shardResults = onEveryShard(i -> {
+            List<Book> matches = this.shards[i].searchBooks(query);
+            matches.sort(BY_TITLE);
+            return matches.size() > limit ? matches.subList(0, limit) : matches;
+        });
+        // k-way merge of the sorted shard lists; there are only a few shards, so scan their heads
+        int[] next = new int[shardResults.size()];
+        List<Book> results = new ArrayList<>();
+        while (results.size() < limit) {
+            int best = -1;
+            Book first = null;
+            for (int i = 0; i < next.length; i++) {
+                if (next[i] < shardResults.get(i).size()) {
+                    Book head = shardResults.get(i).get(next[i]);
+                    if (first == null || BY_TITLE.compare(head, first) < 0) {
+                        best = i;
+                        first = head;
+                    }
+                }
+            }
+            if (first == null) {
+                break;
+            }
+            results.add(first);
+            next[best]++;
+        }
+        return results;
+    }
+    
+    /**
+     * Collect every shard's statistics in parallel and add them up
+     * @return Statistics of the whole library; guest copies of members are
+     *         not counted and the limit counts loans on every shard
+     */
+    public LibraryStats getStats() {
+        int totalBooks = 0;
+        int issuedBooks = 0;
+        int totalMembers = 0;
+        for (LibraryStats stats : onEveryShard(i -> this.shards[i].getStats())) {
+            totalBooks += stats.getTotalBooks();
+            issuedBooks += stats.getIssuedBooks();
+            totalMembers += stats.getTotalMembers();
+        }
+        return new LibraryStats(this.libraryName, totalBooks, issuedBooks, totalMembers - this.guestCount.get(),
+                this.membersAtLimit.get());
+    }
+    
+    /**
+     * Stop the shards' executors; the shards themselves stay readable
+     */
+    @Override
+    public void close() {
+        for (ExecutorService executor : this.executors) {
+            executor.shutdown();
+        }
+    }
+    
+    public String getLibraryName() {
+        return libraryName;
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Get one shard, e.g. to inspect it; issue and return through this class
+     * @param index Shard index
+     * @return The shard
+     */
+    Library getShard(int index) {
+        return shards[index];
+    }
+    
+    /**
+     * Find the shard that owns an ID
+     * @param id Book or member ID
+     * @return Shard index
+     * @throws IllegalArgumentException if id is null
+     */
+    int shardOf(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID cannot be null");
+        }
+        int hash = id.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), this.shards.length);
+    }
+    
+    /**
+     * Get the cross-shard state of a registered member
+     * @param memberId ID of the member
+     * @return The state, created on first use
+     * @throws IllegalArgumentException if member not found
+     */
+    private MemberState memberState(String memberId) {
+        MemberState state = this.memberStates.get(memberId);
+        if (state != null) {
+            return state;
+        }
+        Member member = findMember(memberId);
+        if (member == null) {
+            throw new IllegalArgumentException("Member with ID " + memberId + " not found");
+        }
+        return this.memberStates.computeIfAbsent(memberId, id -> new MemberState(member, shardOf(id), this.shards.length));
+    }
+    
+    /**
+     * Check the loan limit and fines across every shard; call with the
+     * member's monitor held
+     * @param state The member's state
+     * @param home Index of the member's home shard
+     * @throws IllegalStateException if the member may not borrow
+     */
+    private void checkCanBorrow(MemberState state, int home) {
+        if (state.isAtLimit()) {
+            throw new IllegalStateException("Member has reached maximum book limit (" + Member.MAX_BOOKS + " books)");
+        }
+        FinePolicy policy = this.shards[home].getFinePolicy();
+        if (policy != null) {
+            long balance = fineBalance(state);
+            if (balance >= policy.getBlockThreshold()) {
+                throw new IllegalStateException("Member has unpaid fines of " + FinePolicy.format(balance));
+            }
+        }
+    }
+    
+    /**
+     * Add up a member's balance on the home shard and every shard they
+     * have borrowed from; call with the member's monitor held
+     * @param state The member's state
+     * @return Outstanding balance in minor units
+     */
+    private long fineBalance(MemberState state) {
+        long balance = 0;
+        for (int i = 0; i < this.shards.length; i++) {
+            if (state.records[i] != null) {
+                balance += this.shards[i].fineBalance(state.records[i]);
+            }
+        }
+        return balance;
+    }
+    
+    private void updateAtLimit(MemberState state, boolean wasAtLimit) {
+        boolean atLimit = state.isAtLimit();
+        if (atLimit && !wasAtLimit) {
+            this.membersAtLimit.incrementAndGet();
+        } else if (wasAtLimit && !atLimit) {
+            this.membersAtLimit.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Split records by the shard that owns their ID
+     * @param records Books or members
+     * @param id Gets a record's ID
+     * @return One list per shard
+     */
+    private <T> List<List<T>> partition(List<T> records, Function<T, String> id) {
+        List<List<T>> parts = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (T record : records) {
+            parts.get(shardOf(id.apply(record))).add(record);
+        }
+        return parts;
+    }
+    
+    /**
+     * Run a task on every shard's executor at once and wait for all of them
+     * @param task Task to run, given the shard index
+     * @return Results in shard order
+     * @throws IllegalStateException if interrupted while waiting
+     */
+    private <T> List<T> onEveryShard(IntFunction<T> task) {
+        List<Future<T>> futures = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            int shard = i;
+            futures.add(this.executors[i].submit(() -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+    
+    /**
+     * A member's loans across shards; guarded by its own monitor
+     */
+    private static class MemberState {
+        final Member member; // The record on the home shard
+        final Member[] records; // Per shard: the member, a guest copy, or null if never borrowed there
+        int remoteLoans; // Books issued (or reserved) on other shards
+        
+        MemberState(Member member, int home, int shardCount) {
+            this.member = member;
+            this.records = new Member[shardCount];
+            this.records[home] = member;
+        }
+        
+        int loanCount() {
+            return this.member.getIssuedBooksCount() + this.remoteLoans;
+        }
+        
+        boolean isAtLimit() {
+            return loanCount() >= Member.MAX_BOOKS;
+        }
+    }
+}